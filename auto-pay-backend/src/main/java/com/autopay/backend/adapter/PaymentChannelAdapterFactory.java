@@ -1,5 +1,6 @@
 package com.autopay.backend.adapter;
 
+import com.autopay.backend.service.routing.ChannelResilienceRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -11,7 +12,7 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * 支付渠道适配器工厂
  * 
- * 负责管理和分发支付渠道适配器实例
+ * 负责管理和分发支付渠道适配器实例，注册的适配器统一包装熔断与舱壁保护
  * 
  * @author AutoPay Team
  * @since 1.0.0
@@ -25,9 +26,13 @@ public class PaymentChannelAdapterFactory {
     // 注册的适配器列表
     private final List<PaymentChannelAdapter> registeredAdapters;
     
+    // 渠道熔断与舱壁注册表
+    private final ChannelResilienceRegistry resilienceRegistry;
+    
     @Autowired
-    public PaymentChannelAdapterFactory(List<PaymentChannelAdapter> adapters) {
+    public PaymentChannelAdapterFactory(List<PaymentChannelAdapter> adapters, ChannelResilienceRegistry resilienceRegistry) {
         this.registeredAdapters = adapters;
+        this.resilienceRegistry = resilienceRegistry;
         // 初始化时注册所有适配器
         registerAdapters();
     }
@@ -39,12 +44,22 @@ public class PaymentChannelAdapterFactory {
         for (PaymentChannelAdapter adapter : registeredAdapters) {
             Integer channelType = adapter.getChannelType();
             if (channelType != null) {
-                adapterCache.put(channelType, adapter);
+                adapterCache.put(channelType, wrap(adapter));
                 System.out.println("注册支付渠道适配器: " + adapter.getAdapterName() + " (类型: " + channelType + ")");
             }
         }
     }
     
+    /**
+     * 为适配器包装熔断与舱壁保护
+     */
+    private PaymentChannelAdapter wrap(PaymentChannelAdapter adapter) {
+        if (adapter instanceof ResilientPaymentChannelAdapter) {
+            return adapter;
+        }
+        return new ResilientPaymentChannelAdapter(adapter, resilienceRegistry);
+    }
+    
     /**
      * 根据渠道类型获取适配器
      * 
@@ -90,7 +105,7 @@ public class PaymentChannelAdapterFactory {
      */
     public void registerAdapter(Integer channelType, PaymentChannelAdapter adapter) {
         if (channelType != null && adapter != null) {
-            adapterCache.put(channelType, adapter);
+            adapterCache.put(channelType, wrap(adapter));
             System.out.println("动态注册支付渠道适配器: " + adapter.getAdapterName() + " (类型: " + channelType + ")");
         }
     }
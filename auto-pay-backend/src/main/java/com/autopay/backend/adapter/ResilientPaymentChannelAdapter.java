@@ -0,0 +1,105 @@
+package com.autopay.backend.adapter;
+
+import com.autopay.backend.dto.request.PaymentRequest;
+import com.autopay.backend.dto.response.PaymentResponse;
+import com.autopay.backend.entity.PaymentChannel;
+import com.autopay.backend.service.routing.ChannelResilienceRegistry;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带熔断与舱壁保护的支付渠道适配器
+ *
+ * 装饰具体渠道适配器，所有访问渠道网关的方法都经过渠道熔断器、舱壁和渠道超时控制；
+ * 回调解析、签名、配置校验等本地计算方法直接委托
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class ResilientPaymentChannelAdapter implements PaymentChannelAdapter {
+
+    private final PaymentChannelAdapter delegate;
+    private final ChannelResilienceRegistry resilienceRegistry;
+
+    public ResilientPaymentChannelAdapter(PaymentChannelAdapter delegate, ChannelResilienceRegistry resilienceRegistry) {
+        this.delegate = delegate;
+        this.resilienceRegistry = resilienceRegistry;
+    }
+
+    @Override
+    public PaymentResponse createPayment(PaymentRequest request, PaymentChannel channel) throws PaymentException {
+        return resilienceRegistry.execute(channel, () -> delegate.createPayment(request, channel));
+    }
+
+    @Override
+    public PaymentResponse queryPayment(String outTradeNo, PaymentChannel channel) throws PaymentException {
+        return resilienceRegistry.execute(channel, () -> delegate.queryPayment(outTradeNo, channel));
+    }
+
+    @Override
+    public PaymentResponse closePayment(String outTradeNo, PaymentChannel channel) throws PaymentException {
+        return resilienceRegistry.execute(channel, () -> delegate.closePayment(outTradeNo, channel));
+    }
+
+    @Override
+    public PaymentResponse refundPayment(String outTradeNo, BigDecimal refundAmount,
+                                         String refundReason, PaymentChannel channel) throws PaymentException {
+        return resilienceRegistry.execute(channel,
+                () -> delegate.refundPayment(outTradeNo, refundAmount, refundReason, channel));
+    }
+
+    @Override
+    public PaymentResponse handleCallback(Map<String, Object> callbackData, PaymentChannel channel) throws PaymentException {
+        // 回调解析与验签为本地计算，验签失败不计入渠道熔断
+        return delegate.handleCallback(callbackData, channel);
+    }
+
+    @Override
+    public HealthCheckResult healthCheck(PaymentChannel channel) throws PaymentException {
+        return resilienceRegistry.execute(channel, () -> delegate.healthCheck(channel));
+    }
+
+    @Override
+    public boolean validateConfig(PaymentChannel channel) throws PaymentException {
+        return delegate.validateConfig(channel);
+    }
+
+    @Override
+    public String generateSignature(Map<String, Object> data, PaymentChannel channel) throws PaymentException {
+        return delegate.generateSignature(data, channel);
+    }
+
+    @Override
+    public boolean verifySignature(Map<String, Object> data, String signature, PaymentChannel channel) throws PaymentException {
+        return delegate.verifySignature(data, signature, channel);
+    }
+
+    @Override
+    public List<String> getSupportedScenes() {
+        return delegate.getSupportedScenes();
+    }
+
+    @Override
+    public List<String> getSupportedCurrencies() {
+        return delegate.getSupportedCurrencies();
+    }
+
+    @Override
+    public Integer getChannelType() {
+        return delegate.getChannelType();
+    }
+
+    @Override
+    public String getAdapterName() {
+        return delegate.getAdapterName();
+    }
+
+    /**
+     * 获取被装饰的适配器
+     */
+    public PaymentChannelAdapter getDelegate() {
+        return delegate;
+    }
+}
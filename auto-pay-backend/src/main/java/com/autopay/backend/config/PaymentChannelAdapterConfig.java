@@ -2,6 +2,7 @@ package com.autopay.backend.config;
 
 import com.autopay.backend.adapter.PaymentChannelAdapter;
 import com.autopay.backend.adapter.PaymentChannelAdapterFactory;
+import com.autopay.backend.service.routing.ChannelResilienceRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,15 +25,17 @@ public class PaymentChannelAdapterConfig {
      * 注册适配器工厂Bean
      * 
      * @param adapters 所有支付渠道适配器实现
+     * @param resilienceRegistry 渠道熔断与舱壁注册表
      * @return 适配器工厂实例
      */
     @Bean
     @Primary
     public PaymentChannelAdapterFactory paymentChannelAdapterFactory(
-            @Autowired List<PaymentChannelAdapter> adapters) {
+            @Autowired List<PaymentChannelAdapter> adapters,
+            @Autowired ChannelResilienceRegistry resilienceRegistry) {
         System.out.println("初始化支付渠道适配器工厂，检测到 " + adapters.size() + " 个适配器");
         
-        PaymentChannelAdapterFactory factory = new PaymentChannelAdapterFactory(adapters);
+        PaymentChannelAdapterFactory factory = new PaymentChannelAdapterFactory(adapters, resilienceRegistry);
         
         // 输出注册的适配器信息
         System.out.println("已注册的支付渠道适配器:");
@@ -0,0 +1,121 @@
+package com.autopay.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 支付处理流水线线程池配置
+ *
+ * 数据库阶段与渠道调用阶段使用独立线程池：数据库线程池规模与连接池匹配，队列满时由调用方线程执行，形成背压；
+ * 渠道调用线程池不持有数据库连接，队列满时拒绝；渠道网关线程池执行实际的网关请求，使调用可按渠道超时时间放弃
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Configuration
+public class PaymentPipelineConfig {
+
+    /**
+     * 订单落库、订单更新等数据库阶段线程池
+     */
+    @Bean(name = "paymentDbExecutor")
+    public ThreadPoolTaskExecutor paymentDbExecutor(
+            @Value("${autopay.pipeline.db.core-size:16}") int coreSize,
+            @Value("${autopay.pipeline.db.max-size:24}") int maxSize,
+            @Value("${autopay.pipeline.db.queue-capacity:2000}") int queueCapacity) {
+        return buildExecutor("payment-db-", coreSize, maxSize, queueCapacity);
+    }
+
+    /**
+     * 渠道网关调用线程池，队列满时拒绝任务，按渠道并发已满失败，不在数据库线程上调用渠道
+     */
+    @Bean(name = "channelCallExecutor")
+    public ThreadPoolTaskExecutor channelCallExecutor(
+            @Value("${autopay.pipeline.channel.core-size:64}") int coreSize,
+            @Value("${autopay.pipeline.channel.max-size:256}") int maxSize,
+            @Value("${autopay.pipeline.channel.queue-capacity:1000}") int queueCapacity) {
+        return buildExecutor("channel-call-", coreSize, maxSize, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 渠道网关请求线程池，渠道调用方按渠道超时时间等待，超时后取消请求；
+     * 单渠道并发已由舱壁限制，线程池满时拒绝并按渠道并发已满失败
+     */
+    @Bean(name = "channelGatewayExecutor")
+    public ThreadPoolTaskExecutor channelGatewayExecutor(
+            @Value("${autopay.pipeline.gateway.core-size:64}") int coreSize,
+            @Value("${autopay.pipeline.gateway.max-size:256}") int maxSize,
+            @Value("${autopay.pipeline.gateway.queue-capacity:0}") int queueCapacity) {
+        return buildExecutor("channel-gateway-", coreSize, maxSize, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 渠道回调批量状态迁移线程池
+     */
+    @Bean(name = "callbackExecutor")
+    public ThreadPoolTaskExecutor callbackExecutor(
+            @Value("${autopay.pipeline.callback.core-size:8}") int coreSize,
+            @Value("${autopay.pipeline.callback.max-size:16}") int maxSize,
+            @Value("${autopay.pipeline.callback.queue-capacity:2000}") int queueCapacity) {
+        return buildExecutor("channel-callback-", coreSize, maxSize, queueCapacity);
+    }
+
+    /**
+     * 风控规则并行评估线程池，队列满时拒绝任务，由风控按超时处理而不占用调用方线程
+     */
+    @Bean(name = "riskRuleExecutor")
+    public ThreadPoolTaskExecutor riskRuleExecutor(
+            @Value("${autopay.pipeline.risk.core-size:16}") int coreSize,
+            @Value("${autopay.pipeline.risk.max-size:32}") int maxSize,
+            @Value("${autopay.pipeline.risk.queue-capacity:500}") int queueCapacity) {
+        return buildExecutor("risk-rule-", coreSize, maxSize, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 设备画像更新线程池，队列满时丢弃本次观测，不占用风控线程
+     */
+    @Bean(name = "deviceProfileExecutor")
+    public ThreadPoolTaskExecutor deviceProfileExecutor(
+            @Value("${autopay.pipeline.device.core-size:2}") int coreSize,
+            @Value("${autopay.pipeline.device.max-size:4}") int maxSize,
+            @Value("${autopay.pipeline.device.queue-capacity:10000}") int queueCapacity) {
+        return buildExecutor("device-profile-", coreSize, maxSize, queueCapacity, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * 报表查询线程池，同一报表中相互独立的统计查询并行执行，线程数限制同时占用的数据库连接；
+     * 队列满时拒绝任务，报表直接失败，不在请求线程上执行查询
+     */
+    @Bean(name = "analyticsQueryExecutor")
+    public ThreadPoolTaskExecutor analyticsQueryExecutor(
+            @Value("${autopay.pipeline.analytics.core-size:8}") int coreSize,
+            @Value("${autopay.pipeline.analytics.max-size:8}") int maxSize,
+            @Value("${autopay.pipeline.analytics.queue-capacity:200}") int queueCapacity) {
+        return buildExecutor("analytics-query-", coreSize, maxSize, queueCapacity,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private ThreadPoolTaskExecutor buildExecutor(String threadNamePrefix, int coreSize, int maxSize, int queueCapacity) {
+        return buildExecutor(threadNamePrefix, coreSize, maxSize, queueCapacity,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private ThreadPoolTaskExecutor buildExecutor(String threadNamePrefix, int coreSize, int maxSize, int queueCapacity,
+                                                 RejectedExecutionHandler rejectedExecutionHandler) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(rejectedExecutionHandler);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
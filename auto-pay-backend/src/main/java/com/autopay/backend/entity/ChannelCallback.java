@@ -0,0 +1,111 @@
+package com.autopay.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 渠道回调实体类
+ * 回调验签通过后先落库再应答渠道，处理完成、转入异常或重试耗尽后更新状态；去重键唯一
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("ap_channel_callback")
+public class ChannelCallback implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 状态：待处理
+     */
+    public static final int STATUS_PENDING = 0;
+
+    /**
+     * 状态：已处理
+     */
+    public static final int STATUS_PROCESSED = 1;
+
+    /**
+     * 状态：异常，需人工处理(如已关闭订单收到支付成功、支付金额与订单金额不一致)
+     */
+    public static final int STATUS_EXCEPTION = 2;
+
+    /**
+     * 状态：重试耗尽的死信
+     */
+    public static final int STATUS_DEAD = 3;
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 渠道编码
+     */
+    @TableField("channel_code")
+    private String channelCode;
+
+    /**
+     * 去重键：渠道编码 + 原始报文摘要
+     */
+    @TableField("dedup_key")
+    private String dedupKey;
+
+    /**
+     * 系统交易号
+     */
+    @TableField("trade_no")
+    private String tradeNo;
+
+    /**
+     * 回调对应的订单目标状态
+     */
+    @TableField("target_status")
+    private Integer targetStatus;
+
+    /**
+     * 原始报文
+     */
+    @TableField("payload")
+    private String payload;
+
+    /**
+     * 状态 (0:待处理 1:已处理 2:异常 3:死信)
+     */
+    @TableField("status")
+    private Integer status;
+
+    /**
+     * 已处理次数
+     */
+    @TableField("attempts")
+    private Integer attempts;
+
+    /**
+     * 异常或失败原因
+     */
+    @TableField("error_message")
+    private String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    @TableField("create_time")
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    @TableField("update_time")
+    private LocalDateTime updateTime;
+}
@@ -298,6 +298,18 @@ public class PaymentOrder implements Serializable {
             return description;
         }
 
+        /**
+         * 根据状态码获取状态，未知状态码返回null
+         */
+        public static Status fromCode(Integer code) {
+            for (Status status : values()) {
+                if (status.code.equals(code)) {
+                    return status;
+                }
+            }
+            return null;
+        }
+
         /**
          * 是否为终态状态
          */
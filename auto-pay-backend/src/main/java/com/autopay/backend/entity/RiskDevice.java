@@ -0,0 +1,78 @@
+package com.autopay.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 风控设备画像实体类
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("sys_risk_device")
+public class RiskDevice implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 设备指纹(唯一)
+     */
+    @TableField("device_fingerprint")
+    private String deviceFingerprint;
+
+    /**
+     * 首次出现时间
+     */
+    @TableField("first_seen_time")
+    private LocalDateTime firstSeenTime;
+
+    /**
+     * 最近出现时间
+     */
+    @TableField("last_seen_time")
+    private LocalDateTime lastSeenTime;
+
+    /**
+     * 出现次数
+     */
+    @TableField("seen_count")
+    private Long seenCount;
+
+    /**
+     * 关联用户ID，逗号分隔
+     */
+    @TableField("linked_user_ids")
+    private String linkedUserIds;
+
+    /**
+     * 最近的风险分数，逗号分隔，按时间先后排列
+     */
+    @TableField("risk_scores")
+    private String riskScores;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "created_at", fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updated_at", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
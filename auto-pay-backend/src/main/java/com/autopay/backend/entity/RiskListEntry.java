@@ -0,0 +1,84 @@
+package com.autopay.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 风控名单条目实体类
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("sys_risk_list")
+public class RiskListEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 名单类型 (1:黑名单 2:白名单)
+     */
+    @TableField("list_type")
+    private Integer listType;
+
+    /**
+     * 名单维度 (1:用户ID 2:IP 3:IP段 4:设备指纹 5:卡BIN)
+     */
+    @TableField("dimension_type")
+    private Integer dimensionType;
+
+    /**
+     * 名单值，条目创建后不应修改，变更时禁用旧条目并新增
+     */
+    @TableField("list_value")
+    private String listValue;
+
+    /**
+     * 是否启用 (0:禁用 1:启用)，删除条目时置为禁用以便增量同步
+     */
+    @TableField("enabled")
+    private Boolean enabled;
+
+    /**
+     * 备注
+     */
+    @TableField("remark")
+    private String remark;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "created_at", fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updated_at", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+
+    /**
+     * 创建人
+     */
+    @TableField(value = "created_by", fill = FieldFill.INSERT)
+    private String createdBy;
+
+    /**
+     * 更新人
+     */
+    @TableField(value = "updated_by", fill = FieldFill.INSERT_UPDATE)
+    private String updatedBy;
+}
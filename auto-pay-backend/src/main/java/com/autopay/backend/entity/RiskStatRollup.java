@@ -0,0 +1,104 @@
+package com.autopay.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 风控统计汇总实体类
+ * (统计时间, 粒度, 维度类型, 维度值)唯一，各节点按增量累加
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("sys_risk_stat_rollup")
+public class RiskStatRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 粒度：分钟
+     */
+    public static final int GRANULARITY_MINUTE = 1;
+
+    /**
+     * 粒度：小时
+     */
+    public static final int GRANULARITY_HOUR = 2;
+
+    /**
+     * 维度类型：操作类型
+     */
+    public static final int DIMENSION_OPERATION = 1;
+
+    /**
+     * 维度类型：风险等级
+     */
+    public static final int DIMENSION_RISK_LEVEL = 2;
+
+    /**
+     * 维度类型：风控规则
+     */
+    public static final int DIMENSION_RULE = 3;
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 统计时间(分钟或小时起点)
+     */
+    @TableField("stat_time")
+    private LocalDateTime statTime;
+
+    /**
+     * 粒度 (1:分钟 2:小时)
+     */
+    @TableField("granularity")
+    private Integer granularity;
+
+    /**
+     * 维度类型 (1:操作类型 2:风险等级 3:风控规则)
+     */
+    @TableField("dimension_type")
+    private Integer dimensionType;
+
+    /**
+     * 维度值(操作类型、风险等级或规则ID)
+     */
+    @TableField("dimension_key")
+    private Long dimensionKey;
+
+    /**
+     * 次数(检查次数或规则触发次数)
+     */
+    @TableField("total_count")
+    private Long totalCount;
+
+    /**
+     * 其中未通过风控的次数
+     */
+    @TableField("blocked_count")
+    private Long blockedCount;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "created_at", fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updated_at", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
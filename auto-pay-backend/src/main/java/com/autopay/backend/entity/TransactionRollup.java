@@ -0,0 +1,112 @@
+package com.autopay.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 交易汇总实体类
+ * 按分钟、小时、天预聚合订单，(粒度, 时间桶, 渠道编码, 交易状态, 金额区间)唯一，金额单位为分
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("ap_transaction_rollup")
+public class TransactionRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 粒度：分钟
+     */
+    public static final int GRANULARITY_MINUTE = 1;
+
+    /**
+     * 粒度：小时
+     */
+    public static final int GRANULARITY_HOUR = 2;
+
+    /**
+     * 粒度：天
+     */
+    public static final int GRANULARITY_DAY = 3;
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 粒度 (1:分钟 2:小时 3:天)
+     */
+    @TableField("granularity")
+    private Integer granularity;
+
+    /**
+     * 时间桶起点(订单创建时间所在的分钟、小时或天)
+     */
+    @TableField("bucket_time")
+    private LocalDateTime bucketTime;
+
+    /**
+     * 支付渠道ID
+     */
+    @TableField("payment_channel_id")
+    private Long paymentChannelId;
+
+    /**
+     * 支付渠道编码
+     */
+    @TableField("channel_code")
+    private String channelCode;
+
+    /**
+     * 支付渠道名称
+     */
+    @TableField("channel_name")
+    private String channelName;
+
+    /**
+     * 交易状态：SUCCESS、FAILED、PENDING、CLOSED、REFUNDING、REFUNDED
+     */
+    @TableField("transaction_status")
+    private String transactionStatus;
+
+    /**
+     * 金额区间 (0:0-10元 1:10-50元 2:50-100元 3:100-500元 4:500-1000元 5:1000元以上)
+     */
+    @TableField("amount_band")
+    private Integer amountBand;
+
+    /**
+     * 交易笔数
+     */
+    @TableField("total_count")
+    private Long totalCount;
+
+    /**
+     * 交易金额（单位：分）
+     */
+    @TableField("total_amount")
+    private Long totalAmount;
+
+    /**
+     * 手续费（单位：分）
+     */
+    @TableField("total_fee")
+    private Long totalFee;
+
+    /**
+     * 更新时间
+     */
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
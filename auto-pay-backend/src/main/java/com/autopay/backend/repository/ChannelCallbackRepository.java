@@ -0,0 +1,72 @@
+package com.autopay.backend.repository;
+
+import com.autopay.backend.entity.ChannelCallback;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 渠道回调数据访问层
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Mapper
+public interface ChannelCallbackRepository extends BaseMapper<ChannelCallback> {
+
+    /**
+     * 查询长时间未处理完成的回调，用于进程重启或内存队列已满后补偿处理
+     *
+     * @param before 更新时间早于该时间
+     * @param limit  最大条数
+     * @return 待处理回调
+     */
+    @Select("""
+        SELECT * FROM ap_channel_callback
+        WHERE status = 0 AND update_time < #{before}
+        ORDER BY update_time, id
+        LIMIT #{limit}
+    """)
+    List<ChannelCallback> findStalePending(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /**
+     * 批量更新回调状态
+     *
+     * @param ids          回调主键
+     * @param status       状态
+     * @param errorMessage 异常或失败原因，可为null
+     * @return 影响行数
+     */
+    @Update("""
+        <script>
+        UPDATE ap_channel_callback
+        SET status = #{status}, error_message = #{errorMessage}, attempts = attempts + 1, update_time = NOW()
+        WHERE id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            AND status = 0
+        </script>
+    """)
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("status") int status,
+                     @Param("errorMessage") String errorMessage);
+
+    /**
+     * 记录一次失败的处理，回调保持待处理
+     *
+     * @param id           回调主键
+     * @param errorMessage 失败原因
+     * @return 影响行数
+     */
+    @Update("""
+        UPDATE ap_channel_callback
+        SET attempts = attempts + 1, error_message = #{errorMessage}, update_time = NOW()
+        WHERE id = #{id} AND status = 0
+    """)
+    int recordFailure(@Param("id") Long id, @Param("errorMessage") String errorMessage);
+}
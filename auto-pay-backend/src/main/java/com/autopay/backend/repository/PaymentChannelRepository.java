@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -53,4 +54,22 @@ public interface PaymentChannelRepository extends BaseMapper<PaymentChannel> {
     @Select("SELECT * FROM ap_payment_channel WHERE status = 1 AND health_check_url IS NOT NULL AND " +
             "(last_health_check IS NULL OR last_health_check <= DATE_SUB(NOW(), INTERVAL #{interval} SECOND)) AND deleted = 0")
     List<PaymentChannel> findChannelsForHealthCheck(@Param("interval") Integer interval);
+
+    /**
+     * 批量更新渠道成功率和平均响应时间
+     */
+    @Update("""
+        <script>
+        UPDATE ap_payment_channel
+        SET success_rate = CASE id
+            <foreach collection="channels" item="c">WHEN #{c.id} THEN #{c.successRate} </foreach>
+            END,
+            avg_response_time = CASE id
+            <foreach collection="channels" item="c">WHEN #{c.id} THEN #{c.avgResponseTime} </foreach>
+            END
+        WHERE id IN
+            <foreach collection="channels" item="c" open="(" separator="," close=")">#{c.id}</foreach>
+        </script>
+    """)
+    int batchUpdateRuntimeMetrics(@Param("channels") List<PaymentChannel> channels);
 }
\ No newline at end of file
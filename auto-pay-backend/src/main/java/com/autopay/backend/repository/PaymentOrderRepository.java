@@ -4,8 +4,10 @@ import com.autopay.backend.entity.PaymentOrder;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -20,7 +22,7 @@ public interface PaymentOrderRepository extends BaseMapper<PaymentOrder> {
     /**
      * 根据商户订单号查询支付订单
      */
-    @Select("SELECT * FROM payment_order WHERE out_trade_no = #{outTradeNo}")
+    @Select("SELECT * FROM ap_payment_order WHERE out_trade_no = #{outTradeNo} AND deleted = 0")
     PaymentOrder findByOutTradeNo(@Param("outTradeNo") String outTradeNo);
 
     /**
@@ -94,4 +96,157 @@ public interface PaymentOrderRepository extends BaseMapper<PaymentOrder> {
             "ORDER BY merchant_no, status")
     List<Map<String, Object>> getMerchantStatistics(@Param("startTime") LocalDateTime startTime,
                                                   @Param("endTime") LocalDateTime endTime);
-}
\ No newline at end of file
+
+    /**
+     * 按(到期时间, 主键)分页查询未支付订单，仅返回定时关闭所需字段；按 (status, expire_time) 索引范围扫描
+     */
+    @Select("""
+        <script>
+        SELECT id, trade_no, expire_time FROM ap_payment_order
+        WHERE status IN
+            <foreach collection="statuses" item="status" open="(" separator="," close=")">#{status}</foreach>
+            <if test="afterTime != null">
+            AND (expire_time &gt; #{afterTime} OR (expire_time = #{afterTime} AND id &gt; #{afterId}))
+            </if>
+            <if test="before != null">AND expire_time &lt; #{before}</if>
+            AND deleted = 0
+        ORDER BY expire_time, id
+        LIMIT #{limit}
+        </script>
+    """)
+    List<PaymentOrder> findUnpaidOrdersAfter(@Param("statuses") Collection<Integer> statuses,
+                                             @Param("afterTime") LocalDateTime afterTime,
+                                             @Param("afterId") long afterId,
+                                             @Param("before") LocalDateTime before,
+                                             @Param("limit") int limit);
+
+    /**
+     * 批量关闭已到期的订单，只关闭仍处于可关闭状态且已过期的订单
+     */
+    @Update("""
+        <script>
+        UPDATE ap_payment_order
+        SET status = #{closedStatus}, close_time = #{closeTime}, update_time = #{closeTime}, update_by = 'system'
+        WHERE id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            AND status IN
+            <foreach collection="statuses" item="status" open="(" separator="," close=")">#{status}</foreach>
+            AND expire_time &lt;= #{closeTime}
+            AND deleted = 0
+        </script>
+    """)
+    int closeExpiredOrders(@Param("ids") Collection<Long> ids,
+                           @Param("statuses") Collection<Integer> statuses,
+                           @Param("closedStatus") Integer closedStatus,
+                           @Param("closeTime") LocalDateTime closeTime);
+
+    /**
+     * 按交易号批量迁移订单状态，只迁移当前状态在允许范围内的订单；
+     * 渠道交易号、实付金额、支付时间和关闭时间为空时保留原值
+     */
+    @Update("""
+        <script>
+        UPDATE ap_payment_order
+        SET status = #{toStatus},
+            channel_trade_no = COALESCE(CASE trade_no
+                <foreach collection="orders" item="o">WHEN #{o.tradeNo} THEN #{o.channelTradeNo} </foreach>
+                END, channel_trade_no),
+            paid_amount = COALESCE(CASE trade_no
+                <foreach collection="orders" item="o">WHEN #{o.tradeNo} THEN #{o.paidAmount} </foreach>
+                END, paid_amount),
+            pay_time = COALESCE(CASE trade_no
+                <foreach collection="orders" item="o">WHEN #{o.tradeNo} THEN #{o.payTime} </foreach>
+                END, pay_time),
+            close_time = COALESCE(CASE trade_no
+                <foreach collection="orders" item="o">WHEN #{o.tradeNo} THEN #{o.closeTime} </foreach>
+                END, close_time),
+            update_time = NOW(),
+            update_by = #{updateBy}
+        WHERE trade_no IN
+            <foreach collection="orders" item="o" open="(" separator="," close=")">#{o.tradeNo}</foreach>
+            AND status IN
+            <foreach collection="fromStatuses" item="status" open="(" separator="," close=")">#{status}</foreach>
+            AND deleted = 0
+        </script>
+    """)
+    int batchTransitionStatus(@Param("orders") List<PaymentOrder> orders,
+                              @Param("fromStatuses") Collection<Integer> fromStatuses,
+                              @Param("toStatus") Integer toStatus,
+                              @Param("updateBy") String updateBy);
+
+    /**
+     * 按交易号批量查询订单状态、金额、手续费和创建时间，用于记录批量状态迁移的实时交易计数
+     */
+    @Select("""
+        <script>
+        SELECT id, trade_no, status, total_amount, fee_amount, create_time FROM ap_payment_order
+        WHERE trade_no IN
+            <foreach collection="tradeNos" item="tradeNo" open="(" separator="," close=")">#{tradeNo}</foreach>
+            AND deleted = 0
+        </script>
+    """)
+    List<PaymentOrder> findStatusByTradeNos(@Param("tradeNos") Collection<String> tradeNos);
+
+    /**
+     * 按更新时间分页查询变更的订单，仅返回主键、创建时间和更新时间，用于交易汇总增量重算
+     *
+     * @param since   上一页最后一条的更新时间
+     * @param afterId 上一页最后一条的主键
+     * @param limit   每页条数
+     * @return 订单列表
+     */
+    @Select("""
+        SELECT id, create_time, update_time FROM ap_payment_order
+        WHERE update_time > #{since} OR (update_time = #{since} AND id > #{afterId})
+        ORDER BY update_time ASC, id ASC LIMIT #{limit}
+    """)
+    List<PaymentOrder> findChangedSince(@Param("since") LocalDateTime since, @Param("afterId") Long afterId,
+                                        @Param("limit") int limit);
+
+    /**
+     * 按更新时间分页查询变更的订单，返回交易列式缓存所需字段
+     *
+     * @param since   上一页最后一条的更新时间
+     * @param afterId 上一页最后一条的主键
+     * @param limit   每页条数
+     * @return 订单列表
+     */
+    @Select("""
+        SELECT id, channel_code, status, total_amount, fee_amount, create_time, update_time FROM ap_payment_order
+        WHERE (update_time > #{since} OR (update_time = #{since} AND id > #{afterId})) AND deleted = 0
+        ORDER BY update_time ASC, id ASC LIMIT #{limit}
+    """)
+    List<PaymentOrder> findChangedRowsSince(@Param("since") LocalDateTime since, @Param("afterId") Long afterId,
+                                            @Param("limit") int limit);
+
+    /**
+     * 查询最早的订单创建时间，用于确定交易汇总回填的终点
+     *
+     * @return 最早创建时间，没有订单时返回null
+     */
+    @Select("SELECT MIN(create_time) FROM ap_payment_order WHERE deleted = 0")
+    LocalDateTime findEarliestCreateTime();
+
+    /**
+     * 按创建时间分页读取订单明细，用于报表导出和交易列式缓存加载；
+     * 按(create_time, id)定位下一页，每页是一次独立的短查询，不在整个导出期间占用连接
+     *
+     * @param afterTime 上一页最后一条的创建时间，首页为开始时间
+     * @param afterId   上一页最后一条的主键，首页为0
+     * @param endTime   结束时间(不含)
+     * @param limit     每页条数
+     * @return 订单列表
+     */
+    @Select("""
+        SELECT id, trade_no, out_trade_no, merchant_no, channel_code, channel_trade_no, status,
+            total_amount, paid_amount, fee_amount, currency, create_time, pay_time
+        FROM ap_payment_order
+        WHERE (create_time > #{afterTime} OR (create_time = #{afterTime} AND id > #{afterId}))
+            AND create_time < #{endTime} AND deleted = 0
+        ORDER BY create_time ASC, id ASC LIMIT #{limit}
+    """)
+    List<PaymentOrder> findPageByCreateTime(@Param("afterTime") LocalDateTime afterTime,
+                                            @Param("afterId") Long afterId,
+                                            @Param("endTime") LocalDateTime endTime,
+                                            @Param("limit") int limit);
+}
@@ -0,0 +1,62 @@
+package com.autopay.backend.repository;
+
+import com.autopay.backend.entity.RiskDevice;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 风控设备画像数据访问层
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Mapper
+public interface RiskDeviceRepository extends BaseMapper<RiskDevice> {
+
+    /**
+     * 根据设备指纹查询设备画像
+     *
+     * @param deviceFingerprint 设备指纹
+     * @return 设备画像
+     */
+    @Select("SELECT * FROM sys_risk_device WHERE device_fingerprint = #{deviceFingerprint}")
+    RiskDevice findByFingerprint(@Param("deviceFingerprint") String deviceFingerprint);
+
+    /**
+     * 写入新设备画像，设备指纹已存在时抛出唯一键冲突
+     *
+     * @param device 设备画像
+     * @return 影响行数
+     */
+    @Insert("""
+        INSERT INTO sys_risk_device (id, device_fingerprint, first_seen_time, last_seen_time, seen_count,
+            linked_user_ids, risk_scores, created_at, updated_at)
+        VALUES (#{device.id}, #{device.deviceFingerprint}, #{device.firstSeenTime}, #{device.lastSeenTime},
+            #{device.seenCount}, #{device.linkedUserIds}, #{device.riskScores}, NOW(), NOW())
+    """)
+    int insertDevice(@Param("device") RiskDevice device);
+
+    /**
+     * 更新已存在的设备画像，关联用户为调用方合并后的结果，仅在关联用户仍为读取时的值时更新；
+     * 出现次数和风险分数只接受最近出现时间不早于当前记录的画像
+     *
+     * @param device                设备画像，关联用户已与读取的记录合并
+     * @param expectedLinkedUserIds 读取时的关联用户
+     * @return 影响行数，关联用户已被并发修改时返回0
+     */
+    @Update("""
+        UPDATE sys_risk_device
+        SET seen_count = IF(#{device.lastSeenTime} >= last_seen_time, #{device.seenCount}, seen_count),
+            risk_scores = IF(#{device.lastSeenTime} >= last_seen_time, #{device.riskScores}, risk_scores),
+            linked_user_ids = #{device.linkedUserIds},
+            first_seen_time = LEAST(first_seen_time, #{device.firstSeenTime}),
+            last_seen_time = GREATEST(last_seen_time, #{device.lastSeenTime}),
+            updated_at = NOW()
+        WHERE device_fingerprint = #{device.deviceFingerprint} AND linked_user_ids <=> #{expectedLinkedUserIds}
+    """)
+    int mergeUpdate(@Param("device") RiskDevice device, @Param("expectedLinkedUserIds") String expectedLinkedUserIds);
+}
@@ -0,0 +1,50 @@
+package com.autopay.backend.repository;
+
+import com.autopay.backend.entity.RiskListEntry;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 风控名单数据访问层
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Mapper
+public interface RiskListEntryRepository extends BaseMapper<RiskListEntry> {
+
+    /**
+     * 按主键分页查询启用的名单条目，用于全量加载
+     *
+     * @param afterId 上一页最后一条的主键
+     * @param limit   每页条数
+     * @return 名单条目列表
+     */
+    @Select("""
+            SELECT id, list_type, dimension_type, list_value, enabled, updated_at FROM sys_risk_list
+            WHERE enabled = 1 AND id > #{afterId}
+            ORDER BY id ASC LIMIT #{limit}
+            """)
+    List<RiskListEntry> findEnabledAfterId(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 按更新时间分页查询变更的名单条目(含已禁用)，用于增量同步
+     *
+     * @param since   上一页最后一条的更新时间
+     * @param afterId 上一页最后一条的主键
+     * @param limit   每页条数
+     * @return 名单条目列表
+     */
+    @Select("""
+            SELECT id, list_type, dimension_type, list_value, enabled, updated_at FROM sys_risk_list
+            WHERE updated_at > #{since} OR (updated_at = #{since} AND id > #{afterId})
+            ORDER BY updated_at ASC, id ASC LIMIT #{limit}
+            """)
+    List<RiskListEntry> findUpdatedSince(@Param("since") LocalDateTime since, @Param("afterId") Long afterId,
+                                         @Param("limit") int limit);
+}
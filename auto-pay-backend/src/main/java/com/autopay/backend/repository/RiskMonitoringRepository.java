@@ -3,6 +3,7 @@ package com.autopay.backend.repository;
 import com.autopay.backend.entity.RiskMonitoring;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
@@ -55,4 +56,25 @@ public interface RiskMonitoringRepository extends BaseMapper<RiskMonitoring> {
      */
     Object findRiskStatistics(@Param("startTime") LocalDateTime startTime,
                              @Param("endTime") LocalDateTime endTime);
+    
+    /**
+     * 多行插入风控监控记录，主键由调用方生成
+     *
+     * @param records 风控监控记录
+     * @return 插入条数
+     */
+    @Insert("""
+        <script>
+        INSERT INTO sys_risk_monitoring (id, user_id, username, order_no, operation_type, risk_rule_id,
+            risk_rule_name, risk_level, risk_score, trigger_reason, status, device_info, ip_address,
+            operation_time, created_at)
+        VALUES
+        <foreach collection="records" item="r" separator=",">
+            (#{r.id}, #{r.userId}, #{r.username}, #{r.orderNo}, #{r.operationType}, #{r.riskRuleId},
+            #{r.riskRuleName}, #{r.riskLevel}, #{r.riskScore}, #{r.triggerReason}, #{r.status}, #{r.deviceInfo},
+            #{r.ipAddress}, #{r.operationTime}, #{r.createdAt})
+        </foreach>
+        </script>
+    """)
+    int batchInsert(@Param("records") List<RiskMonitoring> records);
 }
\ No newline at end of file
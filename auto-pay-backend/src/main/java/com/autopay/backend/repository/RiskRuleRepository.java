@@ -4,6 +4,7 @@ import com.autopay.backend.entity.RiskRule;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
 
@@ -21,6 +22,7 @@ public interface RiskRuleRepository extends BaseMapper<RiskRule> {
      *
      * @return 风控规则列表
      */
+    @Select("SELECT * FROM sys_risk_rule WHERE enabled = 1 ORDER BY priority ASC")
     List<RiskRule> findEnabledRules();
     
     /**
@@ -0,0 +1,102 @@
+package com.autopay.backend.repository;
+
+import com.autopay.backend.entity.RiskStatRollup;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 风控统计汇总数据访问层
+ * 查询窗口拆分为整点部分和首尾不足一小时的部分：整点部分读小时汇总，其余读分钟汇总
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Mapper
+public interface RiskStatRollupRepository extends BaseMapper<RiskStatRollup> {
+
+    /**
+     * 批量累加统计增量，主键由调用方生成
+     *
+     * @param rollups 统计增量
+     * @return 影响行数
+     */
+    @Insert("""
+        <script>
+        INSERT INTO sys_risk_stat_rollup (id, stat_time, granularity, dimension_type, dimension_key,
+            total_count, blocked_count, created_at, updated_at)
+        VALUES
+        <foreach collection="rollups" item="r" separator=",">
+            (#{r.id}, #{r.statTime}, #{r.granularity}, #{r.dimensionType}, #{r.dimensionKey},
+            #{r.totalCount}, #{r.blockedCount}, NOW(), NOW())
+        </foreach>
+        ON DUPLICATE KEY UPDATE
+            total_count = total_count + VALUES(total_count),
+            blocked_count = blocked_count + VALUES(blocked_count),
+            updated_at = NOW()
+        </script>
+    """)
+    int batchUpsert(@Param("rollups") List<RiskStatRollup> rollups);
+
+    /**
+     * 按维度汇总时间窗口内的统计
+     *
+     * @param startTime 开始时间
+     * @param hourStart 窗口内第一个整点，无整点时等于结束时间
+     * @param hourEnd 窗口内最后一个整点，无整点时等于结束时间
+     * @param endTime 结束时间(不含)
+     * @return 各维度的次数合计
+     */
+    @Select("""
+        SELECT dimension_type, dimension_key, SUM(total_count) AS total_count, SUM(blocked_count) AS blocked_count
+        FROM sys_risk_stat_rollup
+        WHERE (granularity = 2 AND stat_time >= #{hourStart} AND stat_time < #{hourEnd})
+           OR (granularity = 1 AND stat_time >= #{startTime} AND stat_time < #{hourStart})
+           OR (granularity = 1 AND stat_time >= #{hourEnd} AND stat_time < #{endTime})
+        GROUP BY dimension_type, dimension_key
+    """)
+    List<RiskStatRollup> sumByDimension(@Param("startTime") LocalDateTime startTime,
+                                        @Param("hourStart") LocalDateTime hourStart,
+                                        @Param("hourEnd") LocalDateTime hourEnd,
+                                        @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 按小时汇总时间窗口内的检查次数
+     *
+     * @param startTime 开始时间
+     * @param hourStart 窗口内第一个整点，无整点时等于结束时间
+     * @param hourEnd 窗口内最后一个整点，无整点时等于结束时间
+     * @param endTime 结束时间(不含)
+     * @return 各小时的检查次数合计，statTime为小时起点
+     */
+    @Select("""
+        SELECT TIMESTAMP(DATE_FORMAT(stat_time, '%Y-%m-%d %H:00:00')) AS stat_time,
+            SUM(total_count) AS total_count, SUM(blocked_count) AS blocked_count
+        FROM sys_risk_stat_rollup
+        WHERE dimension_type = 1
+          AND ((granularity = 2 AND stat_time >= #{hourStart} AND stat_time < #{hourEnd})
+            OR (granularity = 1 AND stat_time >= #{startTime} AND stat_time < #{hourStart})
+            OR (granularity = 1 AND stat_time >= #{hourEnd} AND stat_time < #{endTime}))
+        GROUP BY TIMESTAMP(DATE_FORMAT(stat_time, '%Y-%m-%d %H:00:00'))
+        ORDER BY stat_time
+    """)
+    List<RiskStatRollup> sumByHour(@Param("startTime") LocalDateTime startTime,
+                                   @Param("hourStart") LocalDateTime hourStart,
+                                   @Param("hourEnd") LocalDateTime hourEnd,
+                                   @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 删除早于指定时间的分钟汇总
+     *
+     * @param before 截止时间(不含)
+     * @return 删除条数
+     */
+    @Delete("DELETE FROM sys_risk_stat_rollup WHERE granularity = 1 AND stat_time < #{before} LIMIT 10000")
+    int deleteMinuteRollupsBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,84 @@
+package com.autopay.backend.repository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 汇总查询窗口
+ * 将[开始时间, 结束时间)拆分为整天、首尾整小时和首尾不足一小时三部分，分别读取天、小时和分钟汇总；
+ * 各部分边界在对应粒度无法拆分时退化为空区间
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public final class RollupWindow {
+
+    private final LocalDateTime start;
+    private final LocalDateTime hourStart;
+    private final LocalDateTime dayStart;
+    private final LocalDateTime dayEnd;
+    private final LocalDateTime hourEnd;
+    private final LocalDateTime end;
+
+    private RollupWindow(LocalDateTime start, LocalDateTime hourStart, LocalDateTime dayStart,
+                         LocalDateTime dayEnd, LocalDateTime hourEnd, LocalDateTime end) {
+        this.start = start;
+        this.hourStart = hourStart;
+        this.dayStart = dayStart;
+        this.dayEnd = dayEnd;
+        this.hourEnd = hourEnd;
+        this.end = end;
+    }
+
+    /**
+     * 按分钟对齐构造查询窗口，结束时间包含在内
+     */
+    public static RollupWindow of(LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDateTime start = startTime.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime end = endTime.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        if (!start.isBefore(end)) {
+            return new RollupWindow(start, start, start, start, start, start);
+        }
+        LocalDateTime hourStart = ceil(start, ChronoUnit.HOURS);
+        LocalDateTime hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (!hourStart.isBefore(hourEnd)) {
+            return new RollupWindow(start, end, end, end, end, end);
+        }
+        LocalDateTime dayStart = ceil(hourStart, ChronoUnit.DAYS);
+        LocalDateTime dayEnd = hourEnd.truncatedTo(ChronoUnit.DAYS);
+        if (!dayStart.isBefore(dayEnd)) {
+            dayStart = hourEnd;
+            dayEnd = hourEnd;
+        }
+        return new RollupWindow(start, hourStart, dayStart, dayEnd, hourEnd, end);
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, ChronoUnit unit) {
+        LocalDateTime truncated = time.truncatedTo(unit);
+        return truncated.isBefore(time) ? truncated.plus(1, unit) : truncated;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public LocalDateTime getHourStart() {
+        return hourStart;
+    }
+
+    public LocalDateTime getDayStart() {
+        return dayStart;
+    }
+
+    public LocalDateTime getDayEnd() {
+        return dayEnd;
+    }
+
+    public LocalDateTime getHourEnd() {
+        return hourEnd;
+    }
+
+    public LocalDateTime getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,150 @@
+package com.autopay.backend.repository;
+
+import com.autopay.backend.entity.TransactionRollup;
+import com.autopay.backend.entity.TransactionStatistics;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 交易汇总数据访问层
+ * 时间桶按"清零 + 重新聚合"整体重算，重复执行结果相同，多个节点同时重算同一时间桶也不会重复累加
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Mapper
+public interface TransactionRollupRepository extends BaseMapper<TransactionRollup> {
+
+    /**
+     * 清零时间范围内指定粒度的汇总，清零后未重新写入的分组(如状态已迁出)保持为0
+     *
+     * @param granularity 粒度
+     * @param startTime   开始时间
+     * @param endTime     结束时间(不含)
+     * @return 影响行数
+     */
+    @Update("""
+        UPDATE ap_transaction_rollup SET total_count = 0, total_amount = 0, total_fee = 0, updated_at = NOW()
+        WHERE granularity = #{granularity} AND bucket_time >= #{startTime} AND bucket_time < #{endTime}
+    """)
+    int resetBuckets(@Param("granularity") int granularity,
+                     @Param("startTime") LocalDateTime startTime,
+                     @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 由订单表聚合一个时间桶，先按渠道、状态和金额区间聚合再关联未删除的渠道，渠道行不影响计数
+     *
+     * @param granularity 粒度
+     * @param bucketTime  时间桶起点
+     * @param endTime     时间桶终点(不含)
+     * @return 影响行数
+     */
+    @Insert("""
+        INSERT INTO ap_transaction_rollup (granularity, bucket_time, payment_channel_id, channel_code, channel_name,
+            transaction_status, amount_band, total_count, total_amount, total_fee, updated_at)
+        SELECT #{granularity}, #{bucketTime}, c.id, t.channel_code, c.channel_name,
+            t.transaction_status, t.amount_band, t.total_count, t.total_amount, t.total_fee, NOW()
+        FROM (
+            SELECT d.channel_code, d.transaction_status, d.amount_band,
+                COUNT(*) AS total_count, SUM(d.amount) AS total_amount, SUM(d.fee) AS total_fee
+            FROM (
+                SELECT o.channel_code,
+                    CASE o.status WHEN 3 THEN 'SUCCESS' WHEN 7 THEN 'FAILED' WHEN 4 THEN 'CLOSED'
+                        WHEN 5 THEN 'REFUNDED' WHEN 6 THEN 'REFUNDING' ELSE 'PENDING' END AS transaction_status,
+                    CASE
+                        WHEN o.total_amount < 10 THEN 0
+                        WHEN o.total_amount < 50 THEN 1
+                        WHEN o.total_amount < 100 THEN 2
+                        WHEN o.total_amount < 500 THEN 3
+                        WHEN o.total_amount < 1000 THEN 4
+                        ELSE 5
+                    END AS amount_band,
+                    ROUND(o.total_amount * 100) AS amount,
+                    ROUND(COALESCE(o.fee_amount, 0) * 100) AS fee
+                FROM ap_payment_order o
+                WHERE o.create_time >= #{bucketTime} AND o.create_time < #{endTime} AND o.deleted = 0
+            ) d
+            GROUP BY d.channel_code, d.transaction_status, d.amount_band
+        ) t
+        LEFT JOIN ap_payment_channel c ON c.channel_code = t.channel_code AND c.deleted = 0
+        ON DUPLICATE KEY UPDATE
+            payment_channel_id = VALUES(payment_channel_id),
+            channel_name = VALUES(channel_name),
+            total_count = VALUES(total_count),
+            total_amount = VALUES(total_amount),
+            total_fee = VALUES(total_fee),
+            updated_at = NOW()
+    """)
+    int rollupOrders(@Param("granularity") int granularity,
+                     @Param("bucketTime") LocalDateTime bucketTime,
+                     @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 由较细粒度的汇总聚合一个时间桶
+     *
+     * @param granularity       目标粒度
+     * @param sourceGranularity 来源粒度
+     * @param bucketTime        时间桶起点
+     * @param endTime           时间桶终点(不含)
+     * @return 影响行数
+     */
+    @Insert("""
+        INSERT INTO ap_transaction_rollup (granularity, bucket_time, payment_channel_id, channel_code, channel_name,
+            transaction_status, amount_band, total_count, total_amount, total_fee, updated_at)
+        SELECT #{granularity}, #{bucketTime}, MAX(payment_channel_id), channel_code, MAX(channel_name),
+            transaction_status, amount_band, SUM(total_count), SUM(total_amount), SUM(total_fee), NOW()
+        FROM ap_transaction_rollup
+        WHERE granularity = #{sourceGranularity} AND bucket_time >= #{bucketTime} AND bucket_time < #{endTime}
+            AND total_count > 0
+        GROUP BY channel_code, transaction_status, amount_band
+        ON DUPLICATE KEY UPDATE
+            payment_channel_id = VALUES(payment_channel_id),
+            channel_name = VALUES(channel_name),
+            total_count = VALUES(total_count),
+            total_amount = VALUES(total_amount),
+            total_fee = VALUES(total_fee),
+            updated_at = NOW()
+    """)
+    int rollupRollups(@Param("granularity") int granularity,
+                      @Param("sourceGranularity") int sourceGranularity,
+                      @Param("bucketTime") LocalDateTime bucketTime,
+                      @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 按分钟汇总交易笔数和金额，用于初始化实时交易计数，手续费只计支付成功的交易
+     *
+     * @param startTime 开始时间
+     * @return 每分钟一条，statisticTime为分钟起点
+     */
+    @Select("""
+        SELECT
+            DATE_FORMAT(bucket_time, '%Y-%m-%d %H:%i:00') as statistic_time,
+            SUM(total_count) as total_count,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_count ELSE 0 END) as success_count,
+            SUM(CASE WHEN transaction_status = 'FAILED' THEN total_count ELSE 0 END) as failure_count,
+            SUM(total_amount) as total_amount,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_amount ELSE 0 END) as success_amount,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_fee ELSE 0 END) as total_fee
+        FROM ap_transaction_rollup
+        WHERE granularity = 1 AND bucket_time >= #{startTime} AND total_count > 0
+        GROUP BY bucket_time
+    """)
+    List<TransactionStatistics> sumMinuteRollups(@Param("startTime") LocalDateTime startTime);
+
+    /**
+     * 删除早于指定时间的分钟汇总
+     *
+     * @param before 截止时间(不含)
+     * @return 删除条数
+     */
+    @Delete("DELETE FROM ap_transaction_rollup WHERE granularity = 1 AND bucket_time < #{before} LIMIT 10000")
+    int deleteMinuteRollupsBefore(@Param("before") LocalDateTime before);
+}
@@ -6,12 +6,13 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
 /**
  * 交易统计数据访问层接口
+ * 按日、按月、按渠道、渠道排行和金额分布统计读取交易汇总表(见TransactionRollupEngine)，不扫描交易明细；
+ * 近24小时概览和小时趋势由内存计数提供(见RealtimeTransactionCounter)
  *
  * @author autoPay
  * @since 2024-01-01
@@ -19,187 +20,188 @@ import java.util.List;
 @Mapper
 public interface TransactionStatisticsRepository extends BaseMapper<TransactionStatistics> {
 
+    /**
+     * 汇总查询窗口条件：整天读天汇总，首尾整小时读小时汇总，首尾不足一小时读分钟汇总
+     */
+    String ROLLUP_WINDOW = """
+            total_count > 0 AND (
+                (granularity = 3 AND bucket_time >= #{w.dayStart} AND bucket_time < #{w.dayEnd})
+                OR (granularity = 2 AND bucket_time >= #{w.hourStart} AND bucket_time < #{w.dayStart})
+                OR (granularity = 2 AND bucket_time >= #{w.dayEnd} AND bucket_time < #{w.hourEnd})
+                OR (granularity = 1 AND bucket_time >= #{w.start} AND bucket_time < #{w.hourStart})
+                OR (granularity = 1 AND bucket_time >= #{w.hourEnd} AND bucket_time < #{w.end}))
+            """;
+
+    /**
+     * 汇总表上的交易指标，金额单位为分
+     */
+    String ROLLUP_METRICS = """
+            SUM(total_count) as total_count,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_count ELSE 0 END) as success_count,
+            SUM(CASE WHEN transaction_status = 'FAILED' THEN total_count ELSE 0 END) as failure_count,
+            SUM(total_amount) as total_amount,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_amount ELSE 0 END) as success_amount,
+            ROUND(SUM(total_amount) / SUM(total_count)) as average_amount,
+            ROUND(SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_count ELSE 0 END) * 100.0 / SUM(total_count), 2) as success_rate,
+            ROUND(SUM(CASE WHEN transaction_status = 'FAILED' THEN total_count ELSE 0 END) * 100.0 / SUM(total_count), 2) as failure_rate,
+            SUM(total_fee) as total_fee,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_amount - total_fee ELSE 0 END) as net_amount
+            """;
+
     /**
      * 按日统计交易数据
      */
+    default List<TransactionStatistics> getDailyStatistics(LocalDateTime startDate, LocalDateTime endDate) {
+        return getDailyRollups(RollupWindow.of(startDate, endDate));
+    }
+
+    /**
+     * 由汇总表按日统计交易数据
+     */
     @Select("""
-        SELECT 
+        SELECT
             'daily' as dimension,
-            DATE(created_at) as statistic_time,
-            payment_channel_id,
+            DATE(bucket_time) as statistic_time,
+            MAX(payment_channel_id) as payment_channel_id,
             channel_code,
-            channel_name,
+            MAX(channel_name) as channel_name,
             transaction_status,
-            COUNT(*) as total_count,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) as success_count,
-            SUM(CASE WHEN transaction_status = 'FAILED' THEN 1 ELSE 0 END) as failure_count,
-            SUM(amount) as total_amount,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN amount ELSE 0 END) as success_amount,
-            AVG(amount) as average_amount,
-            ROUND(SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) * 100.0 / COUNT(*), 2) as success_rate,
-            ROUND(SUM(CASE WHEN transaction_status = 'FAILED' THEN 1 ELSE 0 END) * 100.0 / COUNT(*), 2) as failure_rate,
-            SUM(platform_fee) as total_fee,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN (amount - platform_fee) ELSE 0 END) as net_amount,
-            DATE_FORMAT(DATE(created_at), '%Y-%m-%d 00:00:00') as stat_start_time,
-            DATE_FORMAT(DATE(created_at), '%Y-%m-%d 23:59:59') as stat_end_time,
+        """ + ROLLUP_METRICS + """
+            ,
+            DATE_FORMAT(DATE(bucket_time), '%Y-%m-%d 00:00:00') as stat_start_time,
+            DATE_FORMAT(DATE(bucket_time), '%Y-%m-%d 23:59:59') as stat_end_time,
             NOW() as generated_at
-        FROM transaction 
-        WHERE created_at BETWEEN #{startDate} AND #{endDate}
-        GROUP BY DATE(created_at), payment_channel_id, channel_code, channel_name, transaction_status
+        FROM ap_transaction_rollup
+        WHERE
+        """ + ROLLUP_WINDOW + """
+        GROUP BY DATE(bucket_time), channel_code, transaction_status
         ORDER BY statistic_time DESC
     """)
-    List<TransactionStatistics> getDailyStatistics(@Param("startDate") LocalDateTime startDate, 
-                                                   @Param("endDate") LocalDateTime endDate);
+    List<TransactionStatistics> getDailyRollups(@Param("w") RollupWindow window);
 
     /**
      * 按月统计交易数据
      */
+    default List<TransactionStatistics> getMonthlyStatistics(LocalDateTime startDate, LocalDateTime endDate) {
+        return getMonthlyRollups(RollupWindow.of(startDate, endDate));
+    }
+
+    /**
+     * 由汇总表按月统计交易数据
+     */
     @Select("""
-        SELECT 
+        SELECT
             'monthly' as dimension,
-            DATE_FORMAT(created_at, '%Y-%m') as statistic_time,
-            payment_channel_id,
+            DATE_FORMAT(bucket_time, '%Y-%m') as statistic_time,
+            MAX(payment_channel_id) as payment_channel_id,
             channel_code,
-            channel_name,
+            MAX(channel_name) as channel_name,
             transaction_status,
-            COUNT(*) as total_count,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) as success_count,
-            SUM(CASE WHEN transaction_status = 'FAILED' THEN 1 ELSE 0 END) as failure_count,
-            SUM(amount) as total_amount,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN amount ELSE 0 END) as success_amount,
-            AVG(amount) as average_amount,
-            ROUND(SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) * 100.0 / COUNT(*), 2) as success_rate,
-            ROUND(SUM(CASE WHEN transaction_status = 'FAILED' THEN 1 ELSE 0 END) * 100.0 / COUNT(*), 2) as failure_rate,
-            SUM(platform_fee) as total_fee,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN (amount - platform_fee) ELSE 0 END) as net_amount,
-            DATE_FORMAT(DATE_FORMAT(created_at, '%Y-%m-01'), '%Y-%m-%d %H:%i:%s') as stat_start_time,
-            DATE_FORMAT(LAST_DAY(created_at), '%Y-%m-%d %H:%i:%s') as stat_end_time,
+        """ + ROLLUP_METRICS + """
+            ,
+            DATE_FORMAT(MIN(bucket_time), '%Y-%m-01 00:00:00') as stat_start_time,
+            DATE_FORMAT(LAST_DAY(MIN(bucket_time)), '%Y-%m-%d 23:59:59') as stat_end_time,
             NOW() as generated_at
-        FROM transaction 
-        WHERE created_at BETWEEN #{startDate} AND #{endDate}
-        GROUP BY DATE_FORMAT(created_at, '%Y-%m'), payment_channel_id, channel_code, channel_name, transaction_status
+        FROM ap_transaction_rollup
+        WHERE
+        """ + ROLLUP_WINDOW + """
+        GROUP BY DATE_FORMAT(bucket_time, '%Y-%m'), channel_code, transaction_status
         ORDER BY statistic_time DESC
     """)
-    List<TransactionStatistics> getMonthlyStatistics(@Param("startDate") LocalDateTime startDate, 
-                                                     @Param("endDate") LocalDateTime endDate);
+    List<TransactionStatistics> getMonthlyRollups(@Param("w") RollupWindow window);
 
     /**
      * 按渠道统计交易数据
      */
+    default List<TransactionStatistics> getChannelStatistics(LocalDateTime startDate, LocalDateTime endDate,
+                                                             String dateStr) {
+        return getChannelRollups(RollupWindow.of(startDate, endDate), startDate, endDate, dateStr);
+    }
+
+    /**
+     * 由汇总表按渠道统计交易数据
+     */
     @Select("""
-        SELECT 
+        SELECT
             'channel' as dimension,
             #{dateStr} as statistic_time,
-            payment_channel_id,
+            MAX(payment_channel_id) as payment_channel_id,
             channel_code,
-            channel_name,
+            MAX(channel_name) as channel_name,
             transaction_status,
-            COUNT(*) as total_count,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) as success_count,
-            SUM(CASE WHEN transaction_status = 'FAILED' THEN 1 ELSE 0 END) as failure_count,
-            SUM(amount) as total_amount,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN amount ELSE 0 END) as success_amount,
-            AVG(amount) as average_amount,
-            ROUND(SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) * 100.0 / COUNT(*), 2) as success_rate,
-            ROUND(SUM(CASE WHEN transaction_status = 'FAILED' THEN 1 ELSE 0 END) * 100.0 / COUNT(*), 2) as failure_rate,
-            SUM(platform_fee) as total_fee,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN (amount - platform_fee) ELSE 0 END) as net_amount,
+        """ + ROLLUP_METRICS + """
+            ,
             #{startDate} as stat_start_time,
             #{endDate} as stat_end_time,
             NOW() as generated_at
-        FROM transaction 
-        WHERE created_at BETWEEN #{startDate} AND #{endDate}
-        GROUP BY payment_channel_id, channel_code, channel_name, transaction_status
+        FROM ap_transaction_rollup
+        WHERE
+        """ + ROLLUP_WINDOW + """
+        GROUP BY channel_code, transaction_status
         ORDER BY total_amount DESC
     """)
-    List<TransactionStatistics> getChannelStatistics(@Param("startDate") LocalDateTime startDate, 
-                                                     @Param("endDate") LocalDateTime endDate, 
-                                                     @Param("dateStr") String dateStr);
+    List<TransactionStatistics> getChannelRollups(@Param("w") RollupWindow window,
+                                                  @Param("startDate") LocalDateTime startDate,
+                                                  @Param("endDate") LocalDateTime endDate,
+                                                  @Param("dateStr") String dateStr);
 
     /**
-     * 获取实时交易概览数据
+     * 获取渠道排行数据
      */
-    @Select("""
-        SELECT 
-            COUNT(*) as total_count,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) as success_count,
-            SUM(CASE WHEN transaction_status = 'FAILED' THEN 1 ELSE 0 END) as failure_count,
-            SUM(amount) as total_amount,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN amount ELSE 0 END) as success_amount,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) * 100.0 / COUNT(*) as success_rate,
-            SUM(platform_fee) as total_fee
-        FROM transaction 
-        WHERE created_at >= DATE_SUB(NOW(), INTERVAL 24 HOUR)
-    """)
-    TransactionStatistics getRealtimeOverview();
+    default List<TransactionStatistics> getChannelRanking(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        return getChannelRankingRollups(RollupWindow.of(startDate, endDate), limit);
+    }
 
     /**
-     * 获取渠道排行数据
+     * 由汇总表获取渠道排行数据
      */
     @Select("""
-        SELECT 
+        SELECT
             channel_code,
-            channel_name,
-            COUNT(*) as total_count,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) as success_count,
-            SUM(amount) as total_amount,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN amount ELSE 0 END) as success_amount,
-            ROUND(SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) * 100.0 / COUNT(*), 2) as success_rate
-        FROM transaction 
-        WHERE created_at BETWEEN #{startDate} AND #{endDate}
-        GROUP BY channel_code, channel_name
+            MAX(channel_name) as channel_name,
+            SUM(total_count) as total_count,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_count ELSE 0 END) as success_count,
+            SUM(total_amount) as total_amount,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_amount ELSE 0 END) as success_amount,
+            ROUND(SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_count ELSE 0 END) * 100.0 / SUM(total_count), 2) as success_rate
+        FROM ap_transaction_rollup
+        WHERE
+        """ + ROLLUP_WINDOW + """
+        GROUP BY channel_code
         ORDER BY success_amount DESC
         LIMIT #{limit}
     """)
-    List<TransactionStatistics> getChannelRanking(@Param("startDate") LocalDateTime startDate, 
-                                                  @Param("endDate") LocalDateTime endDate, 
-                                                  @Param("limit") int limit);
+    List<TransactionStatistics> getChannelRankingRollups(@Param("w") RollupWindow window, @Param("limit") int limit);
 
     /**
-     * 获取近24小时趋势数据
+     * 获取金额分布统计
      */
-    @Select("""
-        SELECT 
-            DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00') as statistic_time,
-            COUNT(*) as total_count,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN amount ELSE 0 END) as success_amount
-        FROM transaction 
-        WHERE created_at >= DATE_SUB(NOW(), INTERVAL 24 HOUR)
-        GROUP BY DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00')
-        ORDER BY statistic_time
-    """)
-    List<TransactionStatistics> getHourlyTrend();
+    default List<TransactionStatistics> getAmountDistribution(LocalDateTime startDate, LocalDateTime endDate) {
+        return getAmountDistributionRollups(RollupWindow.of(startDate, endDate));
+    }
 
     /**
-     * 获取金额分布统计
+     * 由汇总表获取金额分布统计
      */
     @Select("""
-        SELECT 
-            CASE 
-                WHEN amount < 1000 THEN '0-10元'
-                WHEN amount < 5000 THEN '10-50元'
-                WHEN amount < 10000 THEN '50-100元'
-                WHEN amount < 50000 THEN '100-500元'
-                WHEN amount < 100000 THEN '500-1000元'
+        SELECT
+            CASE amount_band
+                WHEN 0 THEN '0-10元'
+                WHEN 1 THEN '10-50元'
+                WHEN 2 THEN '50-100元'
+                WHEN 3 THEN '100-500元'
+                WHEN 4 THEN '500-1000元'
                 ELSE '1000元以上'
             END as dimension,
-            COUNT(*) as total_count,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN 1 ELSE 0 END) as success_count,
-            SUM(amount) as total_amount,
-            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN amount ELSE 0 END) as success_amount
-        FROM transaction 
-        WHERE created_at BETWEEN #{startDate} AND #{endDate}
-        GROUP BY 
-            CASE 
-                WHEN amount < 1000 THEN '0-10元'
-                WHEN amount < 5000 THEN '10-50元'
-                WHEN amount < 10000 THEN '50-100元'
-                WHEN amount < 50000 THEN '100-500元'
-                WHEN amount < 100000 THEN '500-1000元'
-                ELSE '1000元以上'
-            END
-        ORDER BY MIN(amount)
+            SUM(total_count) as total_count,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_count ELSE 0 END) as success_count,
+            SUM(total_amount) as total_amount,
+            SUM(CASE WHEN transaction_status = 'SUCCESS' THEN total_amount ELSE 0 END) as success_amount
+        FROM ap_transaction_rollup
+        WHERE
+        """ + ROLLUP_WINDOW + """
+        GROUP BY amount_band
+        ORDER BY amount_band
     """)
-    List<TransactionStatistics> getAmountDistribution(@Param("startDate") LocalDateTime startDate, 
-                                                     @Param("endDate") LocalDateTime endDate);
+    List<TransactionStatistics> getAmountDistributionRollups(@Param("w") RollupWindow window);
 }
\ No newline at end of file
@@ -5,14 +5,22 @@ import com.autopay.backend.repository.TransactionStatisticsRepository;
 import com.autopay.backend.repository.RiskMonitoringRepository;
 import com.autopay.backend.repository.TransactionRepository;
 import com.autopay.backend.repository.PaymentChannelRepository;
+import com.autopay.backend.service.analytics.RealtimeTransactionCounter;
+import com.autopay.backend.service.analytics.ReportQueryGraph;
+import com.autopay.backend.service.analytics.TransactionColumnStore;
+import com.autopay.backend.service.analytics.TransactionReportExporter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -27,10 +35,29 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AnalyticsService {
 
+    /**
+     * 交易概览展示的渠道排行条数
+     */
+    private static final int OVERVIEW_RANKING_SIZE = 5;
+
+    /**
+     * 渠道分析展示的渠道排行条数
+     */
+    private static final int CHANNEL_RANKING_SIZE = 10;
+
     private final TransactionStatisticsRepository statisticsRepository;
     private final RiskMonitoringRepository riskMonitoringRepository;
     private final TransactionRepository transactionRepository;
     private final PaymentChannelRepository paymentChannelRepository;
+    private final RealtimeTransactionCounter realtimeTransactionCounter;
+    private final TransactionReportExporter transactionReportExporter;
+    private final TransactionColumnStore transactionColumnStore;
+
+    @Qualifier("analyticsQueryExecutor")
+    private final Executor analyticsQueryExecutor;
+
+    @Value("${autopay.analytics.report.deadline-ms:10000}")
+    private long reportDeadlineMillis;
 
     /**
      * 获取交易概览数据
@@ -41,23 +68,9 @@ public class AnalyticsService {
         LocalDateTime endDate = LocalDateTime.now();
         LocalDateTime startDate = getStartDateByRange(timeRange);
         
-        // 1. 获取实时概览数据
-        TransactionStatistics realtimeData = statisticsRepository.getRealtimeOverview();
-        
-        // 2. 获取渠道排行
-        List<TransactionStatistics> channelRanking = statisticsRepository.getChannelRanking(startDate, endDate, 5);
-        
-        // 3. 获取小时趋势
-        List<TransactionStatistics> hourlyTrend = statisticsRepository.getHourlyTrend();
-        
-        // 4. 组装返回数据
-        Map<String, Object> result = new HashMap<>();
-        result.put("realtime", realtimeData);
-        result.put("channelRanking", channelRanking);
-        result.put("hourlyTrend", hourlyTrend);
-        result.put("timeRange", timeRange);
-        result.put("startDate", startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-        result.put("endDate", endDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        ReportQueryGraph graph = new ReportQueryGraph(analyticsQueryExecutor);
+        String overview = planTransactionOverview(graph, timeRange, startDate, endDate, OVERVIEW_RANKING_SIZE);
+        Map<String, Object> result = graph.execute(reportDeadlineMillis).get(overview);
         
         log.info("交易概览数据获取完成");
         return result;
@@ -72,32 +85,9 @@ public class AnalyticsService {
         LocalDateTime endDate = LocalDateTime.now();
         LocalDateTime startDate = getStartDateByRange(timeRange);
         
-        List<TransactionStatistics> trendData;
-        
-        switch (dimension.toLowerCase()) {
-            case "daily":
-                trendData = statisticsRepository.getDailyStatistics(startDate, endDate);
-                break;
-            case "monthly":
-                trendData = statisticsRepository.getMonthlyStatistics(startDate, endDate);
-                break;
-            default:
-                throw new IllegalArgumentException("不支持的统计维度：" + dimension);
-        }
-        
-        // 按时间排序
-        trendData = trendData.stream()
-                .sorted(Comparator.comparing(TransactionStatistics::getStatisticTime))
-                .collect(Collectors.toList());
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("dimension", dimension);
-        result.put("timeRange", timeRange);
-        result.put("startDate", startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-        result.put("endDate", endDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-        result.put("trendData", trendData);
-        
-        return result;
+        ReportQueryGraph graph = new ReportQueryGraph(analyticsQueryExecutor);
+        String trend = planTransactionTrend(graph, dimension, timeRange, startDate, endDate);
+        return graph.execute(reportDeadlineMillis).get(trend);
     }
 
     /**
@@ -108,25 +98,10 @@ public class AnalyticsService {
         
         LocalDateTime endDate = LocalDateTime.now();
         LocalDateTime startDate = getStartDateByRange(timeRange);
-        String dateStr = timeRange + " 分析";
-        
-        // 1. 获取渠道统计
-        List<TransactionStatistics> channelStats = statisticsRepository.getChannelStatistics(startDate, endDate, dateStr);
-        
-        // 2. 获取渠道排行
-        List<TransactionStatistics> channelRanking = statisticsRepository.getChannelRanking(startDate, endDate, 10);
-        
-        // 3. 获取渠道分布（按金额区间）
-        List<TransactionStatistics> amountDistribution = statisticsRepository.getAmountDistribution(startDate, endDate);
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("channelStats", channelStats);
-        result.put("channelRanking", channelRanking);
-        result.put("amountDistribution", amountDistribution);
-        result.put("timeRange", timeRange);
-        result.put("totalChannels", channelRanking.size());
-        
-        return result;
+        ReportQueryGraph graph = new ReportQueryGraph(analyticsQueryExecutor);
+        String channel = planChannelAnalysis(graph, timeRange, startDate, endDate);
+        return graph.execute(reportDeadlineMillis).get(channel);
     }
 
     /**
@@ -164,6 +139,7 @@ public class AnalyticsService {
 
     /**
      * 生成交易报表
+     * 概览、趋势和渠道分析所需的查询登记到同一张依赖图，重复的查询只执行一次，相互独立的查询并行执行
      */
     public Map<String, Object> generateTransactionReport(String reportType, String timeRange, String format) {
         log.info("生成交易报表，类型：{}，时间范围：{}，格式：{}", reportType, timeRange, format);
@@ -171,10 +147,15 @@ public class AnalyticsService {
         LocalDateTime endDate = LocalDateTime.now();
         LocalDateTime startDate = getStartDateByRange(timeRange);
         
-        // 1. 获取基础数据
-        Map<String, Object> overviewData = getTransactionOverview(timeRange);
-        Map<String, Object> trendData = getTransactionTrend("daily", timeRange);
-        Map<String, Object> channelData = getChannelAnalysis(timeRange);
+        // 1. 获取基础数据，概览的渠道排行取渠道分析排行的前几名
+        ReportQueryGraph graph = new ReportQueryGraph(analyticsQueryExecutor);
+        String overviewKey = planTransactionOverview(graph, timeRange, startDate, endDate, CHANNEL_RANKING_SIZE);
+        String trendKey = planTransactionTrend(graph, "daily", timeRange, startDate, endDate);
+        String channelKey = planChannelAnalysis(graph, timeRange, startDate, endDate);
+        ReportQueryGraph.Results results = graph.execute(reportDeadlineMillis);
+        Map<String, Object> overviewData = results.get(overviewKey);
+        Map<String, Object> trendData = results.get(trendKey);
+        Map<String, Object> channelData = results.get(channelKey);
         
         // 2. 生成报表内容
         Map<String, Object> report = new HashMap<>();
@@ -206,6 +187,20 @@ public class AnalyticsService {
         return report;
     }
 
+    /**
+     * 流式导出交易明细报表，逐行写入输出流，不在内存中生成完整报表
+     *
+     * @param format 导出格式：csv、ndjson
+     * @param out    输出流，如HTTP响应输出流，调用方负责关闭
+     * @return 导出行数
+     */
+    public long exportTransactionDetails(String timeRange, String format, OutputStream out) {
+        log.info("导出交易明细报表，时间范围：{}，格式：{}", timeRange, format);
+        
+        TransactionReportExporter.Format exportFormat = TransactionReportExporter.Format.fromName(format);
+        return transactionReportExporter.export(getStartDateByRange(timeRange), LocalDateTime.now(), exportFormat, out);
+    }
+
     /**
      * 获取关键指标（KPI）
      */
@@ -216,7 +211,7 @@ public class AnalyticsService {
         LocalDateTime startDate = getStartDateByRange(timeRange);
         
         // 获取实时概览数据
-        TransactionStatistics realtimeData = statisticsRepository.getRealtimeOverview();
+        TransactionStatistics realtimeData = realtimeTransactionCounter.getOverview();
         
         Map<String, Object> kpis = new HashMap<>();
         kpis.put("totalTransactions", realtimeData.getTotalCount());
@@ -306,7 +301,7 @@ public class AnalyticsService {
      */
     private Map<String, Double> calculateGrowthRates(LocalDateTime startDate, LocalDateTime endDate) {
         // 获取当前周期的数据
-        TransactionStatistics currentPeriod = statisticsRepository.getRealtimeOverview();
+        TransactionStatistics currentPeriod = realtimeTransactionCounter.getOverview();
         
         // 获取上一个周期的数据（简化处理，实际需要根据时间范围计算）
         Map<String, Double> growth = new HashMap<>();
@@ -319,6 +314,108 @@ public class AnalyticsService {
         return growth;
     }
 
+    /**
+     * 登记交易概览的查询，实时概览和小时趋势读取内存计数，在组装时获取
+     *
+     * @param rankingSize 渠道排行查询条数，不小于概览展示的条数，与渠道分析相同时共用一次查询
+     */
+    private String planTransactionOverview(ReportQueryGraph graph, String timeRange,
+                                           LocalDateTime startDate, LocalDateTime endDate, int rankingSize) {
+        String ranking = planChannelRanking(graph, startDate, endDate, rankingSize);
+        return graph.assemble("overview:" + timeRange, List.of(ranking), results -> {
+            List<TransactionStatistics> channelRanking = results.get(ranking);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("realtime", realtimeTransactionCounter.getOverview());
+            result.put("channelRanking", channelRanking.size() > OVERVIEW_RANKING_SIZE
+                    ? new ArrayList<>(channelRanking.subList(0, OVERVIEW_RANKING_SIZE)) : channelRanking);
+            result.put("hourlyTrend", realtimeTransactionCounter.getHourlyTrend());
+            result.put("timeRange", timeRange);
+            result.put("startDate", startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            result.put("endDate", endDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            return result;
+        });
+    }
+
+    /**
+     * 登记交易趋势的查询
+     */
+    private String planTransactionTrend(ReportQueryGraph graph, String dimension, String timeRange,
+                                        LocalDateTime startDate, LocalDateTime endDate) {
+        String source;
+        switch (dimension.toLowerCase()) {
+            case "daily":
+                source = graph.query("daily:" + startDate + ":" + endDate,
+                        () -> transactionColumnStore.covers(startDate)
+                                ? transactionColumnStore.getDailyStatistics(startDate, endDate)
+                                : statisticsRepository.getDailyStatistics(startDate, endDate));
+                break;
+            case "monthly":
+                source = graph.query("monthly:" + startDate + ":" + endDate,
+                        () -> statisticsRepository.getMonthlyStatistics(startDate, endDate));
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的统计维度：" + dimension);
+        }
+        String query = source;
+        
+        return graph.assemble("trend:" + dimension + ":" + timeRange, List.of(query), results -> {
+            // 按时间排序
+            List<TransactionStatistics> trendData = results.<List<TransactionStatistics>>get(query).stream()
+                    .sorted(Comparator.comparing(TransactionStatistics::getStatisticTime))
+                    .collect(Collectors.toList());
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("dimension", dimension);
+            result.put("timeRange", timeRange);
+            result.put("startDate", startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+            result.put("endDate", endDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+            result.put("trendData", trendData);
+            return result;
+        });
+    }
+
+    /**
+     * 登记渠道分析的查询
+     */
+    private String planChannelAnalysis(ReportQueryGraph graph, String timeRange,
+                                       LocalDateTime startDate, LocalDateTime endDate) {
+        String dateStr = timeRange + " 分析";
+        
+        // 1. 渠道统计
+        String stats = graph.query("channelStats:" + startDate + ":" + endDate + ":" + dateStr,
+                () -> statisticsRepository.getChannelStatistics(startDate, endDate, dateStr));
+        
+        // 2. 渠道排行
+        String ranking = planChannelRanking(graph, startDate, endDate, CHANNEL_RANKING_SIZE);
+        
+        // 3. 渠道分布（按金额区间），窗口在列式缓存范围内时扫描缓存
+        String distribution = graph.query("amountDistribution:" + startDate + ":" + endDate,
+                () -> transactionColumnStore.covers(startDate)
+                        ? transactionColumnStore.getAmountDistribution(startDate, endDate)
+                        : statisticsRepository.getAmountDistribution(startDate, endDate));
+        
+        return graph.assemble("channel:" + timeRange, List.of(stats, ranking, distribution), results -> {
+            List<TransactionStatistics> channelRanking = results.get(ranking);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("channelStats", results.get(stats));
+            result.put("channelRanking", channelRanking);
+            result.put("amountDistribution", results.get(distribution));
+            result.put("timeRange", timeRange);
+            result.put("totalChannels", channelRanking.size());
+            return result;
+        });
+    }
+
+    private String planChannelRanking(ReportQueryGraph graph, LocalDateTime startDate, LocalDateTime endDate,
+                                      int limit) {
+        return graph.query("channelRanking:" + startDate + ":" + endDate + ":" + limit,
+                () -> transactionColumnStore.covers(startDate)
+                        ? transactionColumnStore.getChannelRanking(startDate, endDate, limit)
+                        : statisticsRepository.getChannelRanking(startDate, endDate, limit));
+    }
+
     /**
      * 根据时间范围获取开始时间
      */
@@ -7,6 +7,7 @@ import com.autopay.backend.dto.response.ApiResult;
 import com.autopay.backend.dto.response.PaymentResponse;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 支付服务接口
@@ -21,6 +22,12 @@ public interface PaymentService {
      */
     ApiResult<PaymentResponse> createPayment(PaymentRequest request);
 
+    /**
+     * 异步创建支付订单
+     * 订单落库后立即提交，渠道调用不占用数据库连接，订单后续更新异步执行
+     */
+    CompletableFuture<PaymentResponse> createPaymentAsync(PaymentRequest request);
+
     /**
      * 查询支付状态
      */
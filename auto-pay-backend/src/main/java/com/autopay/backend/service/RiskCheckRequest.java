@@ -24,6 +24,11 @@ public class RiskCheckRequest {
      */
     private String username;
     
+    /**
+     * 商户号
+     */
+    private String merchantNo;
+    
     /**
      * 订单号
      */
@@ -38,6 +43,16 @@ public class RiskCheckRequest {
      * 交易金额
      */
     private BigDecimal amount;
+
+    /**
+     * 交易金额(分)，风控检查入口换算一次，规则评估直接使用
+     */
+    private Long amountMinorUnits;
+    
+    /**
+     * 卡BIN(银行卡号前6-8位)
+     */
+    private String cardBin;
     
     /**
      * 设备信息
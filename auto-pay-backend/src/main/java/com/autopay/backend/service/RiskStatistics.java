@@ -43,6 +43,11 @@ public class RiskStatistics {
      */
     private List<TimeRangeStats> timeRangeStats;
     
+    /**
+     * 规则触发统计
+     */
+    private List<RuleTriggerStats> ruleTriggerStats;
+    
     @Data
     public static class RiskLevelDistribution {
         private Long normal;
@@ -67,4 +72,12 @@ public class RiskStatistics {
         private Long blockedCount;
         private Double blockRate;
     }
+    
+    @Data
+    public static class RuleTriggerStats {
+        private Long ruleId;
+        private String ruleName;
+        private Long triggerCount;
+        private Long blockedCount;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.autopay.backend.service;
+
+/**
+ * 系统交易号生成器接口
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public interface TradeNoGenerator {
+
+    /**
+     * 生成系统交易号
+     */
+    String nextTradeNo();
+}
@@ -0,0 +1,606 @@
+package com.autopay.backend.service.analytics;
+
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.entity.PaymentOrder.Status;
+import com.autopay.backend.entity.TransactionStatistics;
+import com.autopay.backend.repository.TransactionRollupRepository;
+import com.autopay.backend.util.MoneyUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 实时交易计数器
+ * 近24小时按订单创建时间分钟分桶，订单创建和状态迁移时累加笔数、成功笔数、失败笔数、金额、成功金额和手续费(单位：分)，
+ * 实时概览和小时趋势只读取内存中的分钟桶，不访问数据库。
+ * 各节点定期把有变化的分钟桶写入Redis中本节点的哈希，同时在变更日志中记录这些分钟桶变化时的版本号；
+ * 拉取其他节点时只读取上次拉取的版本之后变化的分钟桶，查询时合并本节点和其他节点的分钟桶
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class RealtimeTransactionCounter {
+
+    private static final String NODES_KEY = "autopay:analytics:realtime:nodes";
+    private static final String NODE_KEY_PREFIX = "autopay:analytics:realtime:node:";
+    private static final String SEED_LOCK_KEY = "autopay:analytics:realtime:seed-lock";
+    private static final String CHANGES_KEY_SUFFIX = ":changes";
+    private static final String VERSION_FIELD = "v";
+    /**
+     * 变更日志中保留的最早版本，早于该版本的拉取方需全量读取
+     */
+    private static final String FLOOR_FIELD = "f";
+
+    /**
+     * 变更日志保留的版本数，按每秒同步一次约为1小时
+     */
+    private static final int CHANGE_LOG_VERSIONS = 3600;
+
+    /**
+     * 原子地写入和删除分钟桶、递增版本号，并以新版本号记录变化的分钟桶；
+     * KEYS[1]为节点哈希，KEYS[2]为变更日志；ARGV为有效期(秒)、日志保留版本数、写入数、写入的字段和值、删除的字段
+     */
+    private static final RedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>("""
+            local version = redis.call('HINCRBY', KEYS[1], 'v', 1)
+            local puts = tonumber(ARGV[3])
+            for i = 0, puts - 1 do
+              redis.call('HSET', KEYS[1], ARGV[4 + i * 2], ARGV[5 + i * 2])
+              redis.call('ZADD', KEYS[2], version, ARGV[4 + i * 2])
+            end
+            for i = 4 + puts * 2, #ARGV do
+              redis.call('HDEL', KEYS[1], ARGV[i])
+              redis.call('ZADD', KEYS[2], version, ARGV[i])
+            end
+            local floor = version - tonumber(ARGV[2])
+            if floor > 0 then
+              redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', floor)
+              redis.call('HSET', KEYS[1], 'f', floor)
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            redis.call('EXPIRE', KEYS[2], ARGV[1])
+            return version
+            """, Long.class);
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    /**
+     * 分钟桶数，覆盖近24小时
+     */
+    private static final int RING_MINUTES = 1440;
+
+    private static final int COUNT = 0;
+    private static final int SUCCESS_COUNT = 1;
+    private static final int FAILURE_COUNT = 2;
+    private static final int AMOUNT = 3;
+    private static final int SUCCESS_AMOUNT = 4;
+    private static final int FEE = 5;
+    private static final int METRICS = 6;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00:00");
+
+    private final TransactionRollupRepository transactionRollupRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+    private final AtomicReferenceArray<MinuteBucket> buckets = new AtomicReferenceArray<>(RING_MINUTES);
+    private final Queue<Long> evictedMinutes = new ConcurrentLinkedQueue<>();
+    private final Map<String, RemoteNode> remoteNodes = new HashMap<>();
+
+    @Value("${autopay.analytics.realtime.node-ttl-hours:25}")
+    private long nodeTtlHours;
+
+    @Value("${autopay.analytics.realtime.seed-from-rollup:true}")
+    private boolean seedFromRollup;
+
+    private volatile RemoteView remoteView = RemoteView.EMPTY;
+
+    private final LongAdder syncFailures = new LongAdder();
+
+    public RealtimeTransactionCounter(TransactionRollupRepository transactionRollupRepository,
+                                      StringRedisTemplate redisTemplate) {
+        this.transactionRollupRepository = transactionRollupRepository;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 集群中没有任何节点的分钟桶时(首次部署或Redis数据丢失)，由一个节点从分钟汇总加载近24小时的数据
+     */
+    @PostConstruct
+    public void init() {
+        if (!seedFromRollup) {
+            return;
+        }
+        try {
+            pruneNodes(System.currentTimeMillis());
+            Long nodes = redisTemplate.opsForZSet().zCard(NODES_KEY);
+            if ((nodes != null && nodes > 0)
+                    || !Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(SEED_LOCK_KEY, nodeId, Duration.ofMinutes(1)))) {
+                return;
+            }
+            long nowMinute = System.currentTimeMillis() / MINUTE_MILLIS;
+            List<TransactionStatistics> minutes = transactionRollupRepository.sumMinuteRollups(
+                    toLocalDateTime(nowMinute - RING_MINUTES + 1));
+            for (TransactionStatistics minute : minutes) {
+                MinuteBucket bucket = bucket(toMinute(LocalDateTime.parse(minute.getStatisticTime(), TIME_FORMATTER)),
+                        nowMinute);
+                if (bucket == null) {
+                    continue;
+                }
+                bucket.add(COUNT, orZero(minute.getTotalCount()));
+                bucket.add(SUCCESS_COUNT, orZero(minute.getSuccessCount()));
+                bucket.add(FAILURE_COUNT, orZero(minute.getFailureCount()));
+                bucket.add(AMOUNT, orZero(minute.getTotalAmount()));
+                bucket.add(SUCCESS_AMOUNT, orZero(minute.getSuccessAmount()));
+                bucket.add(FEE, orZero(minute.getTotalFee()));
+                bucket.dirty = true;
+            }
+            sync();
+            log.info("实时交易计数由分钟汇总初始化：{} 个分钟桶", minutes.size());
+        } catch (Exception e) {
+            log.warn("实时交易计数初始化失败，从空计数开始：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录订单创建
+     */
+    public void recordCreated(PaymentOrder order) {
+        MinuteBucket bucket = bucketOf(order);
+        if (bucket == null) {
+            return;
+        }
+        bucket.add(COUNT, 1L);
+        bucket.add(AMOUNT, amountOf(order.getTotalAmount()));
+        apply(bucket, order, Status.fromCode(order.getStatus()), 1L);
+        bucket.dirty = true;
+    }
+
+    /**
+     * 记录订单状态迁移，成功、失败计数按迁移前后的状态调整
+     */
+    public void recordTransition(PaymentOrder order, Status from, Status to) {
+        if (!affects(from, to)) {
+            return;
+        }
+        MinuteBucket bucket = bucketOf(order);
+        if (bucket == null) {
+            return;
+        }
+        apply(bucket, order, from, -1L);
+        apply(bucket, order, to, 1L);
+        bucket.dirty = true;
+    }
+
+    /**
+     * 状态迁移是否影响计数
+     */
+    public boolean affects(Status from, Status to) {
+        return from != to && (isCounted(from) || isCounted(to));
+    }
+
+    /**
+     * 获取近24小时交易概览
+     */
+    public TransactionStatistics getOverview() {
+        long nowMinute = System.currentTimeMillis() / MINUTE_MILLIS;
+        long[] totals = new long[METRICS];
+        RemoteView remote = remoteView;
+        for (int slot = 0; slot < RING_MINUTES; slot++) {
+            MinuteBucket bucket = buckets.get(slot);
+            if (bucket != null && inWindow(bucket.minute, nowMinute)) {
+                bucket.sumInto(totals);
+            }
+            if (inWindow(remote.minutes[slot], nowMinute)) {
+                addInto(totals, remote.values[slot]);
+            }
+        }
+        TransactionStatistics overview = toStatistics("realtime", totals);
+        overview.setStatStartTime(toLocalDateTime(nowMinute - RING_MINUTES + 1).format(TIME_FORMATTER));
+        overview.setStatEndTime(LocalDateTime.now().format(TIME_FORMATTER));
+        overview.setGeneratedAt(LocalDateTime.now().format(TIME_FORMATTER));
+        return overview;
+    }
+
+    /**
+     * 获取近24小时按小时的交易趋势，按时间升序，只返回有交易的小时
+     */
+    public List<TransactionStatistics> getHourlyTrend() {
+        long nowMinute = System.currentTimeMillis() / MINUTE_MILLIS;
+        Map<Long, long[]> hours = new TreeMap<>();
+        RemoteView remote = remoteView;
+        for (int slot = 0; slot < RING_MINUTES; slot++) {
+            MinuteBucket bucket = buckets.get(slot);
+            if (bucket != null && inWindow(bucket.minute, nowMinute)) {
+                bucket.sumInto(hours.computeIfAbsent(Math.floorDiv(bucket.minute, 60L), h -> new long[METRICS]));
+            }
+            if (inWindow(remote.minutes[slot], nowMinute)) {
+                addInto(hours.computeIfAbsent(Math.floorDiv(remote.minutes[slot], 60L), h -> new long[METRICS]),
+                        remote.values[slot]);
+            }
+        }
+        List<TransactionStatistics> trend = new ArrayList<>(hours.size());
+        for (Map.Entry<Long, long[]> entry : hours.entrySet()) {
+            if (entry.getValue()[COUNT] == 0 && entry.getValue()[SUCCESS_COUNT] == 0) {
+                continue;
+            }
+            TransactionStatistics hour = toStatistics("hourly", entry.getValue());
+            LocalDateTime hourStart = toLocalDateTime(entry.getKey() * 60L);
+            hour.setStatisticTime(hourStart.format(HOUR_FORMATTER));
+            hour.setStatStartTime(hourStart.format(TIME_FORMATTER));
+            hour.setStatEndTime(hourStart.plusHours(1).minusSeconds(1).format(TIME_FORMATTER));
+            trend.add(hour);
+        }
+        return trend;
+    }
+
+    /**
+     * 获取与Redis同步失败的次数
+     */
+    public long getSyncFailures() {
+        return syncFailures.sum();
+    }
+
+    /**
+     * 写出本节点有变化的分钟桶，拉取其他节点有变化的分钟桶
+     */
+    @Scheduled(fixedDelayString = "${autopay.analytics.realtime.sync-interval-ms:1000}")
+    public synchronized void sync() {
+        try {
+            publish();
+            pull();
+        } catch (Exception e) {
+            syncFailures.increment();
+            log.warn("实时交易计数同步失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 有变化的分钟桶以"笔数,成功笔数,失败笔数,金额,成功金额,手续费"写入本节点哈希，
+     * 递增版本号并记录到变更日志；写入失败时重新标记，下次同步重试
+     */
+    private void publish() {
+        long now = System.currentTimeMillis();
+        String key = NODE_KEY_PREFIX + nodeId;
+        List<MinuteBucket> dirty = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(Duration.ofHours(nodeTtlHours).toSeconds()));
+        args.add(String.valueOf(CHANGE_LOG_VERSIONS));
+        args.add("0");
+        for (int slot = 0; slot < RING_MINUTES; slot++) {
+            MinuteBucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.dirty) {
+                // 先清除标记再读取，读取期间的累加会重新标记
+                bucket.dirty = false;
+                dirty.add(bucket);
+                args.add(String.valueOf(bucket.minute));
+                args.add(bucket.encode());
+            }
+        }
+        args.set(2, String.valueOf(dirty.size()));
+        List<Long> evicted = new ArrayList<>();
+        for (Long minute = evictedMinutes.poll(); minute != null; minute = evictedMinutes.poll()) {
+            evicted.add(minute);
+            args.add(String.valueOf(minute));
+        }
+        try {
+            if (!dirty.isEmpty() || !evicted.isEmpty()) {
+                redisTemplate.execute(PUBLISH_SCRIPT, List.of(key, key + CHANGES_KEY_SUFFIX), args.toArray());
+            }
+            redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+        } catch (RuntimeException e) {
+            dirty.forEach(bucket -> bucket.dirty = true);
+            evictedMinutes.addAll(evicted);
+            throw e;
+        }
+    }
+
+    /**
+     * 拉取版本号变化的其他节点，只读取上次拉取后变化的分钟桶，重新合并其他节点的分钟桶；
+     * 首次拉取、节点哈希重建或变更日志已不包含上次拉取的版本时全量读取。
+     * 已停止的节点在有效期内仍参与合并，其记录的交易在移出24小时窗口前保持有效
+     */
+    private void pull() {
+        long now = System.currentTimeMillis();
+        pruneNodes(now);
+        Set<String> members = redisTemplate.opsForZSet().range(NODES_KEY, 0, -1);
+        boolean changed = remoteNodes.keySet().removeIf(node -> members == null || !members.contains(node));
+        if (members != null) {
+            for (String node : members) {
+                if (nodeId.equals(node)) {
+                    continue;
+                }
+                String key = NODE_KEY_PREFIX + node;
+                List<Object> header = redisTemplate.opsForHash().multiGet(key, List.of(VERSION_FIELD, FLOOR_FIELD));
+                RemoteNode cached = remoteNodes.get(node);
+                if (header.get(0) == null) {
+                    changed |= remoteNodes.remove(node) != null;
+                    continue;
+                }
+                long version = Long.parseLong((String) header.get(0));
+                if (cached != null && cached.version == version) {
+                    continue;
+                }
+                long floor = header.get(1) != null ? Long.parseLong((String) header.get(1)) : 0L;
+                // 取版本号之后读取变更日志，版本号之前的变化已全部记录；每次递增版本都有变化的分钟桶，
+                // 日志为空说明哈希不是按变更日志写入的，改为全量读取
+                Set<String> minutes = cached != null && cached.version < version && cached.version >= floor
+                        ? redisTemplate.opsForZSet().rangeByScore(key + CHANGES_KEY_SUFFIX,
+                        cached.version + 1, Double.POSITIVE_INFINITY)
+                        : null;
+                if (minutes != null && !minutes.isEmpty()) {
+                    List<Object> fields = new ArrayList<>(minutes);
+                    List<Object> values = redisTemplate.opsForHash().multiGet(key, fields);
+                    for (int i = 0; i < fields.size(); i++) {
+                        cached.update(Long.parseLong((String) fields.get(i)), (String) values.get(i));
+                    }
+                    cached.version = version;
+                } else {
+                    remoteNodes.put(node, RemoteNode.decode(version, redisTemplate.opsForHash().entries(key)));
+                }
+                changed = true;
+            }
+        }
+        if (changed) {
+            remoteView = RemoteView.merge(remoteNodes.values(), now / MINUTE_MILLIS);
+        }
+    }
+
+    private void pruneNodes(long now) {
+        redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0,
+                now - Duration.ofHours(nodeTtlHours).toMillis());
+    }
+
+    private MinuteBucket bucketOf(PaymentOrder order) {
+        if (order.getCreateTime() == null) {
+            return null;
+        }
+        return bucket(toMinute(order.getCreateTime()), System.currentTimeMillis() / MINUTE_MILLIS);
+    }
+
+    /**
+     * 获取分钟桶，槽位被更早的分钟占用时替换；超出24小时窗口的分钟返回null
+     */
+    private MinuteBucket bucket(long minute, long nowMinute) {
+        if (minute <= nowMinute - RING_MINUTES) {
+            return null;
+        }
+        int slot = (int) Math.floorMod(minute, (long) RING_MINUTES);
+        while (true) {
+            MinuteBucket current = buckets.get(slot);
+            if (current != null && current.minute == minute) {
+                return current;
+            }
+            if (current != null && current.minute > minute) {
+                return null;
+            }
+            MinuteBucket created = new MinuteBucket(minute);
+            if (buckets.compareAndSet(slot, current, created)) {
+                if (current != null) {
+                    evictedMinutes.add(current.minute);
+                }
+                return created;
+            }
+        }
+    }
+
+    /**
+     * 按状态累加成功或失败计数，手续费随支付成功计入
+     */
+    private static void apply(MinuteBucket bucket, PaymentOrder order, Status status, long sign) {
+        if (status == Status.PAID) {
+            bucket.add(SUCCESS_COUNT, sign);
+            bucket.add(SUCCESS_AMOUNT, sign * amountOf(order.getTotalAmount()));
+            bucket.add(FEE, sign * amountOf(order.getFeeAmount()));
+        } else if (status == Status.FAILED) {
+            bucket.add(FAILURE_COUNT, sign);
+        }
+    }
+
+    private static boolean isCounted(Status status) {
+        return status == Status.PAID || status == Status.FAILED;
+    }
+
+    private static TransactionStatistics toStatistics(String dimension, long[] totals) {
+        long count = totals[COUNT];
+        TransactionStatistics statistics = new TransactionStatistics();
+        statistics.setDimension(dimension);
+        statistics.setTotalCount(count);
+        statistics.setSuccessCount(totals[SUCCESS_COUNT]);
+        statistics.setFailureCount(totals[FAILURE_COUNT]);
+        statistics.setTotalAmount(totals[AMOUNT]);
+        statistics.setSuccessAmount(totals[SUCCESS_AMOUNT]);
+        statistics.setTotalFee(totals[FEE]);
+        statistics.setNetAmount(totals[SUCCESS_AMOUNT] - totals[FEE]);
+        statistics.setAverageAmount(count > 0 ? Math.round((double) totals[AMOUNT] / count) : 0L);
+        statistics.setSuccessRate(percent(totals[SUCCESS_COUNT], count));
+        statistics.setFailureRate(percent(totals[FAILURE_COUNT], count));
+        return statistics;
+    }
+
+    private static double percent(long part, long total) {
+        return total > 0 ? Math.round(part * 10000.0 / total) / 100.0 : 0.0;
+    }
+
+    private static boolean inWindow(long minute, long nowMinute) {
+        return minute > nowMinute - RING_MINUTES && minute <= nowMinute;
+    }
+
+    private static void addInto(long[] totals, long[] values) {
+        for (int i = 0; i < METRICS; i++) {
+            totals[i] += values[i];
+        }
+    }
+
+    private static long amountOf(BigDecimal amount) {
+        return amount != null ? MoneyUtil.toMinorUnits(amount) : 0L;
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static long toMinute(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / MINUTE_MILLIS;
+    }
+
+    private static LocalDateTime toLocalDateTime(long minute) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(minute * MINUTE_MILLIS), ZoneId.systemDefault())
+                .truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    /**
+     * 单个分钟的计数桶
+     */
+    private static final class MinuteBucket {
+
+        final long minute;
+        final LongAdder[] values = new LongAdder[METRICS];
+        volatile boolean dirty;
+
+        MinuteBucket(long minute) {
+            this.minute = minute;
+            for (int i = 0; i < METRICS; i++) {
+                values[i] = new LongAdder();
+            }
+        }
+
+        void add(int metric, long delta) {
+            if (delta != 0) {
+                values[metric].add(delta);
+            }
+        }
+
+        void sumInto(long[] totals) {
+            for (int i = 0; i < METRICS; i++) {
+                totals[i] += values[i].sum();
+            }
+        }
+
+        String encode() {
+            StringBuilder encoded = new StringBuilder();
+            for (int i = 0; i < METRICS; i++) {
+                if (i > 0) {
+                    encoded.append(',');
+                }
+                encoded.append(values[i].sum());
+            }
+            return encoded.toString();
+        }
+    }
+
+    /**
+     * 其他节点最近一次拉取的分钟桶
+     */
+    private static final class RemoteNode {
+
+        long version;
+        final Map<Long, long[]> minutes;
+
+        RemoteNode(long version, Map<Long, long[]> minutes) {
+            this.version = version;
+            this.minutes = minutes;
+        }
+
+        static RemoteNode decode(long version, Map<Object, Object> entries) {
+            Map<Long, long[]> minutes = new HashMap<>(entries.size());
+            entries.forEach((field, value) -> {
+                if (VERSION_FIELD.equals(field) || FLOOR_FIELD.equals(field)) {
+                    return;
+                }
+                long[] values = parse((String) value);
+                if (values != null) {
+                    minutes.put(Long.parseLong((String) field), values);
+                }
+            });
+            return new RemoteNode(version, minutes);
+        }
+
+        /**
+         * 应用变更日志中的分钟桶，字段已删除时移除
+         */
+        void update(long minute, String value) {
+            long[] values = value != null ? parse(value) : null;
+            if (values != null) {
+                minutes.put(minute, values);
+            } else {
+                minutes.remove(minute);
+            }
+        }
+
+        private static long[] parse(String value) {
+            String[] parts = value.split(",");
+            if (parts.length != METRICS) {
+                return null;
+            }
+            long[] values = new long[METRICS];
+            for (int i = 0; i < METRICS; i++) {
+                values[i] = Long.parseLong(parts[i]);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * 其他节点按槽位合并后的分钟桶，只读，整体替换
+     */
+    private static final class RemoteView {
+
+        static final RemoteView EMPTY = new RemoteView();
+
+        final long[] minutes = new long[RING_MINUTES];
+        final long[][] values = new long[RING_MINUTES][METRICS];
+
+        RemoteView() {
+            Arrays.fill(minutes, Long.MIN_VALUE);
+        }
+
+        static RemoteView merge(Iterable<RemoteNode> nodes, long nowMinute) {
+            RemoteView view = new RemoteView();
+            for (RemoteNode node : nodes) {
+                node.minutes.forEach((minute, values) -> {
+                    if (!inWindow(minute, nowMinute + 1)) {
+                        return;
+                    }
+                    int slot = (int) Math.floorMod(minute, (long) RING_MINUTES);
+                    if (view.minutes[slot] < minute) {
+                        view.minutes[slot] = minute;
+                        Arrays.fill(view.values[slot], 0L);
+                    } else if (view.minutes[slot] > minute) {
+                        return;
+                    }
+                    addInto(view.values[slot], values);
+                });
+            }
+            return view;
+        }
+    }
+}
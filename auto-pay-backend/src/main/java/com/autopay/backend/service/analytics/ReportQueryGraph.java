@@ -0,0 +1,172 @@
+package com.autopay.backend.service.analytics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 报表查询依赖图
+ * 报表所需的查询按键登记，相同键的查询只执行一次；没有依赖的查询提交到线程池并行执行，
+ * 组装节点在其依赖全部完成后执行。整张图在截止时间内未完成时报错并取消提交到线程池的查询任务：
+ * 尚未开始的查询不再执行，执行中的查询线程被中断，但已发往数据库的语句不会因中断而终止，
+ * 仍会占用线程和连接直到返回。报表耗时接近其中最慢的单个查询。每张报表使用一个新的实例，节点由同一线程登记
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public class ReportQueryGraph {
+
+    private final Executor executor;
+    private final Map<String, CompletableFuture<Object>> nodes = new ConcurrentHashMap<>();
+    /**
+     * 提交到线程池的查询任务，取消时中断执行线程
+     */
+    private final Queue<FutureTask<Object>> tasks = new ConcurrentLinkedQueue<>();
+
+    public ReportQueryGraph(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 登记查询，键已登记时忽略
+     *
+     * @param key   查询键，应包含影响查询结果的全部参数
+     * @param query 查询
+     * @return 查询键
+     */
+    public String query(String key, Supplier<?> query) {
+        nodes.computeIfAbsent(key, k -> submit(query));
+        return key;
+    }
+
+    /**
+     * 登记组装节点，依赖必须已登记，键已登记时忽略
+     *
+     * @param key          节点键
+     * @param dependencies 依赖的节点键
+     * @param assembler    由依赖结果组装节点结果
+     * @return 节点键
+     */
+    public String assemble(String key, List<String> dependencies, Function<Results, ?> assembler) {
+        if (nodes.containsKey(key)) {
+            return key;
+        }
+        CompletableFuture<?>[] inputs = new CompletableFuture[dependencies.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = nodes.get(dependencies.get(i));
+            if (inputs[i] == null) {
+                throw new IllegalArgumentException("报表查询依赖未登记：" + dependencies.get(i));
+            }
+        }
+        Results results = new Results();
+        nodes.put(key, CompletableFuture.allOf(inputs).<Object>thenApply(ignored -> assembler.apply(results)));
+        return key;
+    }
+
+    /**
+     * 等待全部节点完成
+     *
+     * @param deadlineMillis 截止时间(毫秒)
+     * @return 各节点结果
+     * @throws IllegalStateException 超时或等待被中断
+     */
+    public Results execute(long deadlineMillis) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(nodes.values().toArray(new CompletableFuture[0]));
+        try {
+            all.get(deadlineMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel();
+            throw new IllegalStateException("报表生成超时：" + deadlineMillis + "ms");
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("报表生成被中断");
+        } catch (ExecutionException e) {
+            cancel();
+            throw rethrow(e.getCause());
+        }
+        return new Results();
+    }
+
+    /**
+     * 提交查询任务，任务结束时完成对应的节点；CompletableFuture.cancel不会中断执行线程，取消时需取消任务本身。
+     * 线程池拒绝时节点异常完成，不在登记线程上执行查询
+     */
+    private CompletableFuture<Object> submit(Supplier<?> query) {
+        CompletableFuture<Object> node = new CompletableFuture<>();
+        FutureTask<Object> task = new FutureTask<>(query::get) {
+            @Override
+            protected void done() {
+                try {
+                    node.complete(get());
+                } catch (CancellationException e) {
+                    node.cancel(false);
+                } catch (ExecutionException e) {
+                    node.completeExceptionally(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        tasks.add(task);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，节点按失败完成，由execute统一报错
+            tasks.remove(task);
+            node.completeExceptionally(new IllegalStateException("报表查询线程池繁忙，请稍后重试", e));
+        }
+        return node;
+    }
+
+    private void cancel() {
+        tasks.forEach(task -> task.cancel(true));
+        nodes.values().forEach(future -> future.cancel(false));
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException("报表查询失败：" + cause.getMessage(), cause);
+    }
+
+    /**
+     * 已完成节点的结果
+     */
+    public final class Results {
+
+        /**
+         * 获取已完成节点的结果
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(String key) {
+            CompletableFuture<Object> future = nodes.get(key);
+            if (future == null || !future.isDone()) {
+                throw new IllegalStateException("报表查询未完成：" + key);
+            }
+            try {
+                return (T) future.join();
+            } catch (CompletionException | CancellationException e) {
+                throw rethrow(e);
+            }
+        }
+    }
+}
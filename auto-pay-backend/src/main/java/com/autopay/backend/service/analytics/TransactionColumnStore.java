@@ -0,0 +1,614 @@
+package com.autopay.backend.service.analytics;
+
+import com.autopay.backend.entity.PaymentChannel;
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.entity.TransactionStatistics;
+import com.autopay.backend.repository.PaymentOrderRepository;
+import com.autopay.backend.service.routing.ChannelRoutingTable;
+import com.autopay.backend.util.LongIntHashMap;
+import com.autopay.backend.util.MoneyUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 交易列式缓存
+ * 缓存最近若干天创建的订单，按列存放在定长分段的基本类型数组中：创建时间、金额、手续费(单位：分)、
+ * 渠道(字典编码)和交易状态。渠道排行、金额分布和按日趋势的查询按分段并行扫描，
+ * 每个分段内是只含数组访问和整数运算的紧凑循环，各分段的部分聚合结果最后合并；查询窗口超出缓存范围时由调用方回退到汇总表。
+ * 首次加载在独立线程中分页执行，不占用共享的调度线程，加载完成前查询回退到汇总表；
+ * 之后由调度线程定期按更新时间增量加载订单变更：已缓存的订单原位更新状态和金额，新订单追加到最后一个分段；
+ * 最早的分段超出缓存天数或行数上限时整体淘汰。每行列数据37字节，加上订单位置索引共约60-80字节堆内存，
+ * 行数上限按堆内存预算配置
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class TransactionColumnStore {
+
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+    private static final int OFFSET_MASK = SEGMENT_ROWS - 1;
+
+    private static final int STATUSES = TransactionStatus.values().length;
+    private static final byte SUCCESS = (byte) TransactionStatus.SUCCESS.ordinal();
+    private static final byte FAILED = (byte) TransactionStatus.FAILED.ordinal();
+
+    private static final int COUNT = 0;
+    private static final int SUCCESS_COUNT = 1;
+    private static final int FAILURE_COUNT = 2;
+    private static final int AMOUNT = 3;
+    private static final int SUCCESS_AMOUNT = 4;
+    private static final int FEE = 5;
+    private static final int SUCCESS_FEE = 6;
+    private static final int METRICS = 7;
+
+    /**
+     * 金额区间上限(单位：分)，与交易汇总的金额区间一致
+     */
+    private static final long[] AMOUNT_BANDS = {1_000L, 5_000L, 10_000L, 50_000L, 100_000L};
+    private static final String[] AMOUNT_BAND_NAMES = {
+            "0-10元", "10-50元", "50-100元", "100-500元", "500-1000元", "1000元以上"
+    };
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final ChannelRoutingTable channelRoutingTable;
+
+    @Value("${autopay.analytics.column-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${autopay.analytics.column-cache.days:7}")
+    private int days;
+
+    @Value("${autopay.analytics.column-cache.max-rows:2000000}")
+    private long maxRows;
+
+    @Value("${autopay.analytics.column-cache.page-size:5000}")
+    private int pageSize;
+
+    @Value("${autopay.analytics.column-cache.max-orders-per-refresh:50000}")
+    private int maxOrdersPerRefresh;
+
+    @Value("${autopay.analytics.column-cache.overlap-ms:5000}")
+    private long overlapMillis;
+
+    /**
+     * 分段和渠道字典整体替换发布，分段内的行数发布已写入的行
+     */
+    private volatile Segment[] segments = new Segment[0];
+    private volatile String[] channels = new String[0];
+
+    /**
+     * 缓存完整覆盖的最早创建时间(毫秒)，未加载完成时为Long.MAX_VALUE
+     */
+    private volatile long coveredFrom = Long.MAX_VALUE;
+
+    private volatile boolean loaded;
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    private final Map<String, Integer> channelIds = new HashMap<>();
+    private LongIntHashMap positions = new LongIntHashMap();
+    private LocalDateTime cursorTime;
+
+    public TransactionColumnStore(PaymentOrderRepository paymentOrderRepository,
+                                  ChannelRoutingTable channelRoutingTable) {
+        this.paymentOrderRepository = paymentOrderRepository;
+        this.channelRoutingTable = channelRoutingTable;
+    }
+
+    /**
+     * 首次运行时启动加载线程，加载完成后增量加载订单变更并淘汰过期分段
+     */
+    @Scheduled(fixedDelayString = "${autopay.analytics.column-cache.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        if (!loaded) {
+            startLoad();
+            return;
+        }
+        synchronized (this) {
+            try {
+                long cutoff = toMillis(LocalDateTime.now().minusDays(days));
+                applyChanges(cutoff);
+                coveredFrom = evict(cutoff, coveredFrom);
+            } catch (Exception e) {
+                log.error("交易列式缓存刷新失败，下次从原位置重试：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 缓存是否完整覆盖从开始时间起的查询窗口
+     */
+    public boolean covers(LocalDateTime startTime) {
+        return startTime != null && toMillis(startTime.truncatedTo(ChronoUnit.MINUTES)) >= coveredFrom;
+    }
+
+    /**
+     * 缓存的订单行数
+     */
+    public long getRowCount() {
+        long rows = 0;
+        for (Segment segment : segments) {
+            rows += segment.size;
+        }
+        return rows;
+    }
+
+    /**
+     * 渠道排行，按成功金额降序，字段与汇总表查询一致
+     */
+    public List<TransactionStatistics> getChannelRanking(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        long from = windowStart(startDate);
+        long to = windowEnd(endDate);
+        int channelCount = channels.length;
+        long[] totals = aggregate(segment -> segment.aggregateByChannel(from, to, channelCount),
+                channelCount * METRICS);
+
+        Map<String, PaymentChannel> channelTable = channelTable();
+        String[] codes = channels;
+        List<TransactionStatistics> ranking = new ArrayList<>();
+        for (int channel = 0; channel < channelCount; channel++) {
+            int base = channel * METRICS;
+            if (totals[base + COUNT] == 0) {
+                continue;
+            }
+            TransactionStatistics row = new TransactionStatistics();
+            row.setChannelCode(codes[channel]);
+            PaymentChannel paymentChannel = channelTable.get(codes[channel]);
+            row.setChannelName(paymentChannel != null ? paymentChannel.getChannelName() : null);
+            row.setTotalCount(totals[base + COUNT]);
+            row.setSuccessCount(totals[base + SUCCESS_COUNT]);
+            row.setTotalAmount(totals[base + AMOUNT]);
+            row.setSuccessAmount(totals[base + SUCCESS_AMOUNT]);
+            row.setSuccessRate(percent(totals[base + SUCCESS_COUNT], totals[base + COUNT]));
+            ranking.add(row);
+        }
+        ranking.sort(Comparator.comparing(TransactionStatistics::getSuccessAmount).reversed());
+        return ranking.size() > limit ? new ArrayList<>(ranking.subList(0, limit)) : ranking;
+    }
+
+    /**
+     * 金额分布，按金额区间升序，字段与汇总表查询一致
+     */
+    public List<TransactionStatistics> getAmountDistribution(LocalDateTime startDate, LocalDateTime endDate) {
+        long from = windowStart(startDate);
+        long to = windowEnd(endDate);
+        long[] totals = aggregate(segment -> segment.aggregateByAmountBand(from, to),
+                AMOUNT_BAND_NAMES.length * METRICS);
+
+        List<TransactionStatistics> distribution = new ArrayList<>();
+        for (int band = 0; band < AMOUNT_BAND_NAMES.length; band++) {
+            int base = band * METRICS;
+            if (totals[base + COUNT] == 0) {
+                continue;
+            }
+            TransactionStatistics row = new TransactionStatistics();
+            row.setDimension(AMOUNT_BAND_NAMES[band]);
+            row.setTotalCount(totals[base + COUNT]);
+            row.setSuccessCount(totals[base + SUCCESS_COUNT]);
+            row.setTotalAmount(totals[base + AMOUNT]);
+            row.setSuccessAmount(totals[base + SUCCESS_AMOUNT]);
+            distribution.add(row);
+        }
+        return distribution;
+    }
+
+    /**
+     * 按日、渠道、交易状态统计，按日期降序，字段与汇总表查询一致
+     */
+    public List<TransactionStatistics> getDailyStatistics(LocalDateTime startDate, LocalDateTime endDate) {
+        long from = windowStart(startDate);
+        long to = windowEnd(endDate);
+        LocalDate firstDay = startDate.toLocalDate();
+        int dayCount = (int) ChronoUnit.DAYS.between(firstDay, endDate.toLocalDate()) + 1;
+        if (dayCount <= 0) {
+            return new ArrayList<>();
+        }
+        long[] dayStarts = new long[dayCount];
+        for (int day = 0; day < dayCount; day++) {
+            dayStarts[day] = toMillis(firstDay.plusDays(day).atStartOfDay());
+        }
+        int channelCount = channels.length;
+        long[] totals = aggregate(segment -> segment.aggregateByDay(from, to, dayStarts, channelCount),
+                dayCount * channelCount * STATUSES * METRICS);
+
+        Map<String, PaymentChannel> channelTable = channelTable();
+        String[] codes = channels;
+        String generatedAt = LocalDateTime.now().format(TIME_FORMATTER);
+        List<TransactionStatistics> statistics = new ArrayList<>();
+        for (int day = dayCount - 1; day >= 0; day--) {
+            String date = firstDay.plusDays(day).format(DATE_FORMATTER);
+            for (int channel = 0; channel < channelCount; channel++) {
+                for (int status = 0; status < STATUSES; status++) {
+                    int base = ((day * channelCount + channel) * STATUSES + status) * METRICS;
+                    long count = totals[base + COUNT];
+                    if (count == 0) {
+                        continue;
+                    }
+                    TransactionStatistics row = new TransactionStatistics();
+                    row.setDimension("daily");
+                    row.setStatisticTime(date);
+                    PaymentChannel paymentChannel = channelTable.get(codes[channel]);
+                    if (paymentChannel != null) {
+                        row.setPaymentChannelId(paymentChannel.getId());
+                        row.setChannelName(paymentChannel.getChannelName());
+                    }
+                    row.setChannelCode(codes[channel]);
+                    row.setTransactionStatus(TransactionStatus.fromOrdinal(status).name());
+                    row.setTotalCount(count);
+                    row.setSuccessCount(totals[base + SUCCESS_COUNT]);
+                    row.setFailureCount(totals[base + FAILURE_COUNT]);
+                    row.setTotalAmount(totals[base + AMOUNT]);
+                    row.setSuccessAmount(totals[base + SUCCESS_AMOUNT]);
+                    row.setAverageAmount(Math.round((double) totals[base + AMOUNT] / count));
+                    row.setSuccessRate(percent(totals[base + SUCCESS_COUNT], count));
+                    row.setFailureRate(percent(totals[base + FAILURE_COUNT], count));
+                    row.setTotalFee(totals[base + FEE]);
+                    row.setNetAmount(totals[base + SUCCESS_AMOUNT] - totals[base + SUCCESS_FEE]);
+                    row.setStatStartTime(date + " 00:00:00");
+                    row.setStatEndTime(date + " 23:59:59");
+                    row.setGeneratedAt(generatedAt);
+                    statistics.add(row);
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * 各分段并行执行聚合内核，合并部分结果
+     */
+    private long[] aggregate(Function<Segment, long[]> kernel, int length) {
+        return Arrays.stream(segments)
+                .parallel()
+                .map(kernel)
+                .reduce(new long[length], TransactionColumnStore::merge);
+    }
+
+    private static long[] merge(long[] left, long[] right) {
+        long[] merged = new long[left.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = left[i] + right[i];
+        }
+        return merged;
+    }
+
+    /**
+     * 在独立线程中执行首次加载，加载失败时由下次刷新重新启动
+     */
+    private void startLoad() {
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                synchronized (this) {
+                    load(toMillis(LocalDateTime.now().minusDays(days)));
+                }
+                loaded = true;
+            } catch (Exception e) {
+                log.error("交易列式缓存加载失败，下次刷新时重试：{}", e.getMessage());
+            } finally {
+                loading.set(false);
+            }
+        }, "transaction-column-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 按(创建时间, 主键)分页加载缓存天数内的订单，消费位置取加载开始前的时间，加载期间的变更在下次增量加载时重新应用；
+     * 行数超过上限四分之一以上时淘汰最早的分段，加载期间内存占用不超过上限的1.25倍
+     */
+    private void load(long cutoff) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime endTime = startedAt.plusDays(1);
+        LocalDateTime afterTime = toLocalDateTime(cutoff);
+        long afterId = 0L;
+        long covered = cutoff;
+        while (true) {
+            List<PaymentOrder> page = paymentOrderRepository.findPageByCreateTime(afterTime, afterId, endTime,
+                    pageSize);
+            for (PaymentOrder order : page) {
+                apply(order, cutoff);
+            }
+            if (getRowCount() > maxRows + maxRows / 4) {
+                covered = evict(cutoff, covered);
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            PaymentOrder last = page.get(page.size() - 1);
+            afterTime = last.getCreateTime();
+            afterId = last.getId();
+        }
+        cursorTime = startedAt;
+        coveredFrom = evict(cutoff, covered);
+        log.info("交易列式缓存加载完成：{} 行，{} 个分段", getRowCount(), segments.length);
+    }
+
+    /**
+     * 按更新时间增量加载订单变更，回看一段时间覆盖提交晚于更新时间的事务，重复应用同一变更不影响结果
+     */
+    private void applyChanges(long cutoff) {
+        LocalDateTime since = cursorTime.minus(overlapMillis, ChronoUnit.MILLIS);
+        long afterId = 0L;
+        LocalDateTime latest = cursorTime;
+        int consumed = 0;
+        while (consumed < maxOrdersPerRefresh) {
+            List<PaymentOrder> page = paymentOrderRepository.findChangedRowsSince(since, afterId, pageSize);
+            for (PaymentOrder order : page) {
+                apply(order, cutoff);
+            }
+            consumed += page.size();
+            if (!page.isEmpty()) {
+                PaymentOrder last = page.get(page.size() - 1);
+                since = last.getUpdateTime();
+                afterId = last.getId();
+                if (since.isAfter(latest)) {
+                    latest = since;
+                }
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        cursorTime = latest;
+    }
+
+    /**
+     * 已缓存的订单原位更新，未缓存的订单追加；创建时间早于缓存范围的订单忽略
+     */
+    private void apply(PaymentOrder order, long cutoff) {
+        if (order.getId() == null || order.getCreateTime() == null) {
+            return;
+        }
+        long createTime = toMillis(order.getCreateTime());
+        if (createTime < cutoff) {
+            return;
+        }
+        byte status = (byte) TransactionStatus.fromOrderStatus(order.getStatus()).ordinal();
+        long amount = minorUnits(order.getTotalAmount());
+        long fee = minorUnits(order.getFeeAmount());
+        int position = positions.get(order.getId(), -1);
+        Segment[] current = segments;
+        if (position >= 0) {
+            current[position >>> SEGMENT_SHIFT].update(position & OFFSET_MASK, status, amount, fee);
+            return;
+        }
+        int channel = channelId(order.getChannelCode());
+        Segment last = current.length > 0 ? current[current.length - 1] : null;
+        if (last == null || last.size == SEGMENT_ROWS) {
+            last = new Segment();
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = last;
+            segments = current;
+        }
+        int offset = last.append(order.getId(), createTime, amount, fee, channel, status);
+        positions.put(order.getId(), ((current.length - 1) << SEGMENT_SHIFT) | offset);
+    }
+
+    /**
+     * 淘汰最早的已写满分段：全部行早于缓存范围，或缓存行数超过上限；
+     * 淘汰后覆盖范围的起点不早于被淘汰分段中最晚的创建时间，并按剩余分段重建订单位置索引
+     *
+     * @param coveredFrom 淘汰前覆盖范围的起点
+     * @return 淘汰后覆盖范围的起点
+     */
+    private long evict(long cutoff, long coveredFrom) {
+        Segment[] current = segments;
+        long rows = getRowCount();
+        long covered = Math.max(coveredFrom, cutoff);
+        int evicted = 0;
+        while (evicted < current.length - 1 && current[evicted].size == SEGMENT_ROWS
+                && (current[evicted].maxTime < cutoff || rows > maxRows)) {
+            rows -= current[evicted].size;
+            covered = Math.max(covered, current[evicted].maxTime + 1);
+            evicted++;
+        }
+        if (evicted == 0) {
+            return covered;
+        }
+        Segment[] remaining = Arrays.copyOfRange(current, evicted, current.length);
+        LongIntHashMap rebuilt = new LongIntHashMap((int) Math.min(rows, Integer.MAX_VALUE / 2));
+        for (int i = 0; i < remaining.length; i++) {
+            Segment segment = remaining[i];
+            for (int offset = 0; offset < segment.size; offset++) {
+                rebuilt.put(segment.ids[offset], (i << SEGMENT_SHIFT) | offset);
+            }
+        }
+        positions = rebuilt;
+        segments = remaining;
+        log.info("交易列式缓存淘汰 {} 个分段，剩余 {} 行", evicted, rows);
+        return covered;
+    }
+
+    private int channelId(String channelCode) {
+        String code = channelCode != null ? channelCode : "";
+        Integer id = channelIds.get(code);
+        if (id == null) {
+            id = channels.length;
+            channelIds.put(code, id);
+            String[] extended = Arrays.copyOf(channels, id + 1);
+            extended[id] = code;
+            channels = extended;
+        }
+        return id;
+    }
+
+    private Map<String, PaymentChannel> channelTable() {
+        Map<String, PaymentChannel> table = new HashMap<>();
+        for (PaymentChannel channel : channelRoutingTable.getChannels()) {
+            table.put(channel.getChannelCode(), channel);
+        }
+        return table;
+    }
+
+    /**
+     * 查询窗口按分钟对齐，结束时间所在的分钟包含在内，与汇总表查询一致
+     */
+    private static long windowStart(LocalDateTime startDate) {
+        return toMillis(startDate.truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    private static long windowEnd(LocalDateTime endDate) {
+        return toMillis(endDate.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1));
+    }
+
+    private static double percent(long part, long total) {
+        return total > 0 ? Math.round(part * 10000.0 / total) / 100.0 : 0.0;
+    }
+
+    private static long minorUnits(BigDecimal amount) {
+        return amount != null ? MoneyUtil.toMinorUnits(amount) : 0L;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 定长列式分段，由刷新线程写入；行数为volatile，先写各列再递增行数，读取方只读取已发布的行。
+     * 已发布行的状态、金额和手续费可能被原位更新，读取方可能读到更新前的值，下次查询即可读到更新后的值
+     */
+    private static final class Segment {
+
+        final long[] ids = new long[SEGMENT_ROWS];
+        final long[] createTimes = new long[SEGMENT_ROWS];
+        final long[] amounts = new long[SEGMENT_ROWS];
+        final long[] fees = new long[SEGMENT_ROWS];
+        final int[] channels = new int[SEGMENT_ROWS];
+        final byte[] statuses = new byte[SEGMENT_ROWS];
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        volatile int size;
+
+        int append(long id, long createTime, long amount, long fee, int channel, byte status) {
+            int offset = size;
+            ids[offset] = id;
+            createTimes[offset] = createTime;
+            amounts[offset] = amount;
+            fees[offset] = fee;
+            channels[offset] = channel;
+            statuses[offset] = status;
+            minTime = Math.min(minTime, createTime);
+            maxTime = Math.max(maxTime, createTime);
+            size = offset + 1;
+            return offset;
+        }
+
+        void update(int offset, byte status, long amount, long fee) {
+            statuses[offset] = status;
+            amounts[offset] = amount;
+            fees[offset] = fee;
+        }
+
+        boolean overlaps(int rows, long from, long to) {
+            return rows > 0 && maxTime >= from && minTime < to;
+        }
+
+        /**
+         * 按渠道聚合，查询开始后新增的渠道不计入
+         */
+        long[] aggregateByChannel(long from, long to, int channelCount) {
+            long[] totals = new long[channelCount * METRICS];
+            int rows = size;
+            if (!overlaps(rows, from, to)) {
+                return totals;
+            }
+            for (int i = 0; i < rows; i++) {
+                long time = createTimes[i];
+                int channel = channels[i];
+                if (time < from || time >= to || channel >= channelCount) {
+                    continue;
+                }
+                accumulate(totals, channel * METRICS, statuses[i], amounts[i], fees[i]);
+            }
+            return totals;
+        }
+
+        long[] aggregateByAmountBand(long from, long to) {
+            long[] totals = new long[AMOUNT_BAND_NAMES.length * METRICS];
+            int rows = size;
+            if (!overlaps(rows, from, to)) {
+                return totals;
+            }
+            for (int i = 0; i < rows; i++) {
+                long time = createTimes[i];
+                if (time < from || time >= to) {
+                    continue;
+                }
+                long amount = amounts[i];
+                int band = 0;
+                for (long upper : AMOUNT_BANDS) {
+                    band += amount >= upper ? 1 : 0;
+                }
+                accumulate(totals, band * METRICS, statuses[i], amount, fees[i]);
+            }
+            return totals;
+        }
+
+        long[] aggregateByDay(long from, long to, long[] dayStarts, int channelCount) {
+            long[] totals = new long[dayStarts.length * channelCount * STATUSES * METRICS];
+            int rows = size;
+            if (!overlaps(rows, from, to)) {
+                return totals;
+            }
+            for (int i = 0; i < rows; i++) {
+                long time = createTimes[i];
+                int channel = channels[i];
+                if (time < from || time >= to || channel >= channelCount) {
+                    continue;
+                }
+                int day = Arrays.binarySearch(dayStarts, time);
+                if (day < 0) {
+                    day = -day - 2;
+                }
+                byte status = statuses[i];
+                accumulate(totals, ((day * channelCount + channel) * STATUSES + status) * METRICS,
+                        status, amounts[i], fees[i]);
+            }
+            return totals;
+        }
+
+        private static void accumulate(long[] totals, int base, byte status, long amount, long fee) {
+            long success = status == SUCCESS ? 1L : 0L;
+            totals[base + COUNT]++;
+            totals[base + SUCCESS_COUNT] += success;
+            totals[base + FAILURE_COUNT] += status == FAILED ? 1L : 0L;
+            totals[base + AMOUNT] += amount;
+            totals[base + SUCCESS_AMOUNT] += success * amount;
+            totals[base + FEE] += fee;
+            totals[base + SUCCESS_FEE] += success * fee;
+        }
+    }
+}
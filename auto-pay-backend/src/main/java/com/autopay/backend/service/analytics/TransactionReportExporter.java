@@ -0,0 +1,318 @@
+package com.autopay.backend.service.analytics;
+
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.repository.PaymentOrderRepository;
+import com.autopay.backend.util.MoneyUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 交易报表流式导出
+ * 订单明细按(创建时间, 主键)分页读取，每页是一次独立的短查询，慢速客户端不会长时间占用数据库连接；
+ * 每行格式化到复用的行缓冲后写入固定大小的输出缓冲，缓冲写满即写出到HTTP响应或文件，内存占用与报表行数无关。支持CSV和NDJSON(每行一个JSON对象)，金额单位为分
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionReportExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] COLUMNS = {
+            "id", "trade_no", "out_trade_no", "merchant_no", "channel_code", "channel_trade_no",
+            "transaction_status", "total_amount", "paid_amount", "fee_amount", "currency", "create_time", "pay_time"
+    };
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final PaymentOrderRepository paymentOrderRepository;
+
+    @Value("${autopay.analytics.report.export-page-size:5000}")
+    private int pageSize;
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        NDJSON("application/x-ndjson", ".ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 根据名称获取导出格式，忽略大小写
+         */
+        public static Format fromName(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("不支持的导出格式：" + name);
+        }
+    }
+
+    /**
+     * 导出时间范围内的交易明细，调用方负责关闭输出流
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间(不含)
+     * @param format    导出格式
+     * @param out       输出流，如HTTP响应输出流
+     * @return 导出行数
+     */
+    public long export(LocalDateTime startTime, LocalDateTime endTime, Format format, OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        RowWriter rows = new RowWriter(writer, format);
+        try {
+            rows.header();
+            LocalDateTime afterTime = startTime;
+            long afterId = 0L;
+            while (true) {
+                List<PaymentOrder> page = paymentOrderRepository.findPageByCreateTime(afterTime, afterId, endTime,
+                        pageSize);
+                for (PaymentOrder order : page) {
+                    rows.write(order);
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                PaymentOrder last = page.get(page.size() - 1);
+                afterTime = last.getCreateTime();
+                afterId = last.getId();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("交易报表导出失败", e);
+        }
+        log.info("交易报表导出完成，格式：{}，{} 至 {}，{} 行", format, startTime, endTime, rows.count);
+        return rows.count;
+    }
+
+    /**
+     * 导出到文件，先写入同目录的临时文件，完成后重命名替换，读取方不会读到不完整的文件
+     *
+     * @return 导出行数
+     */
+    public long exportToFile(LocalDateTime startTime, LocalDateTime endTime, Format format, Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            long count;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                count = export(startTime, endTime, format, out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("交易报表导出文件失败：" + file, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.warn("交易报表临时文件删除失败：{}", temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * 逐行格式化订单，行缓冲在各行之间复用
+     */
+    private static final class RowWriter {
+
+        final Writer writer;
+        final Format format;
+        final StringBuilder line = new StringBuilder(256);
+        final Object[] values = new Object[COLUMNS.length];
+        char[] chars = new char[256];
+        long count;
+
+        RowWriter(Writer writer, Format format) {
+            this.writer = writer;
+            this.format = format;
+        }
+
+        void header() throws IOException {
+            if (format != Format.CSV) {
+                return;
+            }
+            line.setLength(0);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append(COLUMNS[i]);
+            }
+            line.append('\n');
+            flushLine();
+        }
+
+        void write(PaymentOrder order) {
+            values[0] = order.getId();
+            values[1] = order.getTradeNo();
+            values[2] = order.getOutTradeNo();
+            values[3] = order.getMerchantNo();
+            values[4] = order.getChannelCode();
+            values[5] = order.getChannelTradeNo();
+            values[6] = TransactionStatus.fromOrderStatus(order.getStatus()).name();
+            values[7] = minorUnits(order.getTotalAmount());
+            values[8] = minorUnits(order.getPaidAmount());
+            values[9] = minorUnits(order.getFeeAmount());
+            values[10] = order.getCurrency();
+            values[11] = order.getCreateTime() != null ? order.getCreateTime().format(TIME_FORMATTER) : null;
+            values[12] = order.getPayTime() != null ? order.getPayTime().format(TIME_FORMATTER) : null;
+
+            line.setLength(0);
+            if (format == Format.CSV) {
+                appendCsv();
+            } else {
+                appendJson();
+            }
+            line.append('\n');
+            try {
+                flushLine();
+            } catch (IOException e) {
+                // 客户端断开等写出失败时中止导出
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+
+        /**
+         * 行缓冲经复用的字符数组写入输出缓冲，不为每行创建字符串
+         */
+        private void flushLine() throws IOException {
+            int length = line.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            line.getChars(0, length, chars, 0);
+            writer.write(chars, 0, length);
+        }
+
+        private void appendCsv() {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                Object value = values[i];
+                if (value instanceof String text) {
+                    appendCsvText(text);
+                } else if (value != null) {
+                    line.append(value);
+                }
+            }
+        }
+
+        private void appendCsvText(String text) {
+            boolean quote = false;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                line.append(text);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        private void appendJson() {
+            line.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append('"').append(COLUMNS[i]).append("\":");
+                Object value = values[i];
+                if (value instanceof String text) {
+                    appendJsonText(text);
+                } else {
+                    line.append(value);
+                }
+            }
+            line.append('}');
+        }
+
+        private void appendJsonText(String text) {
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        line.append("\\\"");
+                        break;
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                }
+            }
+            line.append('"');
+        }
+
+        private static Long minorUnits(BigDecimal amount) {
+            return amount != null ? MoneyUtil.toMinorUnits(amount) : null;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.autopay.backend.service.analytics;
+
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.entity.TransactionRollup;
+import com.autopay.backend.repository.PaymentOrderRepository;
+import com.autopay.backend.repository.TransactionRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 交易汇总增量引擎
+ * 按更新时间持续消费订单状态变更，标记订单创建时间所在的分钟桶，再逐级重算分钟、小时、天汇总：
+ * 分钟桶由订单表聚合；保留期内的小时桶由分钟汇总聚合，更早的小时桶(如历史订单退款)由订单表聚合；天桶由小时汇总聚合。
+ * 消费位置保存在Redis，所有变更重算成功后才推进，重算幂等，多个节点同时运行只会重复计算。
+ * 首次消费位置之前的历史由回填任务按小时从订单表聚合，从近到远分批推进直到最早的订单，
+ * 每回填完一整天即由小时汇总重算该天，回填位置同样保存在Redis
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class TransactionRollupEngine {
+
+    private static final String CURSOR_KEY = "autopay:analytics:rollup:cursor";
+    private static final String COVERAGE_KEY = "autopay:analytics:rollup:minute-coverage";
+    private static final String BACKFILL_KEY = "autopay:analytics:rollup:backfilled-from";
+
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final TransactionRollupRepository transactionRollupRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${autopay.analytics.rollup.page-size:5000}")
+    private int pageSize;
+
+    @Value("${autopay.analytics.rollup.max-orders-per-poll:50000}")
+    private int maxOrdersPerPoll;
+
+    @Value("${autopay.analytics.rollup.overlap-ms:5000}")
+    private long overlapMillis;
+
+    @Value("${autopay.analytics.rollup.initial-lookback-hours:24}")
+    private long initialLookbackHours;
+
+    @Value("${autopay.analytics.rollup.minute-retention-days:3}")
+    private long minuteRetentionDays;
+
+    @Value("${autopay.analytics.rollup.backfill-hours-per-run:24}")
+    private int backfillHoursPerRun;
+
+    private final LongAdder recomputedBuckets = new LongAdder();
+
+    /**
+     * 增量消费与历史回填各用一把锁，回填不阻塞增量消费
+     */
+    private final Object pollLock = new Object();
+    private final Object backfillLock = new Object();
+
+    private volatile LocalDateTime cursorTime;
+    private volatile LocalDateTime minuteCoverage;
+    private LocalDateTime backfillEnd;
+    private boolean backfillDone;
+
+    public TransactionRollupEngine(PaymentOrderRepository paymentOrderRepository,
+                                   TransactionRollupRepository transactionRollupRepository,
+                                   StringRedisTemplate redisTemplate,
+                                   TransactionTemplate transactionTemplate) {
+        this.paymentOrderRepository = paymentOrderRepository;
+        this.transactionRollupRepository = transactionRollupRepository;
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * 消费订单变更并重算受影响的汇总
+     */
+    @Scheduled(fixedDelayString = "${autopay.analytics.rollup.poll-interval-ms:5000}")
+    public void poll() {
+        synchronized (pollLock) {
+            pollLocked();
+        }
+    }
+
+    private void pollLocked() {
+        try {
+            if (cursorTime == null) {
+                loadCursor();
+            }
+            NavigableSet<LocalDateTime> minutes = new TreeSet<>();
+            // 回看一段时间，覆盖提交晚于更新时间的事务，重复重算同一时间桶不影响结果
+            LocalDateTime since = cursorTime.minus(overlapMillis, ChronoUnit.MILLIS);
+            long afterId = 0L;
+            LocalDateTime latest = cursorTime;
+            int consumed = 0;
+            while (consumed < maxOrdersPerPoll) {
+                List<PaymentOrder> page = paymentOrderRepository.findChangedSince(since, afterId, pageSize);
+                for (PaymentOrder order : page) {
+                    if (order.getCreateTime() != null) {
+                        minutes.add(order.getCreateTime().truncatedTo(ChronoUnit.MINUTES));
+                    }
+                }
+                consumed += page.size();
+                if (!page.isEmpty()) {
+                    PaymentOrder last = page.get(page.size() - 1);
+                    since = last.getUpdateTime();
+                    afterId = last.getId();
+                    if (since.isAfter(latest)) {
+                        latest = since;
+                    }
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+            if (minutes.isEmpty()) {
+                return;
+            }
+            recompute(minutes);
+            saveCursor(latest);
+            log.debug("交易汇总增量重算：{} 条订单变更，{} 个分钟桶", consumed, minutes.size());
+        } catch (Exception e) {
+            log.error("交易汇总增量重算失败，下次从原位置重试：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 回填首次消费位置之前的历史汇总，每次从已回填位置向前聚合一批小时桶
+     */
+    @Scheduled(fixedDelayString = "${autopay.analytics.rollup.backfill-interval-ms:10000}",
+            initialDelayString = "${autopay.analytics.rollup.backfill-interval-ms:10000}")
+    public void backfill() {
+        synchronized (backfillLock) {
+            backfillLocked();
+        }
+    }
+
+    private void backfillLocked() {
+        if (backfillDone) {
+            return;
+        }
+        try {
+            if (minuteCoverage == null) {
+                loadCursor();
+            }
+            if (backfillEnd == null) {
+                LocalDateTime earliest = paymentOrderRepository.findEarliestCreateTime();
+                if (earliest == null) {
+                    backfillDone = true;
+                    return;
+                }
+                backfillEnd = earliest.truncatedTo(ChronoUnit.HOURS);
+            }
+            // 各节点共享回填位置，从分钟汇总完整起点开始向前推进
+            String stored = redisTemplate.opsForValue().get(BACKFILL_KEY);
+            LocalDateTime from = stored != null ? fromEpochMillis(Long.parseLong(stored)) : minuteCoverage;
+            for (int i = 0; i < backfillHoursPerRun && from.isAfter(backfillEnd); i++) {
+                LocalDateTime hour = from.minusHours(1);
+                rebuild(TransactionRollup.GRANULARITY_HOUR, hour, from, false);
+                from = hour;
+                if (from.equals(from.truncatedTo(ChronoUnit.DAYS))) {
+                    rebuild(TransactionRollup.GRANULARITY_DAY, from, from.plusDays(1), true);
+                }
+                redisTemplate.opsForValue().set(BACKFILL_KEY, String.valueOf(toEpochMillis(from)));
+            }
+            if (!from.isAfter(backfillEnd)) {
+                // 最早订单所在的天不是整天回填，单独重算
+                LocalDateTime day = from.truncatedTo(ChronoUnit.DAYS);
+                if (!from.equals(day)) {
+                    rebuild(TransactionRollup.GRANULARITY_DAY, day, day.plusDays(1), true);
+                }
+                backfillDone = true;
+                log.info("交易汇总历史回填完成，最早回填至 {}", from);
+            }
+        } catch (Exception e) {
+            log.error("交易汇总历史回填失败，下次从原位置重试：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理超过保留期的分钟汇总
+     */
+    @Scheduled(fixedDelayString = "${autopay.analytics.rollup.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        try {
+            int deleted;
+            do {
+                deleted = transactionRollupRepository.deleteMinuteRollupsBefore(minuteBoundary());
+            } while (deleted > 0);
+        } catch (Exception e) {
+            log.warn("交易分钟汇总清理失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取已重算的时间桶数
+     */
+    public long getRecomputedBuckets() {
+        return recomputedBuckets.sum();
+    }
+
+    /**
+     * 逐级重算分钟、小时、天汇总，每个时间桶在单独的事务中清零并重新聚合
+     */
+    private void recompute(NavigableSet<LocalDateTime> minutes) {
+        LocalDateTime boundary = minuteBoundary();
+        // 首次消费之前的分钟汇总不完整，这部分小时桶同样由订单表聚合
+        LocalDateTime hourBoundary = boundary.isAfter(minuteCoverage) ? boundary : minuteCoverage;
+        NavigableSet<LocalDateTime> hours = new TreeSet<>();
+        for (LocalDateTime minute : minutes) {
+            // 保留期外的分钟桶不再维护，所在小时桶直接由订单表聚合
+            if (!minute.isBefore(boundary)) {
+                rebuild(TransactionRollup.GRANULARITY_MINUTE, minute, minute.plusMinutes(1), false);
+            }
+            hours.add(minute.truncatedTo(ChronoUnit.HOURS));
+        }
+        NavigableSet<LocalDateTime> days = new TreeSet<>();
+        for (LocalDateTime hour : hours) {
+            rebuild(TransactionRollup.GRANULARITY_HOUR, hour, hour.plusHours(1), !hour.isBefore(hourBoundary));
+            days.add(hour.truncatedTo(ChronoUnit.DAYS));
+        }
+        for (LocalDateTime day : days) {
+            rebuild(TransactionRollup.GRANULARITY_DAY, day, day.plusDays(1), true);
+        }
+    }
+
+    private void rebuild(int granularity, LocalDateTime bucketTime, LocalDateTime endTime, boolean fromRollups) {
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionRollupRepository.resetBuckets(granularity, bucketTime, endTime);
+            if (fromRollups) {
+                transactionRollupRepository.rollupRollups(granularity, granularity - 1, bucketTime, endTime);
+            } else {
+                transactionRollupRepository.rollupOrders(granularity, bucketTime, endTime);
+            }
+        });
+        recomputedBuckets.increment();
+    }
+
+    /**
+     * 分钟汇总保留期起点，按整点对齐，保证起点之后的小时桶的分钟汇总完整
+     */
+    private LocalDateTime minuteBoundary() {
+        return LocalDateTime.now().minusDays(minuteRetentionDays).truncatedTo(ChronoUnit.HOURS);
+    }
+
+    /**
+     * 加载消费位置和分钟汇总的完整起点，首次运行时从回看时长之前开始消费；
+     * 增量消费和回填都可能首先调用，只加载一次
+     */
+    private synchronized void loadCursor() {
+        if (minuteCoverage != null) {
+            return;
+        }
+        LocalDateTime cursor;
+        String value = redisTemplate.opsForValue().get(CURSOR_KEY);
+        if (value != null) {
+            cursor = fromEpochMillis(Long.parseLong(value));
+        } else {
+            cursor = LocalDateTime.now().minusHours(initialLookbackHours);
+            log.info("交易汇总消费位置不存在，从 {} 开始重算", cursor);
+        }
+        LocalDateTime coverage = cursor.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        redisTemplate.opsForValue().setIfAbsent(COVERAGE_KEY, String.valueOf(toEpochMillis(coverage)));
+        String stored = redisTemplate.opsForValue().get(COVERAGE_KEY);
+        cursorTime = cursor;
+        minuteCoverage = stored != null ? fromEpochMillis(Long.parseLong(stored)) : coverage;
+    }
+
+    private void saveCursor(LocalDateTime latest) {
+        cursorTime = latest;
+        redisTemplate.opsForValue().set(CURSOR_KEY, String.valueOf(toEpochMillis(latest)));
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
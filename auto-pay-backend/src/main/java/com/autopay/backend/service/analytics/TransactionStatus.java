@@ -0,0 +1,52 @@
+package com.autopay.backend.service.analytics;
+
+import com.autopay.backend.entity.PaymentOrder;
+
+/**
+ * 交易状态
+ * 统计、导出和列式缓存使用的交易状态，由订单状态映射，与交易汇总表的transaction_status一致
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public enum TransactionStatus {
+    PENDING,
+    SUCCESS,
+    FAILED,
+    CLOSED,
+    REFUNDED,
+    REFUNDING;
+
+    private static final TransactionStatus[] VALUES = values();
+
+    /**
+     * 根据订单状态码获取交易状态，已创建、支付中和未知状态为PENDING
+     */
+    public static TransactionStatus fromOrderStatus(Integer status) {
+        PaymentOrder.Status value = PaymentOrder.Status.fromCode(status);
+        if (value == null) {
+            return PENDING;
+        }
+        switch (value) {
+            case PAID:
+                return SUCCESS;
+            case FAILED:
+                return FAILED;
+            case CLOSED:
+                return CLOSED;
+            case REFUNDED:
+                return REFUNDED;
+            case REFUNDING:
+                return REFUNDING;
+            default:
+                return PENDING;
+        }
+    }
+
+    /**
+     * 根据序号获取交易状态
+     */
+    public static TransactionStatus fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -1,26 +1,41 @@
 package com.autopay.backend.service.impl;
 
 import cn.hutool.core.util.StrUtil;
+import com.autopay.backend.adapter.PaymentChannelAdapter;
+import com.autopay.backend.adapter.PaymentChannelAdapterFactory;
 import com.autopay.backend.entity.PaymentChannel;
 import com.autopay.backend.entity.PaymentOrder;
 import com.autopay.backend.dto.request.PaymentRequest;
 import com.autopay.backend.dto.response.ApiResult;
 import com.autopay.backend.dto.response.PaymentResponse;
-import com.autopay.backend.repository.PaymentChannelRepository;
 import com.autopay.backend.repository.PaymentOrderRepository;
 import com.autopay.backend.service.PaymentService;
+import com.autopay.backend.service.TradeNoGenerator;
+import com.autopay.backend.service.analytics.RealtimeTransactionCounter;
+import com.autopay.backend.service.order.ChannelCallbackPipeline;
+import com.autopay.backend.service.order.OrderExpiryScheduler;
+import com.autopay.backend.service.order.OrderWriteBehindBuffer;
+import com.autopay.backend.service.order.PaymentIdempotencyStore;
+import com.autopay.backend.service.order.PaymentOrderStateMachine;
+import com.autopay.backend.service.routing.AdaptiveChannelRouter;
+import com.autopay.backend.service.routing.ChannelMetrics;
+import com.autopay.backend.service.routing.ChannelMetricsRegistry;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 支付服务实现类
@@ -33,50 +48,96 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class PaymentServiceImpl implements PaymentService {
 
-    private final PaymentChannelRepository paymentChannelRepository;
+    private static final String DUPLICATE_OUT_TRADE_NO = "商户订单号已存在，且与原请求的商户、金额或币种不一致";
+    private static final String ORDER_FAILED = "该商户订单号渠道下单失败，请使用新的商户订单号重新下单";
+    private static final String ORDER_IN_PROGRESS = "订单正在处理中，请勿重复提交";
+    private static final String DEFAULT_MERCHANT_NO = "DEFAULT"; // TODO: 从用户信息获取
+
     private final PaymentOrderRepository paymentOrderRepository;
+    private final PaymentChannelAdapterFactory paymentChannelAdapterFactory;
+    private final TradeNoGenerator tradeNoGenerator;
+    private final AdaptiveChannelRouter adaptiveChannelRouter;
+    private final ChannelMetricsRegistry channelMetricsRegistry;
+    private final PaymentIdempotencyStore paymentIdempotencyStore;
+    private final OrderWriteBehindBuffer orderWriteBehindBuffer;
+    private final OrderExpiryScheduler orderExpiryScheduler;
+    private final ChannelCallbackPipeline channelCallbackPipeline;
+    private final PaymentOrderStateMachine paymentOrderStateMachine;
+    private final RealtimeTransactionCounter realtimeTransactionCounter;
+
+    @Qualifier("paymentDbExecutor")
+    private final Executor paymentDbExecutor;
+
+    @Qualifier("channelCallExecutor")
+    private final Executor channelCallExecutor;
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public ApiResult<PaymentResponse> createPayment(PaymentRequest request) {
         try {
-            // 1. 参数校验
-            validatePaymentRequest(request);
-
-            // 2. 检查商户订单号唯一性
-            PaymentOrder existingOrder = paymentOrderRepository.findByOutTradeNo(request.getOutTradeNo());
-            if (existingOrder != null) {
-                return ApiResult.error("商户订单号已存在");
-            }
+            PaymentResponse response = createPaymentAsync(request).join();
+            return ApiResult.success("支付订单创建成功", response);
 
-            // 3. 智能路由选择渠道
-            PaymentChannel channel = selectOptimalChannel(request.getScene(), request.getTotalAmount());
-            if (channel == null) {
-                return ApiResult.error("暂无可用的支付渠道");
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IllegalStateException) {
+                return ApiResult.error(cause.getMessage());
             }
+            log.error("创建支付订单失败", cause);
+            return ApiResult.error("创建支付订单失败: " + cause.getMessage());
+        }
+    }
 
-            // 4. 创建订单
-            PaymentOrder order = createPaymentOrder(request, channel);
-
-            // 5. 调用渠道适配器
-            PaymentResponse response = callChannelAdapter(channel, order, request);
-
-            // 6. 更新订单信息
-            updateOrderAfterChannelCall(order, response);
-
-            log.info("创建支付订单成功: {}, 商户订单号: {}", order.getTradeNo(), order.getOutTradeNo());
-            return ApiResult.success("支付订单创建成功", response);
+    @Override
+    public CompletableFuture<PaymentResponse> createPaymentAsync(PaymentRequest request) {
+        try {
+            validatePaymentRequest(request);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        } catch (Exception e) {
-            log.error("创建支付订单失败", e);
-            return ApiResult.error("创建支付订单失败: " + e.getMessage());
+        // 商户订单号幂等预占，参数一致的重复请求直接返回首次响应
+        String outTradeNo = request.getOutTradeNo();
+        String fingerprint = fingerprint(request);
+        PaymentIdempotencyStore.Reservation reservation = paymentIdempotencyStore.reserve(outTradeNo, fingerprint);
+        switch (reservation.getStatus()) {
+            case REPLAY:
+                log.info("重复支付请求，返回首次响应: {}", outTradeNo);
+                return CompletableFuture.completedFuture(reservation.getResponse());
+            case MISMATCH:
+                log.warn("重复支付请求参数不一致: {}", outTradeNo);
+                return CompletableFuture.failedFuture(new IllegalStateException(DUPLICATE_OUT_TRADE_NO));
+            case IN_PROGRESS:
+                return CompletableFuture.failedFuture(new IllegalStateException(ORDER_IN_PROGRESS));
+            default:
+                break;
+        }
+        boolean verifyInDatabase = reservation.getStatus() == PaymentIdempotencyStore.Reservation.Status.UNAVAILABLE;
+
+        // 1. 路由并落库，订单插入独立提交；订单已存在时由订单行重放
+        CompletableFuture<PaymentResponse> future = CompletableFuture
+                .supplyAsync(() -> preparePayment(request, verifyInDatabase), paymentDbExecutor)
+                // 2. 在渠道线程池调用渠道，不持有数据库连接
+                .thenCompose(prepared -> prepared.replay != null
+                        ? CompletableFuture.completedFuture(prepared.replay)
+                        : submitChannelCall(prepared, request));
+
+        if (verifyInDatabase) {
+            return future;
         }
+        return future.whenComplete((response, e) -> {
+            if (e == null) {
+                paymentIdempotencyStore.complete(outTradeNo, fingerprint, response);
+            } else {
+                // 失败不保存响应，释放占位；订单已创建时重试由订单行判定为失败或处理中
+                paymentIdempotencyStore.release(outTradeNo);
+            }
+        });
     }
 
     @Override
     public ApiResult<PaymentResponse> queryPayment(String outTradeNo) {
         try {
-            PaymentOrder order = paymentOrderRepository.findByOutTradeNo(outTradeNo);
+            PaymentOrder order = orderWriteBehindBuffer.overlay(paymentOrderRepository.findByOutTradeNo(outTradeNo));
             if (order == null) {
                 return ApiResult.error("订单不存在");
             }
@@ -91,25 +152,23 @@ public class PaymentServiceImpl implements PaymentService {
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public ApiResult<Void> closePayment(String outTradeNo) {
         try {
-            PaymentOrder order = paymentOrderRepository.findByOutTradeNo(outTradeNo);
+            PaymentOrder order = orderWriteBehindBuffer.overlay(paymentOrderRepository.findByOutTradeNo(outTradeNo));
             if (order == null) {
                 return ApiResult.error("订单不存在");
             }
 
-            if (!order.getStatus().equals(PaymentOrder.Status.CREATED.getCode())) {
+            // 以当前状态为条件更新订单状态，并发支付或关闭不会被覆盖
+            LocalDateTime now = LocalDateTime.now();
+            PaymentOrderStateMachine.Result result = paymentOrderStateMachine.transition(order, PaymentOrder.Status.CLOSED,
+                    new PaymentOrder().setCloseTime(now).setUpdateTime(now).setUpdateBy("system"));
+            if (result == PaymentOrderStateMachine.Result.REJECTED) {
                 return ApiResult.error("订单状态不允许关闭");
             }
-
-            // 更新订单状态为已关闭
-            order.setStatus(PaymentOrder.Status.CLOSED.getCode());
-            order.setCloseTime(LocalDateTime.now());
-            order.setUpdateTime(LocalDateTime.now());
-            order.setUpdateBy("system");
-
-            paymentOrderRepository.updateById(order);
+            if (result == PaymentOrderStateMachine.Result.CONFLICT) {
+                return ApiResult.error("订单状态已变更，请稍后重试");
+            }
 
             // 调用渠道关闭接口
             callChannelClose(order);
@@ -126,8 +185,11 @@ public class PaymentServiceImpl implements PaymentService {
     @Override
     public ApiResult<Void> handleChannelCallback(String channelCode, String callbackData) {
         try {
-            // TODO: 实现渠道回调处理逻辑
-            log.info("处理渠道回调: {}, 数据: {}", channelCode, callbackData);
+            // 回调验签并落库后应答，订单状态迁移异步批量处理；未接收时由渠道重发
+            if (!channelCallbackPipeline.submit(channelCode, callbackData)) {
+                log.warn("渠道回调未接收: {}, 待处理: {}", channelCode, channelCallbackPipeline.getBacklog());
+                return ApiResult.error("回调未接收，请稍后重试");
+            }
             return ApiResult.success("回调处理成功", null);
         } catch (Exception e) {
             log.error("处理渠道回调失败", e);
@@ -138,25 +200,13 @@ public class PaymentServiceImpl implements PaymentService {
     @Override
     public PaymentChannel selectOptimalChannel(String scene, BigDecimal amount) {
         try {
-            // 查询启用且健康的渠道
-            List<PaymentChannel> healthyChannels = paymentChannelRepository.findHealthyChannels();
-            
-            // 根据场景过滤
-            healthyChannels = healthyChannels.stream()
-                .filter(channel -> StrUtil.isNotEmpty(channel.getPaymentScene()) 
-                    && channel.getPaymentScene().contains(scene))
-                .filter(channel -> amount.compareTo(channel.getMinAmount()) >= 0)
-                .filter(channel -> channel.getMaxAmount() == null || amount.compareTo(channel.getMaxAmount()) <= 0)
-                .sorted((a, b) -> a.getPriority().compareTo(b.getPriority()))
-                .toList();
-
-            if (healthyChannels.isEmpty()) {
+            // 按成功率、响应时间、手续费率和负载综合评分选择渠道
+            PaymentChannel selectedChannel = adaptiveChannelRouter.select(scene, amount);
+            if (selectedChannel == null) {
                 log.warn("未找到符合条件的支付渠道: scene={}, amount={}", scene, amount);
                 return null;
             }
 
-            // TODO: 实现更智能的路由算法（成功率、负载均衡、成本等）
-            PaymentChannel selectedChannel = healthyChannels.get(0);
             log.debug("选择支付渠道: {}, 优先级: {}", selectedChannel.getChannelCode(), selectedChannel.getPriority());
 
             return selectedChannel;
@@ -211,6 +261,86 @@ public class PaymentServiceImpl implements PaymentService {
         }
     }
 
+    /**
+     * 选择渠道并创建订单
+     *
+     * @param verifyInDatabase 幂等存储不可用时回退到数据库校验商户订单号
+     */
+    private PreparedPayment preparePayment(PaymentRequest request, boolean verifyInDatabase) {
+        if (verifyInDatabase) {
+            PreparedPayment replay = replayExisting(request);
+            if (replay != null) {
+                return replay;
+            }
+        }
+
+        // 智能路由选择渠道
+        PaymentChannel channel = selectOptimalChannel(request.getScene(), request.getTotalAmount());
+        if (channel == null) {
+            throw new IllegalStateException("暂无可用的支付渠道");
+        }
+
+        PaymentOrder order;
+        try {
+            order = createPaymentOrder(request, channel);
+        } catch (DuplicateKeyException e) {
+            // 幂等占位过期后的重试由商户订单号唯一索引兜底，由已存在的订单行重放
+            PreparedPayment replay = replayExisting(request);
+            if (replay == null) {
+                throw e;
+            }
+            return replay;
+        }
+
+        // 登记到期自动关闭并计入实时交易统计
+        orderExpiryScheduler.schedule(order);
+        realtimeTransactionCounter.recordCreated(order);
+        return new PreparedPayment(order, channel);
+    }
+
+    /**
+     * 商户订单号已存在时由订单行重放，请求指纹不一致时拒绝；
+     * 渠道下单失败的订单按失败拒绝，尚未取得支付凭据的待支付订单按处理中拒绝，不重放为下单成功
+     *
+     * @return 订单不存在时返回null
+     */
+    private PreparedPayment replayExisting(PaymentRequest request) {
+        PaymentOrder existing = orderWriteBehindBuffer.overlay(
+                paymentOrderRepository.findByOutTradeNo(request.getOutTradeNo()));
+        if (existing == null) {
+            return null;
+        }
+        if (!fingerprint(existing).equals(fingerprint(request))) {
+            throw new IllegalStateException(DUPLICATE_OUT_TRADE_NO);
+        }
+        PaymentOrder.Status status = PaymentOrder.Status.fromCode(existing.getStatus());
+        if (status == PaymentOrder.Status.FAILED) {
+            throw new IllegalStateException(ORDER_FAILED);
+        }
+        if (status == PaymentOrder.Status.CREATED && existing.getPayCredentials() == null) {
+            throw new IllegalStateException(ORDER_IN_PROGRESS);
+        }
+        log.info("商户订单号已存在，由订单重放响应: {}", request.getOutTradeNo());
+        return PreparedPayment.replay(replayFromOrder(existing));
+    }
+
+    private static String fingerprint(PaymentRequest request) {
+        return PaymentIdempotencyStore.fingerprint(DEFAULT_MERCHANT_NO, request.getTotalAmount(), request.getCurrency());
+    }
+
+    private static String fingerprint(PaymentOrder order) {
+        return PaymentIdempotencyStore.fingerprint(order.getMerchantNo(), order.getTotalAmount(), order.getCurrency());
+    }
+
+    /**
+     * 由订单行构造重放响应
+     */
+    private PaymentResponse replayFromOrder(PaymentOrder order) {
+        PaymentResponse response = convertOrderToResponse(order);
+        response.setCredentials(order.getPayCredentials());
+        return response;
+    }
+
     /**
      * 验证支付请求参数
      */
@@ -237,10 +367,10 @@ public class PaymentServiceImpl implements PaymentService {
      */
     private PaymentOrder createPaymentOrder(PaymentRequest request, PaymentChannel channel) {
         PaymentOrder order = new PaymentOrder();
-        order.setTradeNo(generateTradeNo());
+        order.setTradeNo(tradeNoGenerator.nextTradeNo());
         order.setOutTradeNo(request.getOutTradeNo());
         order.setUserId(1L); // TODO: 从当前登录用户获取
-        order.setMerchantNo("DEFAULT"); // TODO: 从用户信息获取
+        order.setMerchantNo(DEFAULT_MERCHANT_NO);
         order.setChannelCode(channel.getChannelCode());
         order.setSubject(request.getSubject());
         order.setBody(request.getBody());
@@ -266,34 +396,116 @@ public class PaymentServiceImpl implements PaymentService {
         return order;
     }
 
+    /**
+     * 调用渠道适配器并记录渠道实时指标
+     */
+    private PaymentResponse callChannelWithMetrics(PaymentChannel channel, PaymentOrder order, PaymentRequest request) {
+        ChannelMetrics metrics = channelMetricsRegistry.getMetrics(channel);
+        long startTime = System.currentTimeMillis();
+        boolean success = false;
+        metrics.onStart();
+        try {
+            PaymentResponse response = callChannelAdapter(channel, order, request);
+            success = true;
+            return response;
+        } finally {
+            metrics.onComplete(success, System.currentTimeMillis() - startTime);
+        }
+    }
+
     /**
      * 调用渠道适配器
+     * 工厂返回的适配器带熔断与舱壁保护，渠道失败计入熔断器，熔断后路由不再选中该渠道
      */
     private PaymentResponse callChannelAdapter(PaymentChannel channel, PaymentOrder order, PaymentRequest request) {
-        // TODO: 这里应该调用具体的渠道适配器
-        // 目前返回模拟数据
-        PaymentResponse response = new PaymentResponse();
+        PaymentResponse response;
+        try {
+            PaymentChannelAdapter adapter = paymentChannelAdapterFactory.getAdapter(channel.getChannelType());
+            response = adapter.createPayment(request, channel);
+        } catch (PaymentChannelAdapter.PaymentException e) {
+            throw new IllegalStateException("渠道下单失败: " + e.getMessage(), e);
+        }
+        if (response == null) {
+            throw new IllegalStateException("渠道下单失败: 渠道未返回结果");
+        }
+
+        // 系统订单信息以本地订单为准
         response.setTradeNo(order.getTradeNo());
         response.setOutTradeNo(order.getOutTradeNo());
         response.setTotalAmount(order.getTotalAmount().toString());
         response.setCurrency(order.getCurrency());
-        response.setStatus("CREATED");
         response.setChannel(channel.getChannelCode());
         response.setCreateTime(order.getCreateTime());
         response.setExpireTime(order.getExpireTime());
-        response.setCredentials("simulated_credentials_" + UUID.randomUUID().toString());
-        
+        if (response.getStatus() == null) {
+            response.setStatus("CREATED");
+        }
         return response;
     }
 
+    /**
+     * 提交渠道调用到渠道线程池；线程池已满时不在数据库线程上调用渠道，按渠道并发已满失败
+     */
+    private CompletableFuture<PaymentResponse> submitChannelCall(PreparedPayment prepared, PaymentRequest request) {
+        try {
+            return CompletableFuture.supplyAsync(() -> callChannel(prepared, request), channelCallExecutor);
+        } catch (RejectedExecutionException e) {
+            markChannelFailed(prepared.order);
+            PaymentChannelAdapter.PaymentException bulkheadFull = new PaymentChannelAdapter.PaymentException(
+                    "CHANNEL_BULKHEAD_FULL", "支付渠道 [" + prepared.channel.getChannelCode() + "] 并发调用已满", e);
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("渠道下单失败: " + bulkheadFull.getMessage(), bulkheadFull));
+        }
+    }
+
+    /**
+     * 调用渠道下单，支付凭据进入订单写缓冲批量回写
+     */
+    private PaymentResponse callChannel(PreparedPayment prepared, PaymentRequest request) {
+        PaymentResponse response;
+        try {
+            response = callChannelWithMetrics(prepared.channel, prepared.order, request);
+        } catch (RuntimeException e) {
+            // 渠道下单失败的订单没有支付凭据，置为失败，不再被重放为下单成功
+            markChannelFailed(prepared.order);
+            throw e;
+        }
+        // 3. 渠道返回的支付凭据进入订单写缓冲，批量回写
+        try {
+            updateOrderAfterChannelCall(prepared.order, response);
+        } catch (Exception e) {
+            log.error("更新支付订单失败: {}", prepared.order.getTradeNo(), e);
+        }
+        log.info("创建支付订单成功: {}, 商户订单号: {}", prepared.order.getTradeNo(), prepared.order.getOutTradeNo());
+        return response;
+    }
+
+    /**
+     * 渠道下单失败时将订单置为失败，订单已被支付或关闭时保持原状态
+     */
+    private void markChannelFailed(PaymentOrder order) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            paymentOrderStateMachine.transition(order, PaymentOrder.Status.FAILED,
+                    new PaymentOrder().setUpdateTime(now).setUpdateBy("system"));
+        } catch (Exception e) {
+            log.error("渠道下单失败的订单置为失败时出错: {}", order.getTradeNo(), e);
+        }
+    }
+
     /**
      * 更新订单信息
      */
     private void updateOrderAfterChannelCall(PaymentOrder order, PaymentResponse response) {
-        if (response.getCredentials() != null) {
-            order.setPayCredentials(response.getCredentials());
+        if (response.getCredentials() == null) {
+            return;
         }
-        paymentOrderRepository.updateById(order);
+        order.setPayCredentials(response.getCredentials());
+        orderWriteBehindBuffer.submit(new PaymentOrder()
+                .setId(order.getId())
+                .setTradeNo(order.getTradeNo())
+                .setPayCredentials(response.getCredentials())
+                .setUpdateTime(LocalDateTime.now()));
     }
 
     /**
@@ -325,9 +537,26 @@ public class PaymentServiceImpl implements PaymentService {
     }
 
     /**
-     * 生成系统交易号
+     * 已落库待调用渠道的订单，订单已存在时只携带重放响应
      */
-    private String generateTradeNo() {
-        return "PAY_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
+    private static final class PreparedPayment {
+
+        private final PaymentOrder order;
+        private final PaymentChannel channel;
+        private final PaymentResponse replay;
+
+        private PreparedPayment(PaymentOrder order, PaymentChannel channel) {
+            this(order, channel, null);
+        }
+
+        private PreparedPayment(PaymentOrder order, PaymentChannel channel, PaymentResponse replay) {
+            this.order = order;
+            this.channel = channel;
+            this.replay = replay;
+        }
+
+        private static PreparedPayment replay(PaymentResponse response) {
+            return new PreparedPayment(null, null, response);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.autopay.backend.service.impl;
+
+import com.autopay.backend.service.TradeNoGenerator;
+import com.autopay.backend.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * 基于雪花算法的系统交易号生成器
+ * 交易号格式：PAY + 19位定长ID，字典序与生成时间一致，插入索引时保持追加写
+ *
+ * 节点ID可显式配置，由部署方保证各节点唯一；未配置时启动阶段从Redis租用一个空闲节点ID并定期续约，
+ * 无法获得节点ID时启动失败。租约在本地判定过期后停止生成交易号并重新租用，
+ * 避免租约被其他节点接管后生成重复的交易号
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class SnowflakeTradeNoGenerator implements TradeNoGenerator {
+
+    private static final String PREFIX = "PAY";
+    private static final int ID_WIDTH = 19;
+
+    private static final String WORKER_KEY_PREFIX = "autopay:trade-no:worker:";
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long configuredWorkerId;
+    private final long leaseTtlMillis;
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+
+    private volatile SnowflakeIdGenerator idGenerator;
+    private volatile long leasedWorkerId = -1;
+
+    /**
+     * 租约在本地的有效截止时间(毫秒)，按发起续约前的时间计算，显式配置节点ID时为Long.MAX_VALUE
+     */
+    private volatile long leaseValidUntil;
+
+    public SnowflakeTradeNoGenerator(StringRedisTemplate redisTemplate,
+                                     @Value("${autopay.trade-no.worker-id:-1}") long workerId,
+                                     @Value("${autopay.trade-no.lease-ttl-ms:60000}") long leaseTtlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.configuredWorkerId = workerId;
+        this.leaseTtlMillis = leaseTtlMillis;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (configuredWorkerId >= 0) {
+            idGenerator = new SnowflakeIdGenerator(configuredWorkerId);
+            leaseValidUntil = Long.MAX_VALUE;
+            log.info("交易号生成器初始化完成，配置的节点ID：{}", configuredWorkerId);
+            return;
+        }
+        if (!acquireLease()) {
+            throw new IllegalStateException("未配置交易号节点ID(autopay.trade-no.worker-id)，且无法从Redis租用空闲节点ID");
+        }
+    }
+
+    @Override
+    public String nextTradeNo() {
+        if (System.currentTimeMillis() >= leaseValidUntil) {
+            throw new IllegalStateException("交易号节点ID租约已过期，暂停生成交易号");
+        }
+        long id = idGenerator.nextId();
+        char[] chars = new char[PREFIX.length() + ID_WIDTH];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        for (int i = chars.length - 1; i >= PREFIX.length(); i--) {
+            chars[i] = (char) ('0' + (id % 10));
+            id /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 续约节点ID租约，租约丢失时重新租用
+     */
+    @Scheduled(fixedDelayString = "${autopay.trade-no.lease-renew-interval-ms:20000}")
+    public void renewLease() {
+        if (configuredWorkerId >= 0) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            if (leasedWorkerId >= 0) {
+                Long renewed = redisTemplate.execute(RENEW_SCRIPT,
+                        Collections.singletonList(WORKER_KEY_PREFIX + leasedWorkerId),
+                        nodeId, String.valueOf(leaseTtlMillis));
+                if (renewed != null && renewed > 0) {
+                    leaseValidUntil = startedAt + leaseTtlMillis;
+                    return;
+                }
+                log.warn("交易号节点ID租约丢失：{}，重新租用", leasedWorkerId);
+                leaseValidUntil = 0;
+                leasedWorkerId = -1;
+            }
+            if (!acquireLease()) {
+                log.error("交易号节点ID租用失败，暂停生成交易号");
+            }
+        } catch (Exception e) {
+            log.warn("交易号节点ID续约失败：{}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (leasedWorkerId < 0) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(WORKER_KEY_PREFIX + leasedWorkerId), nodeId);
+        } catch (Exception e) {
+            log.warn("释放交易号节点ID失败：{}，{}", leasedWorkerId, e.getMessage());
+        }
+    }
+
+    /**
+     * 依次尝试租用空闲节点ID
+     */
+    private boolean acquireLease() {
+        for (long workerId = 0; workerId <= SnowflakeIdGenerator.MAX_WORKER_ID; workerId++) {
+            long startedAt = System.currentTimeMillis();
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(WORKER_KEY_PREFIX + workerId, nodeId, Duration.ofMillis(leaseTtlMillis)))) {
+                idGenerator = new SnowflakeIdGenerator(workerId);
+                leasedWorkerId = workerId;
+                leaseValidUntil = startedAt + leaseTtlMillis;
+                log.info("交易号生成器初始化完成，租用节点ID：{}", workerId);
+                return true;
+            }
+        }
+        return false;
+    }
+}
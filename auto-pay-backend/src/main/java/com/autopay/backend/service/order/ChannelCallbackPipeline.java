@@ -0,0 +1,560 @@
+package com.autopay.backend.service.order;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.http.HttpUtil;
+import com.alibaba.fastjson2.JSON;
+import com.autopay.backend.adapter.PaymentChannelAdapter;
+import com.autopay.backend.adapter.PaymentChannelAdapterFactory;
+import com.autopay.backend.dto.response.PaymentResponse;
+import com.autopay.backend.entity.ChannelCallback;
+import com.autopay.backend.entity.PaymentChannel;
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.repository.ChannelCallbackRepository;
+import com.autopay.backend.repository.PaymentChannelRepository;
+import com.autopay.backend.repository.PaymentOrderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 渠道回调接入流水线
+ * 回调在请求线程内解析验签，验签通过后落库再应答渠道，验签失败或落库失败时拒绝回调，由渠道按其重试策略重发；
+ * 已落库的回调进入有界无锁队列，后台按原始报文和订单状态去重，再按目标状态分组经订单状态机批量迁移订单状态。
+ * 支付成功回调先核对订单金额，金额不一致或订单已关闭等无法迁移为已支付的回调转入异常状态并告警；
+ * 处理失败的回调按次数重试，重试耗尽后保留为死信。内存队列已满或进程重启时，未处理完成的回调由补偿任务从库中重新加载
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChannelCallbackPipeline {
+
+    private static final String UPDATE_BY = "callback";
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final Map<String, PaymentOrder.Status> STATUS_ALIASES = Map.of(
+            "SUCCESS", PaymentOrder.Status.PAID,
+            "TRADE_SUCCESS", PaymentOrder.Status.PAID,
+            "TRADE_FINISHED", PaymentOrder.Status.PAID,
+            "PAYERROR", PaymentOrder.Status.FAILED,
+            "PAY_ERROR", PaymentOrder.Status.FAILED,
+            "TRADE_CLOSED", PaymentOrder.Status.CLOSED);
+
+    private final PaymentChannelRepository paymentChannelRepository;
+    private final PaymentChannelAdapterFactory paymentChannelAdapterFactory;
+    private final PaymentOrderStateMachine paymentOrderStateMachine;
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final ChannelCallbackRepository channelCallbackRepository;
+
+    @Qualifier("callbackExecutor")
+    private final Executor callbackExecutor;
+
+    @Value("${autopay.callback.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${autopay.callback.batch-size:200}")
+    private int batchSize;
+
+    @Value("${autopay.callback.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${autopay.callback.dedup-ttl-seconds:600}")
+    private long dedupTtlSeconds;
+
+    @Value("${autopay.callback.recover-after-ms:60000}")
+    private long recoverAfterMillis;
+
+    private final Queue<VerifiedCallback> queue = new ConcurrentLinkedQueue<>();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder duplicateCount = new LongAdder();
+    private final LongAdder exceptionCount = new LongAdder();
+    private final LongAdder deadCount = new LongAdder();
+
+    private Cache<String, Boolean> processed;
+    private Cache<String, PaymentChannel> channels;
+
+    @PostConstruct
+    public void init() {
+        processed = Caffeine.newBuilder()
+                .maximumSize(Math.max(queueCapacity, 1) * 10L)
+                .expireAfterWrite(Duration.ofSeconds(dedupTtlSeconds))
+                .build();
+        channels = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+    }
+
+    /**
+     * 接收渠道回调，验签并落库后才应答
+     *
+     * @return 是否已接收，验签失败或落库失败时返回false
+     */
+    public boolean submit(String channelCode, String callbackData) {
+        if (StrUtil.isBlank(channelCode) || StrUtil.isBlank(callbackData)) {
+            return false;
+        }
+        RawCallback raw = new RawCallback(channelCode, callbackData);
+        if (processed.getIfPresent(raw.dedupKey) != null) {
+            duplicateCount.increment();
+            return true;
+        }
+
+        VerifiedCallback callback;
+        try {
+            callback = verify(raw, null, 0);
+        } catch (Exception e) {
+            log.warn("渠道回调验签失败：{}，{}", channelCode, e.getMessage());
+            rejectedCount.increment();
+            return false;
+        }
+        if (callback == null) {
+            rejectedCount.increment();
+            return false;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ChannelCallback record = new ChannelCallback()
+                .setChannelCode(channelCode)
+                .setDedupKey(raw.dedupKey)
+                .setTradeNo(callback.response.getTradeNo())
+                .setTargetStatus(callback.status.getCode())
+                .setPayload(callbackData)
+                .setStatus(ChannelCallback.STATUS_PENDING)
+                .setAttempts(0)
+                .setCreateTime(now)
+                .setUpdateTime(now);
+        try {
+            channelCallbackRepository.insert(record);
+        } catch (DuplicateKeyException e) {
+            // 相同回调已落库，由已落库的记录处理
+            duplicateCount.increment();
+            return true;
+        } catch (Exception e) {
+            log.error("渠道回调落库失败：{}，交易号：{}", channelCode, callback.response.getTradeNo(), e);
+            rejectedCount.increment();
+            return false;
+        }
+
+        // 内存队列已满时不影响应答，由补偿任务从库中加载
+        enqueue(callback.withId(record.getId()));
+        return true;
+    }
+
+    /**
+     * 补偿加载长时间未处理完成的回调
+     */
+    @Scheduled(fixedDelayString = "${autopay.callback.recover-interval-ms:30000}")
+    public void recover() {
+        List<ChannelCallback> stale;
+        try {
+            stale = channelCallbackRepository.findStalePending(
+                    LocalDateTime.now().minus(Duration.ofMillis(recoverAfterMillis)), batchSize);
+        } catch (Exception e) {
+            log.warn("加载待处理渠道回调失败：{}", e.getMessage());
+            return;
+        }
+        for (ChannelCallback record : stale) {
+            if (inFlight.contains(record.getId())) {
+                continue;
+            }
+            int attempts = record.getAttempts() != null ? record.getAttempts() : 0;
+            try {
+                VerifiedCallback callback = verify(new RawCallback(record.getChannelCode(), record.getPayload()),
+                        record.getId(), attempts);
+                if (callback == null) {
+                    finish(List.of(record.getId()), ChannelCallback.STATUS_DEAD, "回调无法识别");
+                    deadCount.increment();
+                } else if (!enqueue(callback)) {
+                    break;
+                }
+            } catch (Exception e) {
+                fail(record.getId(), attempts, record.getChannelCode(), e);
+            }
+        }
+    }
+
+    /**
+     * 获取待处理回调数
+     */
+    public int getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * 获取因验签失败或落库失败被拒绝的回调数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 获取重复回调数
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * 获取转入异常状态的回调数
+     */
+    public long getExceptionCount() {
+        return exceptionCount.sum();
+    }
+
+    /**
+     * 获取重试耗尽转入死信的回调数
+     */
+    public long getDeadCount() {
+        return deadCount.sum();
+    }
+
+    private boolean enqueue(VerifiedCallback callback) {
+        int size;
+        do {
+            size = backlog.get();
+            if (size >= queueCapacity) {
+                return false;
+            }
+        } while (!backlog.compareAndSet(size, size + 1));
+        inFlight.add(callback.id);
+        queue.offer(callback);
+        scheduleDrain();
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            callbackExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * 每次取出一个批次处理，避免长期占用线程
+     */
+    private void drain() {
+        try {
+            List<VerifiedCallback> batch = new ArrayList<>(batchSize);
+            VerifiedCallback callback;
+            while (batch.size() < batchSize && (callback = queue.poll()) != null) {
+                backlog.decrementAndGet();
+                batch.add(callback);
+            }
+            if (!batch.isEmpty()) {
+                // 处理期间重新入队的回调再次登记
+                batch.forEach(item -> inFlight.remove(item.id));
+                try {
+                    apply(batch);
+                } catch (Exception e) {
+                    log.error("渠道回调批次处理失败，由补偿任务重新加载", e);
+                }
+            }
+        } finally {
+            draining.set(false);
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    /**
+     * 解析并验签回调，无法识别的回调返回null，验签失败等错误抛出异常
+     */
+    private VerifiedCallback verify(RawCallback callback, Long id, int attempts) throws Exception {
+        PaymentChannel channel = channels.get(callback.channelCode, paymentChannelRepository::findByChannelCode);
+        if (channel == null) {
+            log.warn("渠道回调对应的渠道不存在：{}", callback.channelCode);
+            return null;
+        }
+        PaymentChannelAdapter adapter = paymentChannelAdapterFactory.getAdapter(channel.getChannelType());
+        PaymentResponse response = adapter.handleCallback(parse(callback.data), channel);
+        PaymentOrder.Status status = resolveStatus(response == null ? null : response.getStatus());
+        if (status == null || StrUtil.isBlank(response.getTradeNo())) {
+            log.warn("忽略无法识别的渠道回调：{}，状态：{}", callback.channelCode,
+                    response == null ? null : response.getStatus());
+            return null;
+        }
+        return new VerifiedCallback(callback, response, status, id, attempts);
+    }
+
+    /**
+     * 按目标状态分组批量迁移订单状态
+     */
+    private void apply(List<VerifiedCallback> callbacks) {
+        Map<String, VerifiedCallback> unique = new LinkedHashMap<>();
+        List<Long> duplicates = new ArrayList<>();
+        for (VerifiedCallback callback : callbacks) {
+            VerifiedCallback previous = unique.put(callback.response.getTradeNo() + ":" + callback.status, callback);
+            if (previous != null) {
+                duplicates.add(previous.id);
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            finish(duplicates, ChannelCallback.STATUS_PROCESSED, null);
+        }
+
+        // 按枚举顺序处理，同一批次内的支付成功先于关闭和失败生效
+        Map<PaymentOrder.Status, List<VerifiedCallback>> groups = new EnumMap<>(PaymentOrder.Status.class);
+        for (VerifiedCallback callback : unique.values()) {
+            groups.computeIfAbsent(callback.status, status -> new ArrayList<>()).add(callback);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        groups.forEach((status, group) -> {
+            try {
+                List<VerifiedCallback> accepted = status == PaymentOrder.Status.PAID ? checkPaid(group) : group;
+                List<PaymentOrder> orders = new ArrayList<>(accepted.size());
+                for (VerifiedCallback callback : accepted) {
+                    orders.add(toOrderUpdate(callback, now));
+                }
+                int updated = paymentOrderStateMachine.transitionBatch(orders, status, UPDATE_BY);
+                if (updated < orders.size() && status == PaymentOrder.Status.PAID) {
+                    accepted = checkPaidApplied(accepted);
+                } else if (updated < orders.size()) {
+                    log.info("渠道回调状态迁移 {}：{}/{}，其余订单状态已变更", status, updated, orders.size());
+                }
+                finish(accepted.stream().map(callback -> callback.id).toList(), ChannelCallback.STATUS_PROCESSED, null);
+                accepted.forEach(callback -> processed.put(callback.raw.dedupKey, Boolean.TRUE));
+            } catch (Exception e) {
+                log.error("渠道回调状态迁移失败 {}：{} 条", status, group.size(), e);
+                group.forEach(callback -> retry(callback, e));
+            }
+        });
+    }
+
+    /**
+     * 核对支付成功回调的订单和金额，订单不存在或金额不一致的回调转入异常
+     *
+     * @return 可迁移为已支付的回调
+     */
+    private List<VerifiedCallback> checkPaid(List<VerifiedCallback> group) {
+        Map<String, PaymentOrder> orders = findOrders(group);
+        List<VerifiedCallback> accepted = new ArrayList<>(group.size());
+        for (VerifiedCallback callback : group) {
+            PaymentOrder order = orders.get(callback.response.getTradeNo());
+            BigDecimal paidAmount = paidAmount(callback);
+            if (order == null) {
+                escalate(callback, "订单不存在，渠道通知支付成功");
+            } else if (paidAmount != null && order.getTotalAmount() != null
+                    && paidAmount.compareTo(order.getTotalAmount()) != 0) {
+                escalate(callback, "支付金额 " + paidAmount + " 与订单金额 " + order.getTotalAmount() + " 不一致");
+            } else {
+                accepted.add(callback);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 部分订单未迁移为已支付时重新读取状态，仍未支付(如已被到期关闭)的订单对应的回调转入异常
+     *
+     * @return 订单已是已支付状态的回调
+     */
+    private List<VerifiedCallback> checkPaidApplied(List<VerifiedCallback> accepted) {
+        Map<String, PaymentOrder> orders = findOrders(accepted);
+        List<VerifiedCallback> paid = new ArrayList<>(accepted.size());
+        for (VerifiedCallback callback : accepted) {
+            PaymentOrder order = orders.get(callback.response.getTradeNo());
+            PaymentOrder.Status current = order == null ? null : PaymentOrder.Status.fromCode(order.getStatus());
+            if (current == PaymentOrder.Status.PAID) {
+                paid.add(callback);
+            } else {
+                escalate(callback, "订单状态为 " + current + "，渠道通知支付成功");
+            }
+        }
+        return paid;
+    }
+
+    private Map<String, PaymentOrder> findOrders(List<VerifiedCallback> callbacks) {
+        Map<String, PaymentOrder> orders = new HashMap<>();
+        for (PaymentOrder order : paymentOrderRepository.findStatusByTradeNos(
+                callbacks.stream().map(callback -> callback.response.getTradeNo()).toList())) {
+            orders.put(order.getTradeNo(), order);
+        }
+        return orders;
+    }
+
+    /**
+     * 回调转入异常状态并告警，由人工核实后处理(补单或退款)
+     */
+    private void escalate(VerifiedCallback callback, String reason) {
+        exceptionCount.increment();
+        log.error("渠道回调异常，需人工处理：{}，交易号：{}，渠道交易号：{}，原因：{}", callback.raw.channelCode,
+                callback.response.getTradeNo(), callback.response.getChannelTradeNo(), reason);
+        finish(List.of(callback.id), ChannelCallback.STATUS_EXCEPTION, reason);
+        processed.put(callback.raw.dedupKey, Boolean.TRUE);
+    }
+
+    /**
+     * 处理失败，未耗尽重试次数时重新入队，否则转入死信
+     */
+    private void retry(VerifiedCallback callback, Exception cause) {
+        if (callback.attempts + 1 >= maxAttempts) {
+            fail(callback.id, callback.attempts, callback.raw.channelCode, cause);
+            return;
+        }
+        try {
+            channelCallbackRepository.recordFailure(callback.id, truncate(cause.getMessage()));
+        } catch (Exception e) {
+            log.warn("记录渠道回调处理失败出错：{}，{}", callback.id, e.getMessage());
+        }
+        if (!enqueue(callback.nextAttempt())) {
+            log.warn("渠道回调重试入队失败，由补偿任务处理：{}", callback.id);
+        }
+    }
+
+    private void fail(Long id, int attempts, String channelCode, Exception cause) {
+        if (attempts + 1 < maxAttempts) {
+            try {
+                channelCallbackRepository.recordFailure(id, truncate(cause.getMessage()));
+            } catch (Exception e) {
+                log.warn("记录渠道回调处理失败出错：{}，{}", id, e.getMessage());
+            }
+            return;
+        }
+        deadCount.increment();
+        log.error("渠道回调重试次数耗尽，转入死信：{}，回调ID：{}，原因：{}", channelCode, id, cause.getMessage());
+        finish(List.of(id), ChannelCallback.STATUS_DEAD, truncate(cause.getMessage()));
+    }
+
+    /**
+     * 更新回调处理结果，失败时回调保持待处理，由补偿任务重新加载
+     */
+    private void finish(List<Long> ids, int status, String reason) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            channelCallbackRepository.updateStatus(ids, status, reason);
+        } catch (Exception e) {
+            log.warn("更新渠道回调状态失败：{} 条，{}", ids.size(), e.getMessage());
+        }
+    }
+
+    private static PaymentOrder toOrderUpdate(VerifiedCallback callback, LocalDateTime now) {
+        PaymentResponse response = callback.response;
+        PaymentOrder order = new PaymentOrder()
+                .setTradeNo(response.getTradeNo())
+                .setChannelTradeNo(response.getChannelTradeNo());
+        if (callback.status == PaymentOrder.Status.PAID) {
+            order.setPayTime(response.getPayTime() != null ? response.getPayTime() : now);
+            order.setPaidAmount(paidAmount(callback));
+        } else if (callback.status == PaymentOrder.Status.CLOSED) {
+            order.setCloseTime(response.getCloseTime() != null ? response.getCloseTime() : now);
+        }
+        return order;
+    }
+
+    private static BigDecimal paidAmount(VerifiedCallback callback) {
+        String amount = callback.response.getTotalAmount();
+        return StrUtil.isNotBlank(amount) ? new BigDecimal(amount.trim()) : null;
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static PaymentOrder.Status resolveStatus(String status) {
+        if (StrUtil.isBlank(status)) {
+            return null;
+        }
+        String normalized = status.trim().toUpperCase();
+        PaymentOrder.Status alias = STATUS_ALIASES.get(normalized);
+        if (alias != null) {
+            return alias;
+        }
+        for (PaymentOrder.Status candidate : List.of(
+                PaymentOrder.Status.PAID, PaymentOrder.Status.FAILED, PaymentOrder.Status.CLOSED)) {
+            if (candidate.name().equals(normalized)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> parse(String data) {
+        String trimmed = data.trim();
+        if (trimmed.startsWith("{")) {
+            return JSON.parseObject(trimmed);
+        }
+        return new HashMap<>(HttpUtil.decodeParamMap(trimmed, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 原始回调
+     */
+    private static final class RawCallback {
+
+        final String channelCode;
+        final String data;
+        final String dedupKey;
+
+        RawCallback(String channelCode, String data) {
+            this.channelCode = channelCode;
+            this.data = data;
+            this.dedupKey = channelCode + ":" + SecureUtil.md5(data);
+        }
+    }
+
+    /**
+     * 验签通过的回调
+     */
+    private static final class VerifiedCallback {
+
+        final RawCallback raw;
+        final PaymentResponse response;
+        final PaymentOrder.Status status;
+        final Long id;
+        final int attempts;
+
+        VerifiedCallback(RawCallback raw, PaymentResponse response, PaymentOrder.Status status, Long id, int attempts) {
+            this.raw = raw;
+            this.response = response;
+            this.status = status;
+            this.id = id;
+            this.attempts = attempts;
+        }
+
+        VerifiedCallback withId(Long id) {
+            return new VerifiedCallback(raw, response, status, id, attempts);
+        }
+
+        VerifiedCallback nextAttempt() {
+            return new VerifiedCallback(raw, response, status, id, attempts + 1);
+        }
+    }
+}
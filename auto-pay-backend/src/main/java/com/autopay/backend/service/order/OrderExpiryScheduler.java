@@ -0,0 +1,239 @@
+package com.autopay.backend.service.order;
+
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.repository.PaymentOrderRepository;
+import com.autopay.backend.util.TimingWheel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 订单到期自动关闭调度器
+ * 订单创建时按到期时间放入分层时间轮，到期后按批次执行 UPDATE ... WHERE id IN (...) 关闭订单；
+ * 订单按主键取模分片，各节点通过Redis租约持有分片，获得分片时从数据库重建该分片的未支付订单，
+ * 并定期补偿加载其他节点创建的即将到期订单。加载时按到期时间分页范围扫描未支付订单，在内存中按分片过滤，
+ * 同一轮获得的多个分片只扫描一次。关闭语句带状态条件，多节点重复关闭不会影响已支付订单
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderExpiryScheduler {
+
+    private static final String SHARD_KEY_PREFIX = "autopay:order-expiry:shard:";
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final PaymentOrderStateMachine paymentOrderStateMachine;
+    private final StringRedisTemplate redisTemplate;
+
+    @Qualifier("paymentDbExecutor")
+    private final Executor paymentDbExecutor;
+
+    @Value("${autopay.order-expiry.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${autopay.order-expiry.wheel-size:60}")
+    private int wheelSize;
+
+    @Value("${autopay.order-expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${autopay.order-expiry.load-page-size:1000}")
+    private int loadPageSize;
+
+    @Value("${autopay.order-expiry.shard-count:16}")
+    private int shardCount;
+
+    @Value("${autopay.order-expiry.max-owned-shards:16}")
+    private int maxOwnedShards;
+
+    @Value("${autopay.order-expiry.lease-ttl-ms:30000}")
+    private long leaseTtlMillis;
+
+    @Value("${autopay.order-expiry.reconcile-interval-ms:300000}")
+    private long reconcileIntervalMillis;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+    private final Set<Integer> ownedShards = ConcurrentHashMap.newKeySet();
+    private final Set<Long> scheduledIds = ConcurrentHashMap.newKeySet();
+    private TimingWheel<Long> wheel;
+
+    @PostConstruct
+    public void init() {
+        wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        renewShards();
+    }
+
+    /**
+     * 登记订单到期关闭
+     */
+    public void schedule(PaymentOrder order) {
+        if (order.getId() == null || order.getExpireTime() == null) {
+            return;
+        }
+        if (scheduledIds.add(order.getId())) {
+            wheel.add(order.getId(), order.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+    }
+
+    /**
+     * 推进时间轮并批量关闭到期订单
+     */
+    @Scheduled(fixedRateString = "${autopay.order-expiry.tick-ms:1000}")
+    public void tick() {
+        List<Long> expired = new ArrayList<>();
+        wheel.advance(System.currentTimeMillis(), expired::add);
+        if (expired.isEmpty()) {
+            return;
+        }
+        expired.forEach(scheduledIds::remove);
+        for (int from = 0; from < expired.size(); from += batchSize) {
+            List<Long> batch = new ArrayList<>(expired.subList(from, Math.min(from + batchSize, expired.size())));
+            paymentDbExecutor.execute(() -> closeBatch(batch));
+        }
+    }
+
+    /**
+     * 续约已持有的分片并尝试获取空闲分片
+     */
+    @Scheduled(fixedDelayString = "${autopay.order-expiry.lease-renew-interval-ms:10000}")
+    public void renewShards() {
+        Set<Integer> acquired = new HashSet<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            String key = SHARD_KEY_PREFIX + shard;
+            try {
+                if (ownedShards.contains(shard)) {
+                    Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                            nodeId, String.valueOf(leaseTtlMillis));
+                    if (renewed == null || renewed == 0) {
+                        ownedShards.remove(shard);
+                        log.warn("订单到期分片租约丢失：{}", shard);
+                    }
+                } else if (ownedShards.size() < maxOwnedShards && Boolean.TRUE.equals(
+                        redisTemplate.opsForValue().setIfAbsent(key, nodeId, Duration.ofMillis(leaseTtlMillis)))) {
+                    ownedShards.add(shard);
+                    acquired.add(shard);
+                }
+            } catch (Exception e) {
+                log.warn("订单到期分片续约失败：{}，{}", shard, e.getMessage());
+            }
+        }
+        if (!acquired.isEmpty()) {
+            log.info("获得订单到期分片：{}，从数据库重建", acquired);
+            paymentDbExecutor.execute(() -> loadShards(acquired, null));
+        }
+    }
+
+    /**
+     * 补偿加载持有分片中即将到期的订单，覆盖由其他节点创建且该节点已下线的订单
+     */
+    @Scheduled(fixedDelayString = "${autopay.order-expiry.reconcile-interval-ms:300000}",
+            initialDelayString = "${autopay.order-expiry.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        LocalDateTime before = LocalDateTime.now().plus(Duration.ofMillis(reconcileIntervalMillis * 2));
+        Set<Integer> shards = new HashSet<>(ownedShards);
+        if (!shards.isEmpty()) {
+            paymentDbExecutor.execute(() -> loadShards(shards, before));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Integer shard : ownedShards) {
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(SHARD_KEY_PREFIX + shard), nodeId);
+            } catch (Exception e) {
+                log.warn("释放订单到期分片失败：{}，{}", shard, e.getMessage());
+            }
+        }
+        ownedShards.clear();
+    }
+
+    /**
+     * 获取时间轮中待关闭的订单数
+     */
+    public int getPendingCount() {
+        return wheel.size();
+    }
+
+    /**
+     * 分页加载未支付订单，只登记属于指定分片且仍持有的订单
+     */
+    private void loadShards(Set<Integer> shards, LocalDateTime before) {
+        Collection<Integer> statuses = paymentOrderStateMachine.sourceCodes(PaymentOrder.Status.CLOSED);
+        LocalDateTime afterTime = null;
+        long afterId = 0L;
+        int loaded = 0;
+        try {
+            List<PaymentOrder> page;
+            do {
+                page = paymentOrderRepository.findUnpaidOrdersAfter(statuses, afterTime, afterId, before, loadPageSize);
+                for (PaymentOrder order : page) {
+                    int shard = (int) Math.floorMod(order.getId(), (long) shardCount);
+                    if (shards.contains(shard) && ownedShards.contains(shard)) {
+                        schedule(order);
+                        loaded++;
+                    }
+                }
+                if (!page.isEmpty()) {
+                    PaymentOrder last = page.get(page.size() - 1);
+                    afterTime = last.getExpireTime();
+                    afterId = last.getId();
+                }
+            } while (page.size() == loadPageSize);
+            log.debug("加载订单到期分片：{}，{} 个订单", shards, loaded);
+        } catch (Exception e) {
+            log.error("加载订单到期分片失败：{}", shards, e);
+        }
+    }
+
+    private void closeBatch(List<Long> ids) {
+        try {
+            int closed = paymentOrderRepository.closeExpiredOrders(ids,
+                    paymentOrderStateMachine.sourceCodes(PaymentOrder.Status.CLOSED),
+                    PaymentOrder.Status.CLOSED.getCode(), LocalDateTime.now());
+            log.info("到期订单自动关闭：{}/{}", closed, ids.size());
+        } catch (Exception e) {
+            // 关闭失败的订单在下一轮时间轮周期重试
+            log.error("到期订单自动关闭失败：{} 个订单", ids.size(), e);
+            long retryAt = System.currentTimeMillis() + tickMillis * wheelSize;
+            for (Long id : ids) {
+                if (scheduledIds.add(id)) {
+                    wheel.add(id, retryAt);
+                }
+            }
+        }
+    }
+}
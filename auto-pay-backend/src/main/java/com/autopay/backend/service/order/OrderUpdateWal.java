@@ -0,0 +1,267 @@
+package com.autopay.backend.service.order;
+
+import com.alibaba.fastjson2.JSON;
+import com.autopay.backend.entity.PaymentOrder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单更新预写日志
+ * 每条订单变更在进入写缓冲前以JSON行追加到当前日志段；追加只把记录放入队列，
+ * 由单个写日志线程取出队列中积累的全部记录一次写入并刷盘(组提交)，完成后通知各提交方，
+ * 并发提交共享一次刷盘。刷盘前切换日志段，批量写库成功后删除已封存的日志段，进程重启时按段序重放未删除的日志；
+ * 无法写库的变更转入死信日志；写日志线程遇到任何异常都只让当前一组提交失败，继续处理后续记录
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+class OrderUpdateWal {
+
+    private static final String SEGMENT_PREFIX = "order-update-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String DEAD_LETTER_FILE = "order-update-dead.log";
+
+    /**
+     * 单次组提交的最大记录数
+     */
+    private static final int MAX_GROUP_SIZE = 1024;
+
+    private final Path directory;
+    private final boolean syncOnWrite;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+
+    private FileChannel channel;
+    private Segment current;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    OrderUpdateWal(Path directory, boolean syncOnWrite) throws IOException {
+        this.directory = directory;
+        this.syncOnWrite = syncOnWrite;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * 读取上次进程遗留的日志段，打开新的日志段并启动写日志线程
+     *
+     * @return 按段序排列的遗留日志段
+     */
+    synchronized List<Segment> recover() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(new Segment(parseSequence(path), path));
+            }
+        }
+        segments.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        long nextSequence = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).sequence + 1;
+        open(nextSequence);
+
+        running = true;
+        writerThread = new Thread(this::run, "order-wal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        return segments;
+    }
+
+    /**
+     * 读取日志段中的订单变更
+     */
+    List<PaymentOrder> read(Segment segment) throws IOException {
+        List<PaymentOrder> updates = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(segment.path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    updates.add(JSON.parseObject(line, PaymentOrder.class));
+                } catch (Exception e) {
+                    // 进程崩溃时最后一行可能写入不完整
+                    log.warn("跳过损坏的订单更新日志：{}", segment.path.getFileName());
+                }
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * 编码订单变更，在提交方线程执行
+     */
+    static byte[] encode(PaymentOrder update) {
+        return (JSON.toJSONString(update) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 追加订单变更，只入队不做IO；同一订单的变更按入队顺序写入
+     *
+     * @param record  编码后的变更
+     * @param durable 写入(开启同步刷盘时为刷盘)完成后完成，写入失败时异常完成
+     */
+    void append(byte[] record, CompletableFuture<Void> durable) {
+        if (!running) {
+            durable.completeExceptionally(new IOException("订单更新日志已关闭"));
+            return;
+        }
+        queue.add(new PendingAppend(record, durable));
+    }
+
+    /**
+     * 封存当前日志段并切换到新段
+     *
+     * @return 被封存的日志段
+     */
+    synchronized Segment roll() throws IOException {
+        Segment sealed = current;
+        channel.force(false);
+        channel.close();
+        open(sealed.sequence + 1);
+        return sealed;
+    }
+
+    /**
+     * 删除已落库的日志段
+     */
+    void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("删除订单更新日志失败：{}", segment.path, e);
+        }
+    }
+
+    /**
+     * 无法写库的变更追加到死信日志并刷盘，由人工处理
+     */
+    synchronized void deadLetter(PaymentOrder update, String reason) throws IOException {
+        String line = JSON.toJSONString(update) + "\t" + reason + "\n";
+        try (FileChannel deadLetter = FileChannel.open(directory.resolve(DEAD_LETTER_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                deadLetter.write(buffer);
+            }
+            deadLetter.force(false);
+        }
+    }
+
+    void close() throws IOException {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private void run() {
+        List<PendingAppend> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                // 写日志线程不能退出，否则后续提交全部等待超时
+                log.error("订单更新日志线程异常：{} 条", group.size(), e);
+                group.forEach(append -> append.durable.completeExceptionally(e));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * 一次写入一组记录，刷盘一次后通知全部提交方
+     */
+    private synchronized void writeGroup(List<PendingAppend> group) {
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[group.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.wrap(group.get(i).record);
+            }
+            ByteBuffer last = buffers[buffers.length - 1];
+            while (last.hasRemaining()) {
+                channel.write(buffers);
+            }
+            if (syncOnWrite) {
+                channel.force(false);
+            }
+            group.forEach(append -> append.durable.complete(null));
+        } catch (IOException | RuntimeException e) {
+            log.error("写入订单更新日志失败：{} 条", group.size(), e);
+            group.forEach(append -> append.durable.completeExceptionally(e));
+        }
+    }
+
+    private void open(long sequence) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%019d", sequence) + SEGMENT_SUFFIX);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        current = new Segment(sequence, path);
+    }
+
+    private static long parseSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * 日志段
+     */
+    static final class Segment {
+
+        final long sequence;
+        final Path path;
+
+        Segment(long sequence, Path path) {
+            this.sequence = sequence;
+            this.path = path;
+        }
+    }
+
+    /**
+     * 待写入的记录
+     */
+    private static final class PendingAppend {
+
+        final byte[] record;
+        final CompletableFuture<Void> durable;
+
+        PendingAppend(byte[] record, CompletableFuture<Void> durable) {
+            this.record = record;
+            this.durable = durable;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.autopay.backend.service.order;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.repository.PaymentOrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.DataTruncation;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLNonTransientException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 支付订单写缓冲
+ * 订单的非状态机字段变更(支付凭据等)先写入预写日志再进入缓冲区，按交易号合并多次变更，
+ * 只更新发生变化的列；缓冲条数达到批量大小或到达刷盘间隔时以JDBC批处理写库。
+ * 批处理失败时逐条重写，因数据本身无法写库的变更转入死信日志，不再反复重试并占住日志段
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderWriteBehindBuffer {
+
+    private static final CopyOptions IGNORE_NULL = CopyOptions.create().setIgnoreNullValue(true);
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    @Qualifier("paymentDbExecutor")
+    private final Executor paymentDbExecutor;
+
+    @Value("${autopay.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${autopay.write-behind.max-pending:20000}")
+    private int maxPending;
+
+    @Value("${autopay.write-behind.wal.dir:data/wal}")
+    private String walDir;
+
+    @Value("${autopay.write-behind.wal.sync-on-write:true}")
+    private boolean syncOnWrite;
+
+    @Value("${autopay.write-behind.wal.append-timeout-ms:1000}")
+    private long appendTimeoutMillis;
+
+    /**
+     * 提交变更持有读锁，切换缓冲区持有写锁，保证日志段与缓冲区一一对应
+     */
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final List<OrderUpdateWal.Segment> sealedSegments = new ArrayList<>();
+
+    private volatile Map<String, PaymentOrder> pending = new ConcurrentHashMap<>();
+    private volatile Map<String, PaymentOrder> flushing = Collections.emptyMap();
+    private OrderUpdateWal wal;
+
+    @PostConstruct
+    public void init() throws IOException {
+        wal = new OrderUpdateWal(Paths.get(walDir), syncOnWrite);
+        int recovered = 0;
+        for (OrderUpdateWal.Segment segment : wal.recover()) {
+            for (PaymentOrder update : wal.read(segment)) {
+                pending.merge(update.getTradeNo(), update, OrderWriteBehindBuffer::coalesce);
+                recovered++;
+            }
+            sealedSegments.add(segment);
+        }
+        if (recovered > 0) {
+            log.info("重放订单更新日志：{} 条变更，{} 个订单", recovered, pending.size());
+            flush();
+        }
+    }
+
+    /**
+     * 提交订单变更
+     *
+     * @param update 仅包含主键、交易号和变更字段的订单，空字段不更新
+     */
+    public void submit(PaymentOrder update) {
+        if (update.getId() == null || update.getTradeNo() == null) {
+            throw new IllegalArgumentException("订单变更缺少主键或交易号");
+        }
+
+        byte[] record = OrderUpdateWal.encode(update);
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        swapLock.readLock().lock();
+        try {
+            // 日志入队与缓冲合并在同一个桶锁内完成，保证同一订单的变更顺序一致；桶锁内不做IO
+            pending.compute(update.getTradeNo(), (tradeNo, previous) -> {
+                wal.append(record, durable);
+                return previous == null ? copy(update) : coalesce(previous, update);
+            });
+            // 在桶锁外等待组提交刷盘，切换日志段前所有已入队的变更均已写入当前段；
+            // 等待有上限，写日志线程卡住时提交失败并释放读锁，不阻塞切换缓冲区
+            awaitDurable(durable, appendTimeoutMillis);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+
+        int size = pending.size();
+        if (size >= maxPending) {
+            // 缓冲区积压时由提交线程同步刷盘，形成背压
+            flush();
+        } else if (size >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            paymentDbExecutor.execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    flushScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 将缓冲区中尚未落库的变更合并到订单上，保证读到最新数据
+     */
+    public PaymentOrder overlay(PaymentOrder order) {
+        if (order == null) {
+            return null;
+        }
+        PaymentOrder inFlight = flushing.get(order.getTradeNo());
+        if (inFlight != null) {
+            BeanUtil.copyProperties(inFlight, order, IGNORE_NULL);
+        }
+        PaymentOrder latest = pending.get(order.getTradeNo());
+        if (latest != null) {
+            BeanUtil.copyProperties(latest, order, IGNORE_NULL);
+        }
+        return order;
+    }
+
+    /**
+     * 批量写库
+     */
+    @Scheduled(fixedDelayString = "${autopay.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<String, PaymentOrder> batch;
+            swapLock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    // 没有待写变更时遗留的日志段均已落库
+                    sealedSegments.forEach(wal::delete);
+                    sealedSegments.clear();
+                    return;
+                }
+                batch = pending;
+                pending = new ConcurrentHashMap<>();
+                flushing = batch;
+                sealedSegments.add(wal.roll());
+            } catch (IOException e) {
+                log.error("切换订单更新日志失败", e);
+                return;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            try {
+                long startTime = System.currentTimeMillis();
+                List<PaymentOrder> retry;
+                try {
+                    writeBatch(batch.values());
+                    retry = Collections.emptyList();
+                } catch (Exception e) {
+                    log.error("订单变更批量写库失败：{} 条，逐条重写", batch.size(), e);
+                    retry = writeEach(batch.values());
+                }
+                if (retry.isEmpty()) {
+                    sealedSegments.forEach(wal::delete);
+                    sealedSegments.clear();
+                } else {
+                    // 暂时无法写库的变更回填缓冲区，之后提交的变更优先；日志段保留到下次写库成功
+                    retry.forEach(update -> pending.merge(update.getTradeNo(), update,
+                            (newer, older) -> coalesce(older, newer)));
+                }
+                log.debug("订单变更批量写库：{} 条，待重试 {} 条，耗时 {} ms",
+                        batch.size(), retry.size(), System.currentTimeMillis() - startTime);
+            } finally {
+                flushing = Collections.emptyMap();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        wal.close();
+    }
+
+    /**
+     * 按变更列分组后批量执行，相同列集合的UPDATE语句共用一个JDBC批次
+     */
+    private void writeBatch(Collection<PaymentOrder> updates) {
+        Map<String, List<PaymentOrder>> groups = new LinkedHashMap<>();
+        for (PaymentOrder update : updates) {
+            String columns = BeanUtil.beanToMap(update, false, true).keySet().toString();
+            groups.computeIfAbsent(columns, key -> new ArrayList<>()).add(update);
+        }
+
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            PaymentOrderRepository mapper = session.getMapper(PaymentOrderRepository.class);
+            int count = 0;
+            for (List<PaymentOrder> group : groups.values()) {
+                for (PaymentOrder update : group) {
+                    mapper.updateById(update);
+                    if (++count % batchSize == 0) {
+                        session.flushStatements();
+                    }
+                }
+            }
+            session.flushStatements();
+            session.commit();
+        }
+    }
+
+    /**
+     * 逐条写库，数据本身导致失败的变更写入死信日志
+     *
+     * @return 因数据库暂时不可用等原因需要重试的变更
+     */
+    private List<PaymentOrder> writeEach(Collection<PaymentOrder> updates) {
+        List<PaymentOrder> retry = new ArrayList<>();
+        try (SqlSession session = sqlSessionFactory.openSession(false)) {
+            PaymentOrderRepository mapper = session.getMapper(PaymentOrderRepository.class);
+            for (PaymentOrder update : updates) {
+                try {
+                    mapper.updateById(update);
+                    session.commit();
+                } catch (Exception e) {
+                    session.rollback();
+                    if (!isRowError(e)) {
+                        retry.add(update);
+                        continue;
+                    }
+                    log.error("订单变更无法写库，转入死信日志：{}", update.getTradeNo(), e);
+                    try {
+                        wal.deadLetter(update, String.valueOf(e.getMessage()));
+                    } catch (IOException ioe) {
+                        log.error("写入订单变更死信日志失败：{}", update.getTradeNo(), ioe);
+                        retry.add(update);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("订单变更逐条写库失败", e);
+            return new ArrayList<>(updates);
+        }
+        return retry;
+    }
+
+    /**
+     * 约束冲突、数据截断等由变更数据本身导致、重试也不会成功的错误
+     */
+    private static boolean isRowError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLNonTransientConnectionException) {
+                return false;
+            }
+            if (cause instanceof SQLNonTransientException || cause instanceof DataTruncation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void awaitDurable(CompletableFuture<Void> durable, long timeoutMillis) {
+        try {
+            durable.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new UncheckedIOException("等待订单更新日志写入超时",
+                    new IOException("订单更新日志" + timeoutMillis + "ms内未写入"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待订单更新日志写入被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new UncheckedIOException("写入订单更新日志失败",
+                    cause instanceof IOException io ? io : new IOException(cause));
+        }
+    }
+
+    private static PaymentOrder copy(PaymentOrder update) {
+        return BeanUtil.copyProperties(update, PaymentOrder.class);
+    }
+
+    private static PaymentOrder coalesce(PaymentOrder previous, PaymentOrder update) {
+        PaymentOrder merged = copy(previous);
+        BeanUtil.copyProperties(update, merged, IGNORE_NULL);
+        return merged;
+    }
+}
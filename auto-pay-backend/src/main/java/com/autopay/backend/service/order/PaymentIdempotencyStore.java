@@ -0,0 +1,202 @@
+package com.autopay.backend.service.order;
+
+import com.alibaba.fastjson2.JSON;
+import com.autopay.backend.dto.response.PaymentResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * 支付请求幂等存储
+ * 本地近端缓存保存已完成请求的响应，Redis通过SETNX原子占位实现跨节点去重；
+ * 重复请求在有效期内直接返回首次请求的支付响应，不访问数据库。响应与请求指纹(商户、金额、币种)一起保存，
+ * 商户订单号相同但指纹不一致的请求不重放，按参数不一致拒绝
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class PaymentIdempotencyStore {
+
+    private static final String KEY_PREFIX = "autopay:idempotency:payment:";
+    private static final String PENDING = "PENDING";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Cache<String, StoredResponse> nearCache;
+    private final Duration ttl;
+    private final Duration pendingTtl;
+
+    public PaymentIdempotencyStore(StringRedisTemplate redisTemplate,
+                                   @Value("${autopay.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                                   @Value("${autopay.idempotency.pending-ttl-seconds:60}") long pendingTtlSeconds,
+                                   @Value("${autopay.idempotency.near-cache.max-size:100000}") long nearCacheMaxSize,
+                                   @Value("${autopay.idempotency.near-cache.ttl-seconds:300}") long nearCacheTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.pendingTtl = Duration.ofSeconds(pendingTtlSeconds);
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(Math.min(nearCacheTtlSeconds, ttlSeconds)))
+                .build();
+    }
+
+    /**
+     * 请求指纹，金额去除末尾的0后参与比较
+     */
+    public static String fingerprint(String merchantNo, BigDecimal amount, String currency) {
+        String normalizedAmount = amount != null ? amount.stripTrailingZeros().toPlainString() : "";
+        return merchantNo + "|" + normalizedAmount + "|" + currency;
+    }
+
+    /**
+     * 预占商户订单号
+     *
+     * @param fingerprint 请求指纹
+     */
+    public Reservation reserve(String outTradeNo, String fingerprint) {
+        StoredResponse cached = nearCache.getIfPresent(outTradeNo);
+        if (cached != null) {
+            return cached.replay(fingerprint);
+        }
+
+        String key = KEY_PREFIX + outTradeNo;
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(key, PENDING, pendingTtl);
+            if (Boolean.TRUE.equals(acquired)) {
+                return Reservation.ACQUIRED;
+            }
+            String stored = redisTemplate.opsForValue().get(key);
+            if (stored == null) {
+                // 占位恰好过期，重新尝试一次
+                return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, PENDING, pendingTtl))
+                        ? Reservation.ACQUIRED : Reservation.IN_PROGRESS;
+            }
+            if (PENDING.equals(stored)) {
+                return Reservation.IN_PROGRESS;
+            }
+            StoredResponse response = JSON.parseObject(stored, StoredResponse.class);
+            nearCache.put(outTradeNo, response);
+            return response.replay(fingerprint);
+        } catch (Exception e) {
+            log.warn("幂等存储不可用，降级为数据库校验：{}", e.getMessage());
+            return Reservation.UNAVAILABLE;
+        }
+    }
+
+    /**
+     * 请求处理完成，保存响应用于重放
+     *
+     * @param fingerprint 订单对应的请求指纹
+     */
+    public void complete(String outTradeNo, String fingerprint, PaymentResponse response) {
+        StoredResponse stored = new StoredResponse(fingerprint, response);
+        nearCache.put(outTradeNo, stored);
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + outTradeNo, JSON.toJSONString(stored), ttl);
+        } catch (Exception e) {
+            log.warn("保存幂等响应失败：{}，{}", outTradeNo, e.getMessage());
+        }
+    }
+
+    /**
+     * 请求处理失败，释放占位允许商户重试
+     */
+    public void release(String outTradeNo) {
+        nearCache.invalidate(outTradeNo);
+        try {
+            redisTemplate.delete(KEY_PREFIX + outTradeNo);
+        } catch (Exception e) {
+            log.warn("释放幂等占位失败：{}，{}", outTradeNo, e.getMessage());
+        }
+    }
+
+    /**
+     * 保存的响应及其请求指纹
+     */
+    @Data
+    @NoArgsConstructor
+    public static final class StoredResponse {
+
+        private String fingerprint;
+        private PaymentResponse response;
+
+        StoredResponse(String fingerprint, PaymentResponse response) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+
+        Reservation replay(String requestFingerprint) {
+            if (!Objects.equals(fingerprint, requestFingerprint)) {
+                return Reservation.MISMATCH;
+            }
+            return Reservation.replay(response);
+        }
+    }
+
+    /**
+     * 预占结果
+     */
+    public static final class Reservation {
+
+        /**
+         * 预占状态
+         */
+        public enum Status {
+            /**
+             * 首次请求，已占位
+             */
+            ACQUIRED,
+            /**
+             * 相同请求正在处理中
+             */
+            IN_PROGRESS,
+            /**
+             * 重复请求，返回首次响应
+             */
+            REPLAY,
+            /**
+             * 商户订单号已使用，但请求指纹与首次请求不一致
+             */
+            MISMATCH,
+            /**
+             * 幂等存储不可用
+             */
+            UNAVAILABLE
+        }
+
+        static final Reservation ACQUIRED = new Reservation(Status.ACQUIRED, null);
+        static final Reservation IN_PROGRESS = new Reservation(Status.IN_PROGRESS, null);
+        static final Reservation MISMATCH = new Reservation(Status.MISMATCH, null);
+        static final Reservation UNAVAILABLE = new Reservation(Status.UNAVAILABLE, null);
+
+        private final Status status;
+        private final PaymentResponse response;
+
+        private Reservation(Status status, PaymentResponse response) {
+            this.status = status;
+            this.response = response;
+        }
+
+        static Reservation replay(PaymentResponse response) {
+            return new Reservation(Status.REPLAY, response);
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public PaymentResponse getResponse() {
+            return response;
+        }
+    }
+}
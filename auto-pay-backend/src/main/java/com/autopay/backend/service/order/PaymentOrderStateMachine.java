@@ -0,0 +1,224 @@
+package com.autopay.backend.service.order;
+
+import com.autopay.backend.entity.PaymentOrder;
+import com.autopay.backend.entity.PaymentOrder.Status;
+import com.autopay.backend.repository.PaymentOrderRepository;
+import com.autopay.backend.service.analytics.RealtimeTransactionCounter;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 支付订单状态机
+ * 状态迁移以 UPDATE ... WHERE id = ? AND status = 期望状态 的条件更新完成，不使用行锁；
+ * 同一进程内对同一交易号的迁移通过分段锁串行化，减少无效的数据库条件更新；
+ * 迁移成功后记录实时交易计数
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class PaymentOrderStateMachine {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 目标状态 -> 允许迁移的来源状态
+     */
+    private static final Map<Status, Set<Status>> SOURCES = new EnumMap<>(Status.class);
+
+    static {
+        for (Status source : Status.values()) {
+            if (source.canPay()) {
+                allow(source, Status.PAYING);
+            }
+            if (source.canClose()) {
+                allow(source, Status.PAID);
+                allow(source, Status.CLOSED);
+                allow(source, Status.FAILED);
+            }
+            if (source.canRefund()) {
+                allow(source, Status.REFUNDING);
+                allow(source, Status.REFUNDED);
+            }
+        }
+        allow(Status.REFUNDING, Status.REFUNDED);
+    }
+
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final RealtimeTransactionCounter realtimeTransactionCounter;
+    private final ReentrantLock[] stripes;
+    private final Map<Status, List<Integer>> sourceCodes = new EnumMap<>(Status.class);
+    private final Set<Status> countedTargets = EnumSet.noneOf(Status.class);
+
+    public PaymentOrderStateMachine(PaymentOrderRepository paymentOrderRepository,
+                                    RealtimeTransactionCounter realtimeTransactionCounter,
+                                    @Value("${autopay.state-machine.stripes:1024}") int stripeCount) {
+        this.paymentOrderRepository = paymentOrderRepository;
+        this.realtimeTransactionCounter = realtimeTransactionCounter;
+        int size = Integer.highestOneBit(Math.max(stripeCount - 1, 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        for (Status target : Status.values()) {
+            List<Integer> codes = new ArrayList<>();
+            for (Status source : SOURCES.getOrDefault(target, Collections.emptySet())) {
+                codes.add(source.getCode());
+                if (realtimeTransactionCounter.affects(source, target)) {
+                    countedTargets.add(target);
+                }
+            }
+            sourceCodes.put(target, Collections.unmodifiableList(codes));
+        }
+    }
+
+    /**
+     * 迁移结果
+     */
+    public enum Result {
+        /**
+         * 迁移成功
+         */
+        APPLIED,
+        /**
+         * 当前状态不允许迁移到目标状态
+         */
+        REJECTED,
+        /**
+         * 订单不存在或状态被并发修改
+         */
+        CONFLICT
+    }
+
+    /**
+     * 判断是否允许状态迁移
+     */
+    public boolean canTransition(Status source, Status target) {
+        return source != null && target != null
+                && SOURCES.getOrDefault(target, Collections.emptySet()).contains(source);
+    }
+
+    /**
+     * 获取允许迁移到目标状态的来源状态码
+     */
+    public List<Integer> sourceCodes(Status target) {
+        return sourceCodes.get(target);
+    }
+
+    /**
+     * 迁移订单状态
+     * 以订单当前状态作为期望状态执行条件更新，并发修改导致更新失败时重新读取状态，
+     * 仍允许迁移则重试；成功后同步更新传入订单的状态
+     *
+     * @param order   订单，需包含主键、交易号和状态
+     * @param target  目标状态
+     * @param changes 随状态一起更新的字段，可为null
+     */
+    public Result transition(PaymentOrder order, Status target, PaymentOrder changes) {
+        ReentrantLock guard = stripeFor(order.getTradeNo());
+        guard.lock();
+        try {
+            Status expected = Status.fromCode(order.getStatus());
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                if (!canTransition(expected, target)) {
+                    return Result.REJECTED;
+                }
+                if (compareAndSet(order.getId(), expected, target, changes)) {
+                    order.setStatus(target.getCode());
+                    realtimeTransactionCounter.recordTransition(order, expected, target);
+                    return Result.APPLIED;
+                }
+                PaymentOrder latest = paymentOrderRepository.selectById(order.getId());
+                if (latest == null) {
+                    return Result.CONFLICT;
+                }
+                expected = Status.fromCode(latest.getStatus());
+                order.setStatus(latest.getStatus());
+            }
+            log.warn("订单状态迁移冲突：{}，目标状态：{}", order.getTradeNo(), target);
+            return Result.CONFLICT;
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    /**
+     * 批量迁移订单状态，只迁移当前状态允许迁移到目标状态的订单；
+     * 目标状态影响实时交易计数时先读取订单当前状态，迁移后记录实际迁移的订单
+     *
+     * @param orders 仅包含交易号和随状态更新字段的订单
+     * @return 实际迁移的订单数
+     */
+    public int transitionBatch(List<PaymentOrder> orders, Status target, String updateBy) {
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        if (!countedTargets.contains(target)) {
+            return paymentOrderRepository.batchTransitionStatus(orders, sourceCodes(target), target.getCode(), updateBy);
+        }
+        List<PaymentOrder> eligible = new ArrayList<>(orders.size());
+        for (PaymentOrder order : paymentOrderRepository.findStatusByTradeNos(
+                orders.stream().map(PaymentOrder::getTradeNo).toList())) {
+            if (canTransition(Status.fromCode(order.getStatus()), target)) {
+                eligible.add(order);
+            }
+        }
+        int updated = paymentOrderRepository.batchTransitionStatus(orders, sourceCodes(target), target.getCode(), updateBy);
+        if (updated > 0) {
+            recordBatch(eligible, target, updated);
+        }
+        return updated;
+    }
+
+    /**
+     * 记录批量迁移的实时交易计数，迁移数少于可迁移数时(并发迁移)重新读取状态确定实际迁移的订单
+     */
+    private void recordBatch(List<PaymentOrder> eligible, Status target, int updated) {
+        Map<String, Integer> current = null;
+        if (updated < eligible.size()) {
+            current = new HashMap<>();
+            for (PaymentOrder order : paymentOrderRepository.findStatusByTradeNos(
+                    eligible.stream().map(PaymentOrder::getTradeNo).toList())) {
+                current.put(order.getTradeNo(), order.getStatus());
+            }
+        }
+        for (PaymentOrder order : eligible) {
+            if (current != null && !target.getCode().equals(current.get(order.getTradeNo()))) {
+                continue;
+            }
+            realtimeTransactionCounter.recordTransition(order, Status.fromCode(order.getStatus()), target);
+        }
+    }
+
+    private boolean compareAndSet(Long id, Status expected, Status target, PaymentOrder changes) {
+        PaymentOrder update = changes != null ? changes : new PaymentOrder();
+        update.setStatus(target.getCode());
+        LambdaUpdateWrapper<PaymentOrder> wrapper = new LambdaUpdateWrapper<PaymentOrder>()
+                .eq(PaymentOrder::getId, id)
+                .eq(PaymentOrder::getStatus, expected.getCode());
+        return paymentOrderRepository.update(update, wrapper) > 0;
+    }
+
+    private ReentrantLock stripeFor(String tradeNo) {
+        int hash = tradeNo == null ? 0 : tradeNo.hashCode();
+        hash ^= hash >>> 16;
+        return stripes[hash & (stripes.length - 1)];
+    }
+
+    private static void allow(Status source, Status target) {
+        SOURCES.computeIfAbsent(target, key -> EnumSet.noneOf(Status.class)).add(source);
+    }
+}
@@ -0,0 +1,126 @@
+package com.autopay.backend.service.risk;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.autopay.backend.entity.RiskRule;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+
+import java.math.BigDecimal;
+
+/**
+ * 编译后风控规则基类
+ * 编译时解析通用配置：规则分数(thresholds.score)、执行超时(thresholds.timeoutMs、thresholds.timeoutScore)
+ * 和适用的操作类型(ruleConditions.operationTypes)
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+abstract class AbstractRiskRuleEvaluator implements RiskRuleEvaluator {
+
+    private final Long ruleId;
+    private final String ruleName;
+    private final Integer ruleType;
+    private final int priority;
+    private final Integer riskLevel;
+    private final BigDecimal riskScore;
+    private final long scoreBasisPoints;
+    private final long timeoutMillis;
+    private final BigDecimal timeoutScore;
+
+    /**
+     * 适用的操作类型位图，0表示适用于全部操作类型
+     */
+    private final int operationMask;
+
+    protected AbstractRiskRuleEvaluator(RiskRule rule, JSONObject thresholds, JSONObject conditions, int defaultScore) {
+        this.ruleId = rule.getId();
+        this.ruleName = rule.getRuleName();
+        this.ruleType = rule.getRuleType();
+        this.priority = rule.getPriority() != null ? rule.getPriority() : Integer.MAX_VALUE;
+        this.riskLevel = rule.getRiskLevel();
+        BigDecimal score = thresholds.getBigDecimal("score");
+        this.scoreBasisPoints = RiskScore.toBasisPoints(score != null ? score : BigDecimal.valueOf(defaultScore));
+        this.riskScore = RiskScore.toDecimal(scoreBasisPoints);
+        this.timeoutMillis = thresholds.getLongValue("timeoutMs", 0L);
+        this.timeoutScore = thresholds.getBigDecimal("timeoutScore");
+        this.operationMask = parseOperationMask(conditions.getJSONArray("operationTypes"));
+    }
+
+    @Override
+    public Long getRuleId() {
+        return ruleId;
+    }
+
+    @Override
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    @Override
+    public Integer getRuleType() {
+        return ruleType;
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public Integer getRiskLevel() {
+        return riskLevel;
+    }
+
+    @Override
+    public long getScoreBasisPoints() {
+        return scoreBasisPoints;
+    }
+
+    @Override
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public BigDecimal getTimeoutScore() {
+        return timeoutScore;
+    }
+
+    @Override
+    public boolean appliesTo(RiskCheckRequest request) {
+        Integer operationType = request.getOperationType();
+        return operationMask == 0
+                || (operationType != null && operationType >= 0 && operationType < Integer.SIZE
+                && (operationMask & (1 << operationType)) != 0);
+    }
+
+    /**
+     * 构造触发结果，分数使用编译时转换好的常量
+     */
+    protected RiskRuleResult triggered(String reason) {
+        RiskRuleResult result = new RiskRuleResult();
+        result.setRuleId(ruleId);
+        result.setRuleName(ruleName);
+        result.setRuleType(ruleType);
+        result.setTriggered(true);
+        result.setRiskScore(riskScore);
+        result.setRiskLevel(riskLevel);
+        result.setReason(reason);
+        return result;
+    }
+
+    private static int parseOperationMask(JSONArray operationTypes) {
+        if (operationTypes == null) {
+            return 0;
+        }
+        int mask = 0;
+        for (int i = 0; i < operationTypes.size(); i++) {
+            int operationType = operationTypes.getIntValue(i);
+            if (operationType >= 0 && operationType < Integer.SIZE) {
+                mask |= 1 << operationType;
+            }
+        }
+        return mask;
+    }
+}
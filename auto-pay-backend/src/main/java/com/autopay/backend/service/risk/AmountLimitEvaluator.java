@@ -0,0 +1,49 @@
+package com.autopay.backend.service.risk;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.autopay.backend.entity.RiskRule;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+import com.autopay.backend.util.MoneyUtil;
+
+import java.math.BigDecimal;
+
+/**
+ * 金额限制规则
+ * 阈值示例：{"maxAmount": 10000, "minAmount": 0.01, "score": 30}，阈值在编译时换算为分，
+ * 与风控检查入口换算好的请求金额(分)直接比较
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+class AmountLimitEvaluator extends AbstractRiskRuleEvaluator {
+
+    private static final int DEFAULT_SCORE = 30;
+    private static final BigDecimal DEFAULT_MAX_AMOUNT = new BigDecimal("10000");
+
+    private final long maxAmount;
+    private final long minAmount;
+
+    AmountLimitEvaluator(RiskRule rule, JSONObject thresholds, JSONObject conditions) {
+        super(rule, thresholds, conditions, DEFAULT_SCORE);
+        BigDecimal max = thresholds.getBigDecimal("maxAmount");
+        BigDecimal min = thresholds.getBigDecimal("minAmount");
+        this.maxAmount = MoneyUtil.toMinorUnits(max != null ? max : DEFAULT_MAX_AMOUNT);
+        this.minAmount = min != null ? MoneyUtil.toMinorUnits(min) : 0L;
+    }
+
+    @Override
+    public RiskRuleResult evaluate(RiskCheckRequest request) {
+        Long amount = request.getAmountMinorUnits();
+        if (amount == null) {
+            return null;
+        }
+        if (amount > maxAmount) {
+            return triggered("单笔交易金额超过限制");
+        }
+        if (amount < minAmount) {
+            return triggered("单笔交易金额低于限制");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.autopay.backend.service.risk;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.autopay.backend.entity.RiskRule;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备限制规则
+ * 阈值示例：{"newDeviceHours": 24, "maxLinkedUsers": 3, "maxAverageScore": 60, "score": 20}，
+ * 分别检测新设备、多用户共用设备和历史风险分数偏高的设备，阈值为0时不检测该项
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+class DeviceLimitEvaluator extends AbstractRiskRuleEvaluator {
+
+    private static final int DEFAULT_SCORE = 20;
+
+    private final DeviceProfileStore deviceProfileStore;
+    private final long newDeviceMillis;
+    private final int maxLinkedUsers;
+    private final double maxAverageScore;
+
+    DeviceLimitEvaluator(RiskRule rule, JSONObject thresholds, JSONObject conditions,
+                         DeviceProfileStore deviceProfileStore) {
+        super(rule, thresholds, conditions, DEFAULT_SCORE);
+        this.deviceProfileStore = deviceProfileStore;
+        this.newDeviceMillis = TimeUnit.HOURS.toMillis(thresholds.getLongValue("newDeviceHours", 24L));
+        this.maxLinkedUsers = thresholds.getIntValue("maxLinkedUsers", 3);
+        this.maxAverageScore = thresholds.getDoubleValue("maxAverageScore");
+    }
+
+    /**
+     * 设备画像未缓存时需查询数据库
+     */
+    @Override
+    public boolean mayBlock() {
+        return true;
+    }
+
+    /**
+     * 设备画像随每次检查更新，结果不可缓存
+     */
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
+    @Override
+    public RiskRuleResult evaluate(RiskCheckRequest request) {
+        DeviceProfile profile = deviceProfileStore.get(request.getDeviceInfo());
+        if (profile == null) {
+            return null;
+        }
+        if (newDeviceMillis > 0
+                && (!profile.isSeen() || System.currentTimeMillis() - profile.getFirstSeen() < newDeviceMillis)) {
+            return triggered("新设备");
+        }
+        if (maxLinkedUsers > 0) {
+            Long userId = request.getUserId();
+            int linked = profile.getLinkedUserCount() + (userId != null && !profile.isLinked(userId) ? 1 : 0);
+            if (linked > maxLinkedUsers) {
+                return triggered("设备关联用户过多");
+            }
+        }
+        if (maxAverageScore > 0 && profile.averageScore() >= maxAverageScore) {
+            return triggered("设备历史风险较高");
+        }
+        return null;
+    }
+}
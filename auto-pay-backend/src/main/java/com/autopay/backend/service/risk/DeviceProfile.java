@@ -0,0 +1,164 @@
+package com.autopay.backend.service.risk;
+
+import cn.hutool.core.util.StrUtil;
+import com.autopay.backend.entity.RiskDevice;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * 设备画像快照
+ * 不可变对象，每次观测生成新快照；关联用户和风险分数历史长度有上限，单个设备占用内存固定
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+final class DeviceProfile {
+
+    /**
+     * 未出现过的设备，用于缓存数据库中不存在的设备
+     */
+    static final DeviceProfile UNSEEN = new DeviceProfile(null, 0, 0, 0, new long[0], new int[0]);
+
+    private final Long id;
+    private final long firstSeen;
+    private final long lastSeen;
+    private final long seenCount;
+    private final long[] linkedUsers;
+    private final int[] scores;
+
+    private DeviceProfile(Long id, long firstSeen, long lastSeen, long seenCount, long[] linkedUsers, int[] scores) {
+        this.id = id;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+        this.seenCount = seenCount;
+        this.linkedUsers = linkedUsers;
+        this.scores = scores;
+    }
+
+    boolean isSeen() {
+        return seenCount > 0;
+    }
+
+    long getFirstSeen() {
+        return firstSeen;
+    }
+
+    int getLinkedUserCount() {
+        return linkedUsers.length;
+    }
+
+    boolean isLinked(long userId) {
+        for (long linked : linkedUsers) {
+            if (linked == userId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 风险分数历史的平均值，无历史时返回-1
+     */
+    double averageScore() {
+        if (scores.length == 0) {
+            return -1;
+        }
+        long sum = 0;
+        for (int score : scores) {
+            sum += score;
+        }
+        return (double) sum / scores.length;
+    }
+
+    /**
+     * 记录一次观测
+     *
+     * @param maxLinkedUsers 关联用户记录上限，达到上限后不再记录新用户
+     * @param maxScores      风险分数历史长度，超出时丢弃最早的分数
+     */
+    DeviceProfile observe(Long userId, int score, long now, int maxLinkedUsers, int maxScores) {
+        long[] users = linkedUsers;
+        if (userId != null && !isLinked(userId) && users.length < maxLinkedUsers) {
+            users = Arrays.copyOf(users, users.length + 1);
+            users[users.length - 1] = userId;
+        }
+        int[] history;
+        if (scores.length < maxScores) {
+            history = Arrays.copyOf(scores, scores.length + 1);
+        } else {
+            history = Arrays.copyOfRange(scores, scores.length - maxScores + 1, scores.length + 1);
+        }
+        history[history.length - 1] = score;
+        return new DeviceProfile(id, isSeen() ? firstSeen : now, Math.max(lastSeen, now), seenCount + 1, users, history);
+    }
+
+    /**
+     * 合并数据库中已记录的关联用户，保留已记录的用户，再补充本快照新增的用户，合计不超过上限
+     *
+     * @param stored         数据库中的画像
+     * @param maxLinkedUsers 关联用户记录上限
+     */
+    DeviceProfile mergeLinkedUsers(DeviceProfile stored, int maxLinkedUsers) {
+        long[] users = Arrays.copyOf(stored.linkedUsers, Math.max(stored.linkedUsers.length, maxLinkedUsers));
+        int count = stored.linkedUsers.length;
+        for (long user : linkedUsers) {
+            if (count >= maxLinkedUsers) {
+                break;
+            }
+            if (!stored.isLinked(user)) {
+                users[count++] = user;
+            }
+        }
+        return new DeviceProfile(id, firstSeen, lastSeen, seenCount, Arrays.copyOf(users, count), scores);
+    }
+
+    DeviceProfile withId(Long newId) {
+        return new DeviceProfile(newId, firstSeen, lastSeen, seenCount, linkedUsers, scores);
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    static DeviceProfile from(RiskDevice device) {
+        long[] users = StrUtil.isBlank(device.getLinkedUserIds()) ? new long[0]
+                : Arrays.stream(device.getLinkedUserIds().split(",")).map(String::trim)
+                .filter(StrUtil::isNotEmpty).mapToLong(Long::parseLong).toArray();
+        int[] history = StrUtil.isBlank(device.getRiskScores()) ? new int[0]
+                : Arrays.stream(device.getRiskScores().split(",")).map(String::trim)
+                .filter(StrUtil::isNotEmpty).mapToInt(Integer::parseInt).toArray();
+        return new DeviceProfile(device.getId(), toMillis(device.getFirstSeenTime()), toMillis(device.getLastSeenTime()),
+                device.getSeenCount() != null ? device.getSeenCount() : 1L, users, history);
+    }
+
+    RiskDevice toEntity(String fingerprint) {
+        StringJoiner users = new StringJoiner(",");
+        for (long user : linkedUsers) {
+            users.add(Long.toString(user));
+        }
+        StringJoiner history = new StringJoiner(",");
+        for (int score : scores) {
+            history.add(Integer.toString(score));
+        }
+        return new RiskDevice()
+                .setId(id)
+                .setDeviceFingerprint(fingerprint)
+                .setFirstSeenTime(toTime(firstSeen))
+                .setLastSeenTime(toTime(lastSeen))
+                .setSeenCount(seenCount)
+                .setLinkedUserIds(users.toString())
+                .setRiskScores(history.toString());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
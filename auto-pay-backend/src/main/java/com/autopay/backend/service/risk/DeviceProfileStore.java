@@ -0,0 +1,200 @@
+package com.autopay.backend.service.risk;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.autopay.backend.entity.RiskDevice;
+import com.autopay.backend.repository.RiskDeviceRepository;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 设备画像库
+ * 按设备指纹缓存首次出现时间、关联用户和最近风险分数，缓存容量有上限并按W-TinyLFU淘汰，
+ * 未命中时从数据库加载，数据库中不存在的设备也会缓存以避免重复查询；
+ * 每次风控检查后在独立的设备画像线程池更新缓存，线程池饱和时丢弃本次观测，不占用风控和订单落库线程；
+ * 更新后的画像按设备指纹合并，定时只写入每个设备的最新画像。缓存定期过期以获取其他节点的更新，
+ * 写入时关联用户与数据库中的记录合并(并集，不超过上限)，以条件更新避免多节点并发写入相互覆盖；
+ * 出现次数和风险分数以最近出现的画像为准
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class DeviceProfileStore {
+
+    private static final int MAX_FINGERPRINT_LENGTH = 64;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final RiskDeviceRepository riskDeviceRepository;
+    private final Executor deviceProfileExecutor;
+    private final LoadingCache<String, DeviceProfile> profiles;
+    /**
+     * 待写入数据库的画像，同一设备只保留最新画像
+     */
+    private final Map<String, DeviceProfile> pendingWrites = new ConcurrentHashMap<>();
+    private final int maxLinkedUsers;
+    private final int scoreHistorySize;
+
+    public DeviceProfileStore(RiskDeviceRepository riskDeviceRepository,
+                              @Qualifier("deviceProfileExecutor") Executor deviceProfileExecutor,
+                              @Value("${autopay.risk.device.max-size:500000}") long maxSize,
+                              @Value("${autopay.risk.device.expire-after-write-ms:300000}") long expireAfterWriteMillis,
+                              @Value("${autopay.risk.device.max-linked-users:32}") int maxLinkedUsers,
+                              @Value("${autopay.risk.device.score-history-size:10}") int scoreHistorySize) {
+        this.riskDeviceRepository = riskDeviceRepository;
+        this.deviceProfileExecutor = deviceProfileExecutor;
+        this.maxLinkedUsers = maxLinkedUsers;
+        this.scoreHistorySize = scoreHistorySize;
+        this.profiles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMillis))
+                .build(this::load);
+    }
+
+    /**
+     * 查询设备画像，缓存未命中时查询数据库
+     *
+     * @return 设备画像，设备信息为空时返回null
+     */
+    DeviceProfile get(String deviceInfo) {
+        String fingerprint = fingerprint(deviceInfo);
+        return fingerprint != null ? profiles.get(fingerprint) : null;
+    }
+
+    /**
+     * 在后台线程记录本次风控检查的设备、用户和风险分数
+     */
+    public void record(RiskCheckRequest request, long scoreBasisPoints) {
+        String fingerprint = fingerprint(request.getDeviceInfo());
+        if (fingerprint == null) {
+            return;
+        }
+        Long userId = request.getUserId();
+        int score = RiskScore.toPoints(scoreBasisPoints);
+        long now = System.currentTimeMillis();
+        try {
+            deviceProfileExecutor.execute(() -> observe(fingerprint, userId, score, now));
+        } catch (Exception e) {
+            log.warn("设备画像更新提交失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 将已更新的设备画像写入数据库，每个设备只写入最新画像
+     */
+    @Scheduled(fixedDelayString = "${autopay.risk.device.flush-interval-ms:1000}")
+    public void flush() {
+        for (String fingerprint : pendingWrites.keySet()) {
+            DeviceProfile profile = pendingWrites.remove(fingerprint);
+            if (profile == null) {
+                continue;
+            }
+            try {
+                if (!persist(fingerprint, profile)) {
+                    pendingWrites.putIfAbsent(fingerprint, profile);
+                    log.warn("设备画像写入冲突，下次重试：{}", fingerprint);
+                }
+            } catch (Exception e) {
+                // 期间已有更新的画像时不覆盖，下次写入更新的画像
+                pendingWrites.putIfAbsent(fingerprint, profile);
+                log.warn("设备画像写入失败：{}，{}", fingerprint, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 停机时写入尚未落库的画像
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 写入设备画像：不存在时插入，已存在时合并关联用户后条件更新，关联用户被并发修改时重新读取合并
+     *
+     * @return 是否写入成功
+     */
+    private boolean persist(String fingerprint, DeviceProfile profile) {
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; attempt++) {
+            RiskDevice stored = riskDeviceRepository.findByFingerprint(fingerprint);
+            if (stored == null) {
+                try {
+                    riskDeviceRepository.insertDevice(profile.toEntity(fingerprint));
+                    return true;
+                } catch (DuplicateKeyException e) {
+                    // 其他节点已插入，重新读取后合并
+                    continue;
+                }
+            }
+            RiskDevice merged = profile.mergeLinkedUsers(DeviceProfile.from(stored), maxLinkedUsers)
+                    .toEntity(fingerprint);
+            if (riskDeviceRepository.mergeUpdate(merged, stored.getLinkedUserIds()) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void observe(String fingerprint, Long userId, int score, long now) {
+        try {
+            DeviceProfile loaded = null;
+            while (true) {
+                // 数据库查询在compute之外执行，不持有缓存的分段锁
+                if (loaded == null && profiles.getIfPresent(fingerprint) == null) {
+                    loaded = load(fingerprint);
+                }
+                DeviceProfile fallback = loaded;
+                DeviceProfile updated = profiles.asMap().compute(fingerprint, (key, current) -> {
+                    DeviceProfile base = current != null ? current : fallback;
+                    if (base == null) {
+                        // 查询缓存后画像已被淘汰，重新加载
+                        return null;
+                    }
+                    DeviceProfile observed = base.observe(userId, score, now, maxLinkedUsers, scoreHistorySize);
+                    if (observed.getId() == null) {
+                        observed = observed.withId(IdWorker.getId());
+                    }
+                    pendingWrites.put(key, observed);
+                    return observed;
+                });
+                if (updated != null) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("设备画像更新失败：{}，{}", fingerprint, e.getMessage());
+        }
+    }
+
+    private DeviceProfile load(String fingerprint) {
+        RiskDevice device = riskDeviceRepository.findByFingerprint(fingerprint);
+        return device != null ? DeviceProfile.from(device) : DeviceProfile.UNSEEN;
+    }
+
+    /**
+     * 设备信息过长时取摘要作为指纹
+     */
+    private static String fingerprint(String deviceInfo) {
+        if (StrUtil.isBlank(deviceInfo)) {
+            return null;
+        }
+        String value = deviceInfo.trim();
+        return value.length() <= MAX_FINGERPRINT_LENGTH ? value : SecureUtil.sha256(value);
+    }
+}
@@ -0,0 +1,52 @@
+package com.autopay.backend.service.risk;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.autopay.backend.entity.RiskRule;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+
+/**
+ * 频率限制规则
+ * 阈值示例：{"maxCount": 3, "windowSeconds": 3600, "dimension": "USER", "score": 20}，
+ * windowSeconds取覆盖它的最小计数窗口(60/3600/86400)，dimension可选USER、IP、DEVICE、MERCHANT
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+class FrequencyLimitEvaluator extends AbstractRiskRuleEvaluator {
+
+    private static final int DEFAULT_SCORE = 20;
+
+    private final VelocityCounterService velocityCounterService;
+    private final VelocityDimension dimension;
+    private final VelocityWindow window;
+    private final long maxCount;
+
+    FrequencyLimitEvaluator(RiskRule rule, JSONObject thresholds, JSONObject conditions,
+                            VelocityCounterService velocityCounterService) {
+        super(rule, thresholds, conditions, DEFAULT_SCORE);
+        this.velocityCounterService = velocityCounterService;
+        this.dimension = VelocityDimension.valueOf(thresholds.getString("dimension") != null
+                ? thresholds.getString("dimension").trim().toUpperCase() : VelocityDimension.USER.name());
+        this.window = VelocityWindow.fromSeconds(thresholds.getLongValue("windowSeconds", 3600L));
+        this.maxCount = thresholds.getLongValue("maxCount", 3L);
+    }
+
+    /**
+     * 频率计数随每次操作变化，结果不可缓存
+     */
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
+    @Override
+    public RiskRuleResult evaluate(RiskCheckRequest request) {
+        // 计数已包含本次操作
+        long recentCount = velocityCounterService.count(dimension, window, request);
+        if (recentCount > maxCount) {
+            return triggered("操作频率过高");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+package com.autopay.backend.service.risk;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射的IP地区库
+ * 文件格式(大端)：
+ * <pre>
+ * 头部      magic "APGEOIP1"(8) | 版本号 long | 地区数 int | IPv4段数 int | IPv6段数 int
+ * 地区表    每个地区：长度 unsigned short + UTF-8编码的大写地区代码(如 CN、CN-GD)
+ * IPv4段    起始地址 int[n] | 结束地址 int[n] | 地区序号 int[n]
+ * IPv6段    起始地址 (高64位 long, 低64位 long)[n] | 结束地址 (高, 低)[n] | 地区序号 int[n]
+ * </pre>
+ * 地址段按起始地址升序且互不重叠。地区表加载到堆内，地址段直接在映射内存上二分查找，查询不创建对象
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+final class GeoIpDatabase {
+
+    private static final byte[] MAGIC = "APGEOIP1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 28;
+
+    private final MappedByteBuffer buffer;
+    private final long version;
+    private final String[] regions;
+    private final String[] countries;
+    private final int ipv4Count;
+    private final int ipv4Starts;
+    private final int ipv4Ends;
+    private final int ipv4Regions;
+    private final int ipv6Count;
+    private final int ipv6Starts;
+    private final int ipv6Ends;
+    private final int ipv6Regions;
+
+    private GeoIpDatabase(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE) {
+            throw new IllegalArgumentException("IP地区库文件不完整");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                throw new IllegalArgumentException("IP地区库文件格式错误");
+            }
+        }
+        this.version = buffer.getLong(8);
+        int regionCount = buffer.getInt(16);
+        this.ipv4Count = buffer.getInt(20);
+        this.ipv6Count = buffer.getInt(24);
+        if (regionCount < 0 || ipv4Count < 0 || ipv6Count < 0) {
+            throw new IllegalArgumentException("IP地区库文件头错误");
+        }
+
+        this.regions = new String[regionCount];
+        this.countries = new String[regionCount];
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < regionCount; i++) {
+            checkBounds(offset + 2L);
+            int length = buffer.getShort(offset) & 0xFFFF;
+            checkBounds(offset + 2L + length);
+            byte[] bytes = new byte[length];
+            buffer.get(offset + 2, bytes);
+            regions[i] = new String(bytes, StandardCharsets.UTF_8).intern();
+            int dash = regions[i].indexOf('-');
+            countries[i] = dash < 0 ? regions[i] : regions[i].substring(0, dash).intern();
+            offset += 2 + length;
+        }
+
+        this.ipv4Starts = offset;
+        this.ipv4Ends = ipv4Starts + ipv4Count * 4;
+        this.ipv4Regions = ipv4Ends + ipv4Count * 4;
+        this.ipv6Starts = ipv4Regions + ipv4Count * 4;
+        this.ipv6Ends = ipv6Starts + ipv6Count * 16;
+        this.ipv6Regions = ipv6Ends + ipv6Count * 16;
+        checkBounds((long) ipv6Regions + ipv6Count * 4L);
+        validate();
+    }
+
+    /**
+     * 映射IP地区库文件，文件须整体替换(写入临时文件后重命名)，不能原地修改
+     */
+    static GeoIpDatabase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("IP地区库文件过大");
+            }
+            return new GeoIpDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * 查询IPv4地址所属地区序号
+     *
+     * @param ip 32位无符号地址
+     * @return 地区序号，未收录时返回-1
+     */
+    int lookupIpv4(long ip) {
+        int low = 0;
+        int high = ipv4Count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if ((buffer.getInt(ipv4Starts + mid * 4) & 0xFFFFFFFFL) <= ip) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0 || ip > (buffer.getInt(ipv4Ends + found * 4) & 0xFFFFFFFFL)) {
+            return -1;
+        }
+        return buffer.getInt(ipv4Regions + found * 4);
+    }
+
+    /**
+     * 查询IPv6地址所属地区序号
+     *
+     * @return 地区序号，未收录时返回-1
+     */
+    int lookupIpv6(long high64, long low64) {
+        int low = 0;
+        int high = ipv6Count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(ipv6Starts + mid * 16, high64, low64) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0 || compare(ipv6Ends + found * 16, high64, low64) < 0) {
+            return -1;
+        }
+        return buffer.getInt(ipv6Regions + found * 4);
+    }
+
+    String region(int index) {
+        return index >= 0 && index < regions.length ? regions[index] : null;
+    }
+
+    String country(int index) {
+        return index >= 0 && index < countries.length ? countries[index] : null;
+    }
+
+    /**
+     * 比较映射内存中的地址与给定地址
+     */
+    private int compare(int offset, long high64, long low64) {
+        int result = Long.compareUnsigned(buffer.getLong(offset), high64);
+        return result != 0 ? result : Long.compareUnsigned(buffer.getLong(offset + 8), low64);
+    }
+
+    private void validate() {
+        long previousEnd = -1;
+        for (int i = 0; i < ipv4Count; i++) {
+            long start = buffer.getInt(ipv4Starts + i * 4) & 0xFFFFFFFFL;
+            long end = buffer.getInt(ipv4Ends + i * 4) & 0xFFFFFFFFL;
+            if (start > end || start <= previousEnd) {
+                throw new IllegalArgumentException("IPv4地址段未排序或重叠：" + i);
+            }
+            checkRegion(buffer.getInt(ipv4Regions + i * 4));
+            previousEnd = end;
+        }
+        for (int i = 0; i < ipv6Count; i++) {
+            int start = ipv6Starts + i * 16;
+            if (compare(start, buffer.getLong(ipv6Ends + i * 16), buffer.getLong(ipv6Ends + i * 16 + 8)) > 0
+                    || (i > 0 && compare(start, buffer.getLong(ipv6Ends + (i - 1) * 16),
+                    buffer.getLong(ipv6Ends + (i - 1) * 16 + 8)) <= 0)) {
+                throw new IllegalArgumentException("IPv6地址段未排序或重叠：" + i);
+            }
+            checkRegion(buffer.getInt(ipv6Regions + i * 4));
+        }
+    }
+
+    private void checkRegion(int region) {
+        if (region < 0 || region >= regions.length) {
+            throw new IllegalArgumentException("IP地区库地区序号越界：" + region);
+        }
+    }
+
+    private void checkBounds(long end) {
+        if (end > buffer.capacity()) {
+            throw new IllegalArgumentException("IP地区库文件不完整");
+        }
+    }
+}
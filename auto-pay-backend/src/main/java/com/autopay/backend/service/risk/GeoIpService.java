@@ -0,0 +1,137 @@
+package com.autopay.backend.service.risk;
+
+import cn.hutool.core.util.StrUtil;
+import com.autopay.backend.util.IpAddressUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * IP地区查询服务
+ * 查询本地内存映射的IP地区库，不调用外部服务；定期检测库文件变化，新文件映射并校验通过后原子替换，
+ * 替换期间查询继续使用旧库，不会暂停。库文件须整体替换(写入临时文件后重命名)
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class GeoIpService {
+
+    private final Path file;
+
+    private volatile GeoIpDatabase database;
+    private Object fileKey;
+    private long lastModified;
+    private long size;
+    private boolean missingLogged;
+
+    public GeoIpService(@Value("${autopay.risk.geo-ip.file:data/geoip.dat}") String file) {
+        this.file = Paths.get(file);
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * 检测库文件变化并重新加载，加载失败时继续使用旧库
+     */
+    @Scheduled(fixedDelayString = "${autopay.risk.geo-ip.check-interval-ms:60000}",
+            initialDelayString = "${autopay.risk.geo-ip.check-interval-ms:60000}")
+    public synchronized void reload() {
+        try {
+            if (!Files.isRegularFile(file)) {
+                if (database == null && !missingLogged) {
+                    missingLogged = true;
+                    log.warn("IP地区库文件不存在，地域限制规则不生效：{}", file.toAbsolutePath());
+                }
+                return;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Object key = attributes.fileKey() != null ? attributes.fileKey() : file;
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (database != null && key.equals(fileKey) && modified == lastModified && attributes.size() == size) {
+                return;
+            }
+            GeoIpDatabase latest = GeoIpDatabase.open(file);
+            database = latest;
+            fileKey = key;
+            lastModified = modified;
+            size = attributes.size();
+            log.info("IP地区库已加载，版本：{}", latest.getVersion());
+        } catch (Exception e) {
+            log.error("IP地区库加载失败，继续使用旧库：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 查询IP所属地区代码(如 CN-GD)
+     *
+     * @return 地区代码，IP非法、未收录或库未加载时返回null
+     */
+    public String lookupRegion(String ip) {
+        GeoIpDatabase current = database;
+        return current != null ? current.region(lookup(current, ip)) : null;
+    }
+
+    /**
+     * 查询IP所属国家/地区代码(地区代码中"-"之前的部分)
+     */
+    public String lookupCountry(String ip) {
+        GeoIpDatabase current = database;
+        return current != null ? current.country(lookup(current, ip)) : null;
+    }
+
+    /**
+     * 当前库版本，库替换后查询结果可能变化，用于区分缓存的地域判定结果
+     *
+     * @return 库版本，库未加载时返回0
+     */
+    public long getVersion() {
+        GeoIpDatabase current = database;
+        return current != null ? current.getVersion() : 0L;
+    }
+
+    /**
+     * 库是否已加载
+     */
+    public boolean isAvailable() {
+        return database != null;
+    }
+
+    private static int lookup(GeoIpDatabase current, String ip) {
+        if (StrUtil.isBlank(ip)) {
+            return -1;
+        }
+        // IPv4按字符解析，不创建对象
+        long ipv4 = IpAddressUtil.parseIpv4(ip);
+        if (ipv4 >= 0) {
+            return current.lookupIpv4(ipv4);
+        }
+        byte[] address = IpAddressUtil.parse(ip);
+        if (address == null) {
+            return -1;
+        }
+        if (address.length == 4) {
+            return current.lookupIpv4(IpAddressUtil.ipv4ToLong(address));
+        }
+        return current.lookupIpv6(toLong(address, 0), toLong(address, 8));
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFFL);
+        }
+        return value;
+    }
+}
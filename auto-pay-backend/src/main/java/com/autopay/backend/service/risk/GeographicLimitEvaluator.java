@@ -0,0 +1,75 @@
+package com.autopay.backend.service.risk;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.autopay.backend.entity.RiskRule;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+
+/**
+ * 地域限制规则
+ * 条件示例：{"blockedRegions": ["XX", "CN-XX"], "allowedRegions": ["CN"], "blockUnknown": false}，
+ * 地区代码按IP地区库的代码书写，国家代码同时匹配其下属地区；配置allowedRegions时，不在其中的地区均触发
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+class GeographicLimitEvaluator extends AbstractRiskRuleEvaluator {
+
+    private static final int DEFAULT_SCORE = 30;
+
+    private final GeoIpService geoIpService;
+    private final String[] blockedRegions;
+    private final String[] allowedRegions;
+    private final boolean blockUnknown;
+
+    GeographicLimitEvaluator(RiskRule rule, JSONObject thresholds, JSONObject conditions, GeoIpService geoIpService) {
+        super(rule, thresholds, conditions, DEFAULT_SCORE);
+        this.geoIpService = geoIpService;
+        this.blockedRegions = toRegions(conditions.getJSONArray("blockedRegions"));
+        this.allowedRegions = toRegions(conditions.getJSONArray("allowedRegions"));
+        this.blockUnknown = conditions.getBooleanValue("blockUnknown", false);
+    }
+
+    @Override
+    public RiskRuleResult evaluate(RiskCheckRequest request) {
+        if (!geoIpService.isAvailable()) {
+            return null;
+        }
+        String region = geoIpService.lookupRegion(request.getIpAddress());
+        if (region == null) {
+            return blockUnknown ? triggered("无法识别交易地区") : null;
+        }
+        if (matches(blockedRegions, region)) {
+            return triggered("交易地区受限：" + region);
+        }
+        if (allowedRegions.length > 0 && !matches(allowedRegions, region)) {
+            return triggered("交易地区不在允许范围：" + region);
+        }
+        return null;
+    }
+
+    /**
+     * 地区代码相同，或配置的代码是该地区的国家代码
+     */
+    private static boolean matches(String[] codes, String region) {
+        for (String code : codes) {
+            if (region.startsWith(code)
+                    && (region.length() == code.length() || region.charAt(code.length()) == '-')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] toRegions(JSONArray values) {
+        if (values == null) {
+            return new String[0];
+        }
+        String[] regions = new String[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            regions[i] = values.getString(i).trim().toUpperCase();
+        }
+        return regions;
+    }
+}
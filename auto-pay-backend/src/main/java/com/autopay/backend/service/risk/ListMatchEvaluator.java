@@ -0,0 +1,89 @@
+package com.autopay.backend.service.risk;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.autopay.backend.entity.RiskRule;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 名单规则(黑名单、白名单)
+ * 条件示例：{"userIds": [10001], "ips": ["1.2.3.4"], "devices": ["fp-xxx"], "listStore": true}，
+ * 规则内联的少量名单编译时转换为哈希集合；listStore(默认true)表示同时匹配名单库中对应类型的名单
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+class ListMatchEvaluator extends AbstractRiskRuleEvaluator {
+
+    private final boolean whitelist;
+    private final RiskListStore riskListStore;
+    private final Set<Long> userIds;
+    private final Set<String> ips;
+    private final Set<String> devices;
+
+    ListMatchEvaluator(RiskRule rule, JSONObject thresholds, JSONObject conditions, boolean whitelist,
+                       RiskListStore riskListStore) {
+        super(rule, thresholds, conditions, whitelist ? 0 : 100);
+        this.whitelist = whitelist;
+        this.riskListStore = conditions.getBooleanValue("listStore", true) ? riskListStore : null;
+        this.userIds = toLongSet(conditions.getJSONArray("userIds"));
+        this.ips = toStringSet(conditions.getJSONArray("ips"));
+        this.devices = toStringSet(conditions.getJSONArray("devices"));
+    }
+
+    /**
+     * 是否为白名单规则
+     */
+    boolean isWhitelist() {
+        return whitelist;
+    }
+
+    @Override
+    public RiskRuleResult evaluate(RiskCheckRequest request) {
+        String matched = match(request);
+        if (matched == null) {
+            return null;
+        }
+        return triggered((whitelist ? "命中白名单：" : "命中黑名单：") + matched);
+    }
+
+    private String match(RiskCheckRequest request) {
+        if (request.getUserId() != null && userIds.contains(request.getUserId())) {
+            return "用户";
+        }
+        if (request.getIpAddress() != null && ips.contains(request.getIpAddress())) {
+            return "IP";
+        }
+        if (request.getDeviceInfo() != null && devices.contains(request.getDeviceInfo())) {
+            return "设备";
+        }
+        return riskListStore != null ? riskListStore.match(whitelist, request) : null;
+    }
+
+    private static Set<Long> toLongSet(JSONArray values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Long> set = new HashSet<>(values.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            set.add(values.getLong(i));
+        }
+        return set;
+    }
+
+    private static Set<String> toStringSet(JSONArray values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new HashSet<>(values.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            set.add(values.getString(i));
+        }
+        return set;
+    }
+}
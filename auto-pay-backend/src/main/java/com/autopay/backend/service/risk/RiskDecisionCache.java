@@ -0,0 +1,168 @@
+package com.autopay.backend.service.risk;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 风控决策缓存
+ * 客户端重试或重复提交时，相同请求在短时间内复用可缓存规则的评估结果；
+ * 键为规范化请求内容的128位哈希加规则集版本、名单版本和IP地区库版本，规则、名单或地区库变化后旧结果不再命中。
+ * 只缓存结果仅取决于请求内容的规则，频率、设备画像等规则每次都重新评估
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class RiskDecisionCache {
+
+    private static final char SEPARATOR = '\u0001';
+
+    private final RiskListStore riskListStore;
+    private final GeoIpService geoIpService;
+    private final boolean enabled;
+    private final Cache<DecisionKey, RiskRuleResult[]> cache;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private volatile long ruleSetVersion;
+
+    public RiskDecisionCache(RiskListStore riskListStore,
+                             GeoIpService geoIpService,
+                             @Value("${autopay.risk.decision-cache.enabled:true}") boolean enabled,
+                             @Value("${autopay.risk.decision-cache.max-size:100000}") long maxSize,
+                             @Value("${autopay.risk.decision-cache.ttl-ms:5000}") long ttlMillis) {
+        this.riskListStore = riskListStore;
+        this.geoIpService = geoIpService;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * 计算缓存键，规则集升级时清空缓存
+     *
+     * @return 缓存键，未启用或规则集中没有可缓存的规则时返回null
+     */
+    DecisionKey key(RiskRuleSet ruleSet, RiskCheckRequest request) {
+        if (!enabled || !ruleSet.hasCacheableRules()) {
+            return null;
+        }
+        if (ruleSet.getVersion() > ruleSetVersion) {
+            ruleSetVersion = ruleSet.getVersion();
+            cache.invalidateAll();
+            log.info("风控规则集版本变化，清空决策缓存：{}", ruleSetVersion);
+        }
+        long[] hash = MurmurHash.hash128(normalize(request).getBytes(StandardCharsets.UTF_8));
+        return new DecisionKey(ruleSet.getVersion(), riskListStore.getVersion(), geoIpService.getVersion(),
+                hash[0], hash[1]);
+    }
+
+    /**
+     * 查询缓存的规则结果
+     *
+     * @return 按规则集优先级排列的结果，仅可缓存规则的位置有效；未命中返回null
+     */
+    RiskRuleResult[] get(DecisionKey key) {
+        RiskRuleResult[] results = cache.getIfPresent(key);
+        if (results != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return results;
+    }
+
+    /**
+     * 缓存可缓存规则的结果
+     */
+    void put(DecisionKey key, RiskRuleResult[] results) {
+        cache.put(key, results);
+    }
+
+    /**
+     * 获取缓存命中次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 获取缓存未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 规范化规则会读取的请求字段，订单号不参与
+     */
+    private static String normalize(RiskCheckRequest request) {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append(request.getUserId()).append(SEPARATOR)
+                .append(trim(request.getUsername())).append(SEPARATOR)
+                .append(trim(request.getMerchantNo())).append(SEPARATOR)
+                .append(request.getOperationType()).append(SEPARATOR)
+                .append(request.getAmountMinorUnits()).append(SEPARATOR)
+                .append(trim(request.getCardBin())).append(SEPARATOR)
+                .append(trim(request.getDeviceInfo())).append(SEPARATOR)
+                .append(trim(request.getIpAddress())).append(SEPARATOR)
+                .append(trim(request.getLocation()));
+        return builder.toString();
+    }
+
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+
+    /**
+     * 决策缓存键
+     */
+    static final class DecisionKey {
+
+        private final long ruleSetVersion;
+        private final long listVersion;
+        private final long geoIpVersion;
+        private final long hashHigh;
+        private final long hashLow;
+
+        DecisionKey(long ruleSetVersion, long listVersion, long geoIpVersion, long hashHigh, long hashLow) {
+            this.ruleSetVersion = ruleSetVersion;
+            this.listVersion = listVersion;
+            this.geoIpVersion = geoIpVersion;
+            this.hashHigh = hashHigh;
+            this.hashLow = hashLow;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) o;
+            return ruleSetVersion == other.ruleSetVersion && listVersion == other.listVersion
+                    && geoIpVersion == other.geoIpVersion && hashHigh == other.hashHigh && hashLow == other.hashLow;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hashHigh ^ hashLow * 31 ^ ruleSetVersion * 961 ^ listVersion ^ geoIpVersion * 29791);
+        }
+    }
+}
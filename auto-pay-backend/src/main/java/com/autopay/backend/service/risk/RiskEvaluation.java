@@ -0,0 +1,36 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.service.RiskRuleResult;
+
+import java.util.List;
+
+/**
+ * 风控规则执行结果汇总
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public final class RiskEvaluation {
+
+    private final List<RiskRuleResult> triggeredRules;
+    private final long scoreBasisPoints;
+
+    RiskEvaluation(List<RiskRuleResult> triggeredRules, long scoreBasisPoints) {
+        this.triggeredRules = triggeredRules;
+        this.scoreBasisPoints = scoreBasisPoints;
+    }
+
+    /**
+     * 触发的规则结果，按优先级排序
+     */
+    public List<RiskRuleResult> getTriggeredRules() {
+        return triggeredRules;
+    }
+
+    /**
+     * 风险总分(基点)
+     */
+    public long getScoreBasisPoints() {
+        return scoreBasisPoints;
+    }
+}
@@ -0,0 +1,112 @@
+package com.autopay.backend.service.risk;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.autopay.backend.util.IpAddressUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 风控名单维度
+ * 除IP段外，名单值编码为64位键存入long集合：用户ID和IPv4、卡BIN按数值精确编码，
+ * IPv6和设备指纹取64位哈希
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+enum RiskListDimension {
+
+    USER(1, "用户"),
+    IP(2, "IP"),
+    CIDR(3, "IP段"),
+    DEVICE(4, "设备"),
+    CARD_BIN(5, "卡BIN");
+
+    /**
+     * 非法名单值
+     */
+    static final long INVALID_KEY = Long.MIN_VALUE;
+
+    static final int MIN_BIN_LENGTH = 6;
+    static final int MAX_BIN_LENGTH = 8;
+
+    private static final RiskListDimension[] BY_CODE = {null, USER, IP, CIDR, DEVICE, CARD_BIN};
+
+    private final int code;
+    private final String label;
+
+    RiskListDimension(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+    static RiskListDimension fromCode(Integer code) {
+        return code != null && code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * 名单值编码为64位键，IP段不适用
+     */
+    long encode(String value) {
+        if (value == null) {
+            return INVALID_KEY;
+        }
+        String trimmed = value.trim();
+        switch (this) {
+            case USER:
+                try {
+                    return Long.parseLong(trimmed);
+                } catch (NumberFormatException e) {
+                    return INVALID_KEY;
+                }
+            case IP:
+                byte[] address = IpAddressUtil.parse(trimmed);
+                return address != null ? ipKey(address) : INVALID_KEY;
+            case DEVICE:
+                return trimmed.isEmpty() ? INVALID_KEY : notInvalid(MurmurHash.hash64(trimmed.getBytes(StandardCharsets.UTF_8)));
+            case CARD_BIN:
+                return binKey(trimmed, trimmed.length());
+            default:
+                return INVALID_KEY;
+        }
+    }
+
+    /**
+     * IPv4取32位数值，IPv6取最高位置1的哈希，两者不会冲突
+     */
+    static long ipKey(byte[] address) {
+        if (address.length == 4) {
+            return IpAddressUtil.ipv4ToLong(address);
+        }
+        return notInvalid(MurmurHash.hash64(address) | Long.MIN_VALUE);
+    }
+
+    /**
+     * 卡BIN前length位编码，长度计入键内以区分不同长度的BIN
+     */
+    static long binKey(String cardBin, int length) {
+        if (length < MIN_BIN_LENGTH || length > MAX_BIN_LENGTH || cardBin.length() < length) {
+            return INVALID_KEY;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = cardBin.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID_KEY;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return ((long) length << 32) | value;
+    }
+
+    private static long notInvalid(long key) {
+        return key == INVALID_KEY ? INVALID_KEY + 1 : key;
+    }
+}
@@ -0,0 +1,368 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.entity.RiskListEntry;
+import com.autopay.backend.repository.RiskListEntryRepository;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.util.BloomFilter;
+import com.autopay.backend.util.CidrTrie;
+import com.autopay.backend.util.IpAddressUtil;
+import com.autopay.backend.util.LongHashSet;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 风控名单库
+ * 黑白名单从数据库加载到内存索引：用户、IP、设备、卡BIN编码为64位键，存入布隆过滤器和long开放寻址集合，
+ * 布隆过滤器快速排除未命中的请求，命中时再查精确集合；IP段存入二叉前缀树。
+ * 启动及定期全量重建索引，期间按更新时间增量同步变更，增量存入小的新增/删除集合并以写时复制方式发布，
+ * 增量过大时提前全量重建。条目物理删除或修改名单值后，旧值在下次全量重建前仍然生效
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RiskListStore {
+
+    private static final int BLACKLIST = 1;
+    private static final int WHITELIST = 2;
+    private static final RiskListDimension[] DIMENSIONS = RiskListDimension.values();
+
+    private final RiskListEntryRepository riskListEntryRepository;
+
+    @Value("${autopay.risk.list.page-size:5000}")
+    private int pageSize;
+
+    @Value("${autopay.risk.list.bloom-fpp:0.01}")
+    private double bloomFpp;
+
+    @Value("${autopay.risk.list.max-delta:100000}")
+    private int maxDelta;
+
+    @Value("${autopay.risk.list.refresh-overlap-ms:5000}")
+    private long refreshOverlapMillis;
+
+    @Value("${autopay.risk.list.full-reload-interval-ms:21600000}")
+    private long fullReloadIntervalMillis;
+
+    private volatile ListIndex blacklist = ListIndex.EMPTY;
+    private volatile ListIndex whitelist = ListIndex.EMPTY;
+    private volatile long version;
+
+    private LocalDateTime cursor;
+    private long lastFullReload;
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 增量同步名单变更，到达全量重建周期或尚未加载成功时全量重建
+     */
+    @Scheduled(fixedDelayString = "${autopay.risk.list.refresh-interval-ms:10000}",
+            initialDelayString = "${autopay.risk.list.refresh-interval-ms:10000}")
+    public synchronized void refresh() {
+        try {
+            if (cursor == null || System.currentTimeMillis() - lastFullReload >= fullReloadIntervalMillis) {
+                fullReload();
+            } else {
+                incrementalRefresh();
+            }
+        } catch (Exception e) {
+            log.error("风控名单同步失败，继续使用旧名单：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 匹配名单
+     *
+     * @return 命中的维度名称，未命中返回null
+     */
+    public String match(boolean whitelistType, RiskCheckRequest request) {
+        return (whitelistType ? whitelist : blacklist).match(request);
+    }
+
+    /**
+     * 名单版本，每次全量或增量更新后递增
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private void fullReload() {
+        long start = System.currentTimeMillis();
+        LocalDateTime loadStart = LocalDateTime.now();
+        IndexBuilder black = new IndexBuilder();
+        IndexBuilder white = new IndexBuilder();
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            List<RiskListEntry> page = riskListEntryRepository.findEnabledAfterId(afterId, pageSize);
+            for (RiskListEntry entry : page) {
+                IndexBuilder builder = builderOf(entry, black, white);
+                if (builder != null) {
+                    builder.add(entry);
+                }
+            }
+            total += page.size();
+            if (page.size() < pageSize) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        blacklist = black.build(bloomFpp);
+        whitelist = white.build(bloomFpp);
+        version++;
+        // 加载期间的变更由下次增量同步补齐
+        cursor = loadStart;
+        lastFullReload = start;
+        log.info("风控名单全量加载完成：{} 条，耗时 {} ms", total, System.currentTimeMillis() - start);
+    }
+
+    private void incrementalRefresh() {
+        ListIndex currentBlack = blacklist;
+        ListIndex currentWhite = whitelist;
+        IndexBuilder black = currentBlack.toDeltaBuilder();
+        IndexBuilder white = currentWhite.toDeltaBuilder();
+        // 回看一段时间，覆盖提交晚于更新时间的事务，重复应用同一条目不影响结果
+        LocalDateTime since = cursor.minus(Duration.ofMillis(refreshOverlapMillis));
+        LocalDateTime latest = cursor;
+        long afterId = 0;
+        int changed = 0;
+        while (true) {
+            List<RiskListEntry> page = riskListEntryRepository.findUpdatedSince(since, afterId, pageSize);
+            for (RiskListEntry entry : page) {
+                IndexBuilder builder = builderOf(entry, black, white);
+                if (builder != null) {
+                    builder.apply(entry);
+                }
+            }
+            changed += page.size();
+            if (page.isEmpty()) {
+                break;
+            }
+            RiskListEntry last = page.get(page.size() - 1);
+            since = last.getUpdatedAt();
+            afterId = last.getId();
+            if (since.isAfter(latest)) {
+                latest = since;
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        if (changed == 0) {
+            return;
+        }
+        if (black.deltaSize() + white.deltaSize() > maxDelta) {
+            log.info("风控名单增量超过上限，全量重建");
+            fullReload();
+            return;
+        }
+        blacklist = black.buildDelta(currentBlack);
+        whitelist = white.buildDelta(currentWhite);
+        version++;
+        cursor = latest;
+        log.debug("风控名单增量同步：{} 条", changed);
+    }
+
+    private static IndexBuilder builderOf(RiskListEntry entry, IndexBuilder black, IndexBuilder white) {
+        if (entry.getListType() == null || entry.getListValue() == null) {
+            return null;
+        }
+        if (entry.getListType() == BLACKLIST) {
+            return black;
+        }
+        return entry.getListType() == WHITELIST ? white : null;
+    }
+
+    /**
+     * 单类名单的只读索引：基础集合由全量加载构建，增量变更记录在新增/删除集合中
+     */
+    private static final class ListIndex {
+
+        static final ListIndex EMPTY = new IndexBuilder().build(0.01);
+
+        final BloomFilter[] blooms;
+        final LongHashSet[] bases;
+        final LongHashSet[] added;
+        final LongHashSet[] removed;
+        final Set<String> cidrValues;
+        final CidrTrie cidrs;
+        final boolean empty;
+
+        ListIndex(BloomFilter[] blooms, LongHashSet[] bases, LongHashSet[] added, LongHashSet[] removed,
+                  Set<String> cidrValues, CidrTrie cidrs) {
+            this.blooms = blooms;
+            this.bases = bases;
+            this.added = added;
+            this.removed = removed;
+            this.cidrValues = cidrValues;
+            this.cidrs = cidrs;
+            boolean hasKeys = cidrs.size() > 0;
+            for (RiskListDimension dimension : DIMENSIONS) {
+                int i = dimension.ordinal();
+                hasKeys |= bases[i] != null && !bases[i].isEmpty() || added[i] != null && !added[i].isEmpty();
+            }
+            this.empty = !hasKeys;
+        }
+
+        String match(RiskCheckRequest request) {
+            if (empty) {
+                return null;
+            }
+            if (request.getUserId() != null && contains(RiskListDimension.USER, request.getUserId())) {
+                return RiskListDimension.USER.getLabel();
+            }
+            byte[] address = IpAddressUtil.parse(request.getIpAddress());
+            if (address != null) {
+                if (contains(RiskListDimension.IP, RiskListDimension.ipKey(address))) {
+                    return RiskListDimension.IP.getLabel();
+                }
+                if (cidrs.contains(address)) {
+                    return RiskListDimension.CIDR.getLabel();
+                }
+            }
+            if (request.getDeviceInfo() != null
+                    && contains(RiskListDimension.DEVICE, RiskListDimension.DEVICE.encode(request.getDeviceInfo()))) {
+                return RiskListDimension.DEVICE.getLabel();
+            }
+            String cardBin = request.getCardBin();
+            if (cardBin != null) {
+                for (int length = RiskListDimension.MAX_BIN_LENGTH; length >= RiskListDimension.MIN_BIN_LENGTH; length--) {
+                    if (contains(RiskListDimension.CARD_BIN, RiskListDimension.binKey(cardBin, length))) {
+                        return RiskListDimension.CARD_BIN.getLabel();
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean contains(RiskListDimension dimension, long key) {
+            if (key == RiskListDimension.INVALID_KEY) {
+                return false;
+            }
+            int i = dimension.ordinal();
+            if (added[i].contains(key)) {
+                return true;
+            }
+            if (removed[i].contains(key)) {
+                return false;
+            }
+            return blooms[i] != null && blooms[i].mightContain(key) && bases[i].contains(key);
+        }
+
+        IndexBuilder toDeltaBuilder() {
+            IndexBuilder builder = new IndexBuilder();
+            for (int i = 0; i < DIMENSIONS.length; i++) {
+                builder.keys[i] = added[i].copy();
+                builder.removed[i] = removed[i].copy();
+            }
+            builder.cidrValues.addAll(cidrValues);
+            return builder;
+        }
+    }
+
+    /**
+     * 名单索引构建器，全量加载时keys为基础集合，增量同步时keys为新增集合
+     */
+    private static final class IndexBuilder {
+
+        final LongHashSet[] keys = new LongHashSet[DIMENSIONS.length];
+        final LongHashSet[] removed = new LongHashSet[DIMENSIONS.length];
+        final Set<String> cidrValues = new HashSet<>();
+        boolean cidrChanged;
+
+        IndexBuilder() {
+            for (int i = 0; i < DIMENSIONS.length; i++) {
+                keys[i] = new LongHashSet();
+                removed[i] = new LongHashSet();
+            }
+        }
+
+        void add(RiskListEntry entry) {
+            RiskListDimension dimension = RiskListDimension.fromCode(entry.getDimensionType());
+            if (dimension == RiskListDimension.CIDR) {
+                cidrValues.add(entry.getListValue().trim());
+            } else if (dimension != null) {
+                long key = dimension.encode(entry.getListValue());
+                if (key != RiskListDimension.INVALID_KEY) {
+                    keys[dimension.ordinal()].add(key);
+                }
+            }
+        }
+
+        void apply(RiskListEntry entry) {
+            RiskListDimension dimension = RiskListDimension.fromCode(entry.getDimensionType());
+            boolean enabled = Boolean.TRUE.equals(entry.getEnabled());
+            if (dimension == RiskListDimension.CIDR) {
+                String value = entry.getListValue().trim();
+                cidrChanged |= enabled ? cidrValues.add(value) : cidrValues.remove(value);
+            } else if (dimension != null) {
+                long key = dimension.encode(entry.getListValue());
+                if (key == RiskListDimension.INVALID_KEY) {
+                    return;
+                }
+                int i = dimension.ordinal();
+                if (enabled) {
+                    removed[i].remove(key);
+                    keys[i].add(key);
+                } else {
+                    keys[i].remove(key);
+                    removed[i].add(key);
+                }
+            }
+        }
+
+        int deltaSize() {
+            int size = 0;
+            for (int i = 0; i < DIMENSIONS.length; i++) {
+                size += keys[i].size() + removed[i].size();
+            }
+            return size;
+        }
+
+        ListIndex build(double bloomFpp) {
+            BloomFilter[] blooms = new BloomFilter[DIMENSIONS.length];
+            LongHashSet[] added = new LongHashSet[DIMENSIONS.length];
+            LongHashSet[] removedKeys = new LongHashSet[DIMENSIONS.length];
+            for (int i = 0; i < DIMENSIONS.length; i++) {
+                if (!keys[i].isEmpty()) {
+                    BloomFilter bloom = new BloomFilter(keys[i].size(), bloomFpp);
+                    keys[i].forEach(bloom::add);
+                    blooms[i] = bloom;
+                }
+                added[i] = new LongHashSet();
+                removedKeys[i] = new LongHashSet();
+            }
+            return new ListIndex(blooms, keys, added, removedKeys, cidrValues, buildTrie(cidrValues));
+        }
+
+        ListIndex buildDelta(ListIndex base) {
+            return new ListIndex(base.blooms, base.bases, keys, removed, cidrValues,
+                    cidrChanged ? buildTrie(cidrValues) : base.cidrs);
+        }
+
+        private static CidrTrie buildTrie(Set<String> values) {
+            CidrTrie trie = new CidrTrie();
+            for (String value : values) {
+                if (!trie.add(value)) {
+                    log.warn("忽略非法的风控名单IP段：{}", value);
+                }
+            }
+            return trie;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.entity.RiskMonitoring;
+import com.autopay.backend.repository.RiskMonitoringRepository;
+import com.autopay.backend.util.MpscRingBuffer;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 风控监控记录异步写入器
+ * 风控检查把触发记录放入有界无锁环形队列后立即返回，后台单线程按批次多行插入；
+ * 队列满时短暂等待写入线程腾出空间(背压)，超时后丢弃记录，丢弃和背压次数通过计数器暴露
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RiskMonitoringWriter {
+
+    private final RiskMonitoringRepository riskMonitoringRepository;
+
+    @Value("${autopay.risk.monitoring.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${autopay.risk.monitoring.batch-size:500}")
+    private int batchSize;
+
+    @Value("${autopay.risk.monitoring.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    @Value("${autopay.risk.monitoring.offer-timeout-ms:5}")
+    private long offerTimeoutMillis;
+
+    @Value("${autopay.risk.monitoring.max-attempts:3}")
+    private int maxAttempts;
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder backpressureCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    private MpscRingBuffer<RiskMonitoring> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+    private long reportedDrops;
+
+    @PostConstruct
+    public void init() {
+        buffer = new MpscRingBuffer<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::run, "risk-monitoring-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        if (buffer.size() > 0) {
+            log.warn("风控监控记录写入器停止时仍有 {} 条未写入", buffer.size());
+        }
+    }
+
+    /**
+     * 提交风控监控记录
+     *
+     * @return 记录因队列已满被丢弃时返回false
+     */
+    public boolean submit(RiskMonitoring record) {
+        if (buffer.offer(record)) {
+            if (buffer.size() >= batchSize) {
+                LockSupport.unpark(writerThread);
+            }
+            return true;
+        }
+        backpressureCount.increment();
+        LockSupport.unpark(writerThread);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            if (buffer.offer(record)) {
+                return true;
+            }
+        }
+        droppedCount.increment();
+        return false;
+    }
+
+    /**
+     * 获取待写入记录数
+     */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    /**
+     * 获取已写入记录数
+     */
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * 获取因队列已满被丢弃的记录数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 获取提交时遇到队列已满的次数
+     */
+    public long getBackpressureCount() {
+        return backpressureCount.sum();
+    }
+
+    /**
+     * 获取重试耗尽后写入失败的记录数
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    private void run() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        List<RiskMonitoring> batch = new ArrayList<>(batchSize);
+        while (true) {
+            buffer.drain(batch::add, batchSize - batch.size());
+            if (batch.size() < batchSize && running) {
+                // 不足一批时等待至刷新间隔，队列积压到一批时由生产者提前唤醒
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                buffer.drain(batch::add, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            } else if (!running) {
+                break;
+            }
+            reportDrops();
+        }
+    }
+
+    private void write(List<RiskMonitoring> batch) {
+        for (RiskMonitoring record : batch) {
+            if (record.getId() == null) {
+                record.setId(IdWorker.getId());
+            }
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                riskMonitoringRepository.batchInsert(batch);
+                writtenCount.add(batch.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !running) {
+                    failedCount.add(batch.size());
+                    log.error("风控监控记录写入失败，丢弃 {} 条：{}", batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("风控监控记录写入失败，第 {} 次重试：{}", attempt, e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100L * attempt));
+            }
+        }
+    }
+
+    private void reportDrops() {
+        long dropped = droppedCount.sum();
+        if (dropped > reportedDrops) {
+            log.warn("风控监控记录队列已满，累计丢弃 {} 条", dropped);
+            reportedDrops = dropped;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.autopay.backend.service.risk;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.autopay.backend.entity.RiskRule;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 风控规则编译器
+ * 解析规则的thresholds和ruleConditions，生成对应类型的规则评估器
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Component
+@RequiredArgsConstructor
+public class RiskRuleCompiler {
+
+    private final VelocityCounterService velocityCounterService;
+    private final RiskListStore riskListStore;
+    private final GeoIpService geoIpService;
+    private final DeviceProfileStore deviceProfileStore;
+
+    /**
+     * 编译单条规则
+     *
+     * @throws IllegalArgumentException 规则类型未知或配置无法解析
+     */
+    public RiskRuleEvaluator compile(RiskRule rule) {
+        JSONObject thresholds = parse(rule.getThresholds());
+        JSONObject conditions = parse(rule.getRuleConditions());
+        Integer ruleType = rule.getRuleType();
+        if (ruleType == null) {
+            throw new IllegalArgumentException("风控规则类型为空");
+        }
+        switch (ruleType) {
+            case 1: // 金额限制
+                return new AmountLimitEvaluator(rule, thresholds, conditions);
+            case 2: // 频率限制
+                return new FrequencyLimitEvaluator(rule, thresholds, conditions, velocityCounterService);
+            case 3: // 地域限制
+                return new GeographicLimitEvaluator(rule, thresholds, conditions, geoIpService);
+            case 4: // 设备限制
+                return new DeviceLimitEvaluator(rule, thresholds, conditions, deviceProfileStore);
+            case 5: // 黑名单
+                return new ListMatchEvaluator(rule, thresholds, conditions, false, riskListStore);
+            case 6: // 白名单
+                return new ListMatchEvaluator(rule, thresholds, conditions, true, riskListStore);
+            default:
+                throw new IllegalArgumentException("未知的风控规则类型：" + ruleType);
+        }
+    }
+
+    private static JSONObject parse(String json) {
+        if (StrUtil.isBlank(json)) {
+            return new JSONObject();
+        }
+        JSONObject object = JSON.parseObject(json);
+        return object != null ? object : new JSONObject();
+    }
+}
@@ -0,0 +1,94 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.entity.RiskRule;
+import com.autopay.backend.repository.RiskRuleRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 风控规则引擎
+ * 将启用的规则编译为不可变规则集，定时检测到规则变化时重新编译并原子替换；
+ * 风控检查直接使用当前规则集，不访问数据库
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RiskRuleEngine {
+
+    private final RiskRuleRepository riskRuleRepository;
+    private final RiskRuleCompiler riskRuleCompiler;
+
+    private volatile RiskRuleSet ruleSet = RiskRuleSet.EMPTY;
+    private String signature;
+
+    @PostConstruct
+    public void init() {
+        refresh(true);
+    }
+
+    /**
+     * 定时检测规则变化
+     */
+    @Scheduled(fixedDelayString = "${autopay.risk.rule-refresh-interval-ms:30000}",
+            initialDelayString = "${autopay.risk.rule-refresh-interval-ms:30000}")
+    public void scheduledRefresh() {
+        refresh(false);
+    }
+
+    /**
+     * 获取当前规则集
+     */
+    public RiskRuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * 加载并编译启用的规则，单条规则编译失败时跳过该规则，加载失败时保留旧规则集
+     *
+     * @param force 规则未变化时是否仍重新编译
+     */
+    public synchronized void refresh(boolean force) {
+        try {
+            List<RiskRule> rules = riskRuleRepository.findEnabledRules();
+            String latest = signature(rules);
+            if (!force && latest.equals(signature)) {
+                return;
+            }
+
+            List<RiskRuleEvaluator> compiled = new ArrayList<>(rules.size());
+            for (RiskRule rule : rules) {
+                try {
+                    compiled.add(riskRuleCompiler.compile(rule));
+                } catch (Exception e) {
+                    log.error("风控规则编译失败，规则ID：{}，错误：{}", rule.getId(), e.getMessage());
+                }
+            }
+            ruleSet = new RiskRuleSet(ruleSet.getVersion() + 1, compiled);
+            signature = latest;
+            log.info("风控规则集已编译，版本：{}，规则数：{}", ruleSet.getVersion(), compiled.size());
+        } catch (Exception e) {
+            log.error("风控规则加载失败，继续使用旧规则集：{}", e.getMessage());
+        }
+    }
+
+    private static String signature(List<RiskRule> rules) {
+        StringBuilder builder = new StringBuilder();
+        for (RiskRule rule : rules) {
+            builder.append(rule.getId()).append('|').append(rule.getRuleType())
+                    .append('|').append(rule.getRiskLevel()).append('|').append(rule.getPriority())
+                    .append('|').append(rule.getRuleName()).append('|').append(rule.getUpdatedAt())
+                    .append('|').append(rule.getThresholds()).append('|').append(rule.getRuleConditions())
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+}
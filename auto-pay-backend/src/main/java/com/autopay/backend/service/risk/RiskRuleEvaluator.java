@@ -0,0 +1,86 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+
+import java.math.BigDecimal;
+
+/**
+ * 编译后的风控规则
+ * 规则阈值和条件在编译时解析完成，评估时不再访问数据库或解析JSON
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public interface RiskRuleEvaluator {
+
+    /**
+     * 规则ID
+     */
+    Long getRuleId();
+
+    /**
+     * 规则名称
+     */
+    String getRuleName();
+
+    /**
+     * 规则类型
+     */
+    Integer getRuleType();
+
+    /**
+     * 优先级，数值越小越先执行
+     */
+    int getPriority();
+
+    /**
+     * 风险等级
+     */
+    Integer getRiskLevel();
+
+    /**
+     * 触发时计入的风险分数(基点)
+     */
+    long getScoreBasisPoints();
+
+    /**
+     * 评估是否可能阻塞(访问缓存未命中时回源等)，可能阻塞的规则在并行模式下提交到规则线程池执行
+     */
+    default boolean mayBlock() {
+        return false;
+    }
+
+    /**
+     * 评估结果是否只取决于请求内容，依赖操作频率、设备历史等随请求累积的状态的规则不可缓存
+     */
+    default boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * 规则执行超时时间(毫秒)，0表示使用全局配置
+     */
+    default long getTimeoutMillis() {
+        return 0;
+    }
+
+    /**
+     * 规则执行超时时计入的风险分数，null表示使用全局配置
+     */
+    default BigDecimal getTimeoutScore() {
+        return null;
+    }
+
+    /**
+     * 规则是否适用于该请求的操作类型
+     */
+    boolean appliesTo(RiskCheckRequest request);
+
+    /**
+     * 评估规则
+     *
+     * @return 触发时返回规则结果，未触发返回null
+     */
+    RiskRuleResult evaluate(RiskCheckRequest request);
+}
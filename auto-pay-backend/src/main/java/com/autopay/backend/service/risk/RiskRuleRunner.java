@@ -0,0 +1,219 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 风控规则执行器
+ * 并行模式下，可能阻塞的规则提交到规则线程池并行执行，其余规则在当前线程执行；
+ * 异步规则按各自超时和整体截止时间等待，超时的任务被取消并中断执行线程，超时、线程池繁忙时按超时分数计入。
+ * 结果按规则集的优先级顺序合并，与完成顺序无关
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RiskRuleRunner {
+
+    @Qualifier("riskRuleExecutor")
+    private final Executor riskRuleExecutor;
+    private final RiskDecisionCache riskDecisionCache;
+
+    @Value("${autopay.risk.evaluation.parallel:true}")
+    private boolean parallel;
+
+    @Value("${autopay.risk.evaluation.deadline-ms:50}")
+    private long deadlineMillis;
+
+    @Value("${autopay.risk.evaluation.rule-timeout-ms:20}")
+    private long ruleTimeoutMillis;
+
+    @Value("${autopay.risk.evaluation.timeout-score:10}")
+    private BigDecimal timeoutScore;
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * 评估规则集中的全部规则(白名单除外)
+     *
+     * @return 触发的规则结果(按优先级排序)及风险总分
+     */
+    public RiskEvaluation evaluate(RiskRuleSet ruleSet, RiskCheckRequest request) {
+        int size = ruleSet.size();
+        long start = System.nanoTime();
+        RiskRuleResult[] results = new RiskRuleResult[size];
+        // 超时结果按超时分数计入，其余触发结果按规则编译时的分数计入
+        boolean[] timedOut = new boolean[size];
+
+        // 重复请求复用可缓存规则的结果，只重新评估其余规则
+        RiskDecisionCache.DecisionKey cacheKey = riskDecisionCache.key(ruleSet, request);
+        RiskRuleResult[] cached = cacheKey != null ? riskDecisionCache.get(cacheKey) : null;
+        boolean[] done = new boolean[size];
+        if (cached != null) {
+            for (int i = 0; i < size; i++) {
+                if (ruleSet.isCacheable(i)) {
+                    results[i] = cached[i];
+                    done[i] = true;
+                }
+            }
+        }
+
+        // 先提交可能阻塞的规则，再在当前线程执行其余规则；提交FutureTask，超时取消时可中断执行线程
+        @SuppressWarnings("unchecked")
+        FutureTask<RiskRuleResult>[] futures = new FutureTask[size];
+        boolean async = false;
+        if (parallel) {
+            for (int i = 0; i < size; i++) {
+                RiskRuleEvaluator evaluator = ruleSet.get(i);
+                if (!done[i] && evaluator.mayBlock() && evaluator.appliesTo(request)) {
+                    FutureTask<RiskRuleResult> task = new FutureTask<>(() -> evaluateRule(evaluator, request));
+                    try {
+                        riskRuleExecutor.execute(task);
+                        futures[i] = task;
+                        async = true;
+                    } catch (RejectedExecutionException e) {
+                        timedOut[i] = true;
+                        done[i] = true;
+                        results[i] = timeoutResult(evaluator, "风控规则线程池繁忙");
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (futures[i] == null && !done[i]) {
+                results[i] = evaluateRule(ruleSet.get(i), request);
+            }
+        }
+        if (async) {
+            for (int i = 0; i < size; i++) {
+                if (futures[i] != null) {
+                    RiskRuleEvaluator evaluator = ruleSet.get(i);
+                    try {
+                        results[i] = await(evaluator, futures[i], start);
+                    } catch (TimeoutException e) {
+                        futures[i].cancel(true);
+                        timedOut[i] = true;
+                        results[i] = timeoutResult(evaluator, "风控规则执行超时");
+                    }
+                }
+            }
+        }
+
+        if (cacheKey != null && cached == null) {
+            cache(cacheKey, ruleSet, results, timedOut);
+        }
+
+        List<RiskRuleResult> triggered = new ArrayList<>();
+        long scoreBasisPoints = 0;
+        for (int i = 0; i < size; i++) {
+            RiskRuleResult result = results[i];
+            if (result != null) {
+                triggered.add(result);
+                scoreBasisPoints += timedOut[i]
+                        ? RiskScore.toBasisPoints(result.getRiskScore()) : ruleSet.get(i).getScoreBasisPoints();
+            }
+        }
+        return new RiskEvaluation(triggered, scoreBasisPoints);
+    }
+
+    /**
+     * 缓存可缓存规则的结果，存在超时的可缓存规则时不缓存
+     */
+    private void cache(RiskDecisionCache.DecisionKey cacheKey, RiskRuleSet ruleSet,
+                       RiskRuleResult[] results, boolean[] timedOut) {
+        RiskRuleResult[] cacheable = new RiskRuleResult[results.length];
+        for (int i = 0; i < results.length; i++) {
+            if (ruleSet.isCacheable(i)) {
+                if (timedOut[i]) {
+                    return;
+                }
+                cacheable[i] = results[i];
+            }
+        }
+        riskDecisionCache.put(cacheKey, cacheable);
+    }
+
+    /**
+     * 获取规则执行超时次数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * 等待异步规则结果，等待时间为规则超时和整体截止时间中较早者
+     *
+     * @throws TimeoutException 超时或等待被中断
+     */
+    private RiskRuleResult await(RiskRuleEvaluator evaluator, Future<RiskRuleResult> future, long start)
+            throws TimeoutException {
+        long timeoutMillis = evaluator.getTimeoutMillis() > 0 ? evaluator.getTimeoutMillis() : ruleTimeoutMillis;
+        long remaining = start + TimeUnit.MILLISECONDS.toNanos(Math.min(timeoutMillis, deadlineMillis)) - System.nanoTime();
+        try {
+            return future.get(Math.max(remaining, 0L), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("风控规则等待被中断");
+        } catch (ExecutionException e) {
+            log.error("风控规则执行异常，规则ID：{}，错误：{}", evaluator.getRuleId(), e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 评估单个风控规则
+     *
+     * @return 触发时返回规则结果，未触发或执行异常返回null
+     */
+    private RiskRuleResult evaluateRule(RiskRuleEvaluator evaluator, RiskCheckRequest request) {
+        if (!evaluator.appliesTo(request)) {
+            return null;
+        }
+        try {
+            return evaluator.evaluate(request);
+        } catch (Exception e) {
+            log.error("风控规则执行异常，规则ID：{}，错误：{}", evaluator.getRuleId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 超时规则按超时分数计入，分数为0时视为未触发
+     */
+    private RiskRuleResult timeoutResult(RiskRuleEvaluator evaluator, String reason) {
+        timeoutCount.increment();
+        log.warn("{}，规则ID：{}", reason, evaluator.getRuleId());
+        BigDecimal score = evaluator.getTimeoutScore() != null ? evaluator.getTimeoutScore() : timeoutScore;
+        if (score.signum() <= 0) {
+            return null;
+        }
+        RiskRuleResult result = new RiskRuleResult();
+        result.setRuleId(evaluator.getRuleId());
+        result.setRuleName(evaluator.getRuleName());
+        result.setRuleType(evaluator.getRuleType());
+        result.setTriggered(true);
+        result.setRiskScore(score);
+        result.setRiskLevel(evaluator.getRiskLevel());
+        result.setReason(reason);
+        return result;
+    }
+}
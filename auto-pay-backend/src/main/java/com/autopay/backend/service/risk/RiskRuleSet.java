@@ -0,0 +1,102 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskRuleResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 编译后的不可变风控规则集
+ * 白名单规则与其他规则分开存放，均按优先级升序排列；规则变更时整体替换
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public final class RiskRuleSet {
+
+    static final RiskRuleSet EMPTY = new RiskRuleSet(0L, List.of());
+
+    private final long version;
+    private final RiskRuleEvaluator[] whitelist;
+    private final RiskRuleEvaluator[] evaluators;
+    private final boolean[] cacheable;
+    private final boolean hasCacheable;
+
+    RiskRuleSet(long version, List<RiskRuleEvaluator> compiled) {
+        List<RiskRuleEvaluator> sorted = new ArrayList<>(compiled);
+        sorted.sort(Comparator.comparingInt(RiskRuleEvaluator::getPriority));
+        List<RiskRuleEvaluator> whitelistRules = new ArrayList<>();
+        List<RiskRuleEvaluator> otherRules = new ArrayList<>();
+        for (RiskRuleEvaluator evaluator : sorted) {
+            if (evaluator instanceof ListMatchEvaluator && ((ListMatchEvaluator) evaluator).isWhitelist()) {
+                whitelistRules.add(evaluator);
+            } else {
+                otherRules.add(evaluator);
+            }
+        }
+        this.version = version;
+        this.whitelist = whitelistRules.toArray(new RiskRuleEvaluator[0]);
+        this.evaluators = otherRules.toArray(new RiskRuleEvaluator[0]);
+        this.cacheable = new boolean[evaluators.length];
+        boolean any = false;
+        for (int i = 0; i < evaluators.length; i++) {
+            cacheable[i] = evaluators[i].isCacheable();
+            any |= cacheable[i];
+        }
+        this.hasCacheable = any;
+    }
+
+    /**
+     * 规则集版本，每次重新编译递增
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 匹配白名单
+     *
+     * @return 命中的白名单结果，未命中返回null
+     */
+    public RiskRuleResult matchWhitelist(RiskCheckRequest request) {
+        for (RiskRuleEvaluator evaluator : whitelist) {
+            if (evaluator.appliesTo(request)) {
+                RiskRuleResult result = evaluator.evaluate(request);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 非白名单规则数
+     */
+    public int size() {
+        return evaluators.length;
+    }
+
+    /**
+     * 按优先级获取非白名单规则
+     */
+    public RiskRuleEvaluator get(int index) {
+        return evaluators[index];
+    }
+
+    /**
+     * 按优先级判断非白名单规则的结果是否可缓存
+     */
+    public boolean isCacheable(int index) {
+        return cacheable[index];
+    }
+
+    /**
+     * 是否存在结果可缓存的规则
+     */
+    public boolean hasCacheableRules() {
+        return hasCacheable;
+    }
+}
@@ -0,0 +1,48 @@
+package com.autopay.backend.service.risk;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 风险分数工具类
+ * 风控内部以基点(1分 = 100基点)的long值计算分数，仅在接口边界与BigDecimal互相转换
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public final class RiskScore {
+
+    /**
+     * 每分对应的基点数
+     */
+    public static final long BASIS_POINTS_PER_POINT = 100L;
+
+    private static final int SCALE = 2;
+
+    private RiskScore() {
+    }
+
+    /**
+     * 分数转换为基点，按四舍五入处理多余小数位
+     */
+    public static long toBasisPoints(BigDecimal score) {
+        return score.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 基点转换为分数，整分时不带小数位
+     */
+    public static BigDecimal toDecimal(long basisPoints) {
+        if (basisPoints % BASIS_POINTS_PER_POINT == 0) {
+            return BigDecimal.valueOf(basisPoints / BASIS_POINTS_PER_POINT);
+        }
+        return BigDecimal.valueOf(basisPoints, SCALE);
+    }
+
+    /**
+     * 基点四舍五入为整分
+     */
+    public static int toPoints(long basisPoints) {
+        return (int) Math.floorDiv(basisPoints + BASIS_POINTS_PER_POINT / 2, BASIS_POINTS_PER_POINT);
+    }
+}
@@ -0,0 +1,425 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.entity.RiskStatRollup;
+import com.autopay.backend.repository.RiskStatRollupRepository;
+import com.autopay.backend.service.RiskCheckRequest;
+import com.autopay.backend.service.RiskCheckResult;
+import com.autopay.backend.service.RiskRuleResult;
+import com.autopay.backend.service.RiskStatistics;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 风控统计聚合器
+ * 风控检查完成时按分钟桶累加各操作类型的检查/拦截次数、各风险等级次数和各规则触发次数；
+ * 已结束的分钟桶定期以增量方式累加到分钟和小时汇总表，查询时整点部分读小时汇总、首尾读分钟汇总，
+ * 再合并本节点尚未落库的分钟桶，查询代价与窗口内的桶数相关，不扫描风控监控明细表
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class RiskStatisticsAggregator {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    /**
+     * 操作类型槽位数，槽位0记录未知操作类型
+     */
+    private static final int OPERATION_SLOTS = 8;
+
+    private static final int RISK_LEVELS = 4;
+
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
+
+    private final RiskStatRollupRepository riskStatRollupRepository;
+    private final AtomicReferenceArray<StatBucket> buckets;
+    private final int minuteRetentionDays;
+    private final Map<Long, String> ruleNames = new ConcurrentHashMap<>();
+
+    private final LongAdder flushedBuckets = new LongAdder();
+    private final LongAdder droppedBuckets = new LongAdder();
+
+    public RiskStatisticsAggregator(RiskStatRollupRepository riskStatRollupRepository,
+                                    @Value("${autopay.risk.statistics.memory-minutes:60}") int memoryMinutes,
+                                    @Value("${autopay.risk.statistics.minute-retention-days:7}") int minuteRetentionDays) {
+        this.riskStatRollupRepository = riskStatRollupRepository;
+        this.buckets = new AtomicReferenceArray<>(memoryMinutes);
+        this.minuteRetentionDays = minuteRetentionDays;
+    }
+
+    /**
+     * 记录一次风控检查结果
+     */
+    public void record(RiskCheckRequest request, RiskCheckResult result) {
+        StatBucket bucket = bucket(System.currentTimeMillis() / MINUTE_MILLIS);
+        boolean blocked = !Boolean.TRUE.equals(result.getPassed());
+        bucket.operations[operationSlot(request.getOperationType())].add(blocked);
+        bucket.levels[levelSlot(result.getRiskLevel())].add(blocked);
+        if (result.getTriggeredRules() != null) {
+            for (RiskRuleResult rule : result.getTriggeredRules()) {
+                if (rule.getRuleId() == null) {
+                    continue;
+                }
+                bucket.rules.computeIfAbsent(rule.getRuleId(), id -> new StatCounter()).add(blocked);
+                if (rule.getRuleName() != null) {
+                    ruleNames.put(rule.getRuleId(), rule.getRuleName());
+                }
+            }
+        }
+    }
+
+    /**
+     * 查询时间窗口内的风控统计，时间为空时默认最近24小时
+     */
+    public RiskStatistics getStatistics(LocalDateTime startTime, LocalDateTime endTime) {
+        // 窗口按分钟对齐，不足一分钟的部分计入整分钟
+        LocalDateTime end = endTime != null ? endTime : LocalDateTime.now();
+        if (!end.truncatedTo(ChronoUnit.MINUTES).equals(end)) {
+            end = end.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        }
+        LocalDateTime start = (startTime != null ? startTime : end.minusDays(1)).truncatedTo(ChronoUnit.MINUTES);
+
+        Map<Integer, Map<Long, long[]>> dimensions = new HashMap<>();
+        Map<LocalDateTime, long[]> hours = new TreeMap<>();
+        if (start.isBefore(end)) {
+            LocalDateTime hourStart = start.truncatedTo(ChronoUnit.HOURS);
+            if (hourStart.isBefore(start)) {
+                hourStart = hourStart.plusHours(1);
+            }
+            LocalDateTime hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+            if (!hourStart.isBefore(hourEnd)) {
+                hourStart = end;
+                hourEnd = end;
+            }
+            for (RiskStatRollup rollup : riskStatRollupRepository.sumByDimension(start, hourStart, hourEnd, end)) {
+                merge(dimensions, rollup.getDimensionType(), rollup.getDimensionKey(),
+                        rollup.getTotalCount(), rollup.getBlockedCount());
+            }
+            for (RiskStatRollup rollup : riskStatRollupRepository.sumByHour(start, hourStart, hourEnd, end)) {
+                merge(hours, rollup.getStatTime(), rollup.getTotalCount(), rollup.getBlockedCount());
+            }
+            mergeUnflushed(start, end, dimensions, hours);
+        }
+        return buildStatistics(dimensions, hours);
+    }
+
+    /**
+     * 已落库的分钟桶数
+     */
+    public long getFlushedBuckets() {
+        return flushedBuckets.sum();
+    }
+
+    /**
+     * 未落库即被覆盖的分钟桶数(汇总表长时间不可用时发生)
+     */
+    public long getDroppedBuckets() {
+        return droppedBuckets.sum();
+    }
+
+    /**
+     * 已结束超过一分钟的分钟桶累加到分钟和小时汇总，单条语句写入，失败时保留在内存中下次重试
+     */
+    @Scheduled(fixedDelayString = "${autopay.risk.statistics.flush-interval-ms:10000}")
+    public void flush() {
+        long closedBefore = System.currentTimeMillis() / MINUTE_MILLIS - 1;
+        List<Integer> slots = new ArrayList<>();
+        List<StatBucket> flushed = new ArrayList<>();
+        List<RiskStatRollup> rollups = new ArrayList<>();
+        Map<String, RiskStatRollup> hourRollups = new HashMap<>();
+        for (int i = 0; i < buckets.length(); i++) {
+            StatBucket bucket = buckets.get(i);
+            if (bucket == null || bucket.minute >= closedBefore) {
+                continue;
+            }
+            slots.add(i);
+            flushed.add(bucket);
+            LocalDateTime minute = toLocalDateTime(bucket.minute);
+            LocalDateTime hour = minute.truncatedTo(ChronoUnit.HOURS);
+            bucket.forEach((dimensionType, key, counter) -> {
+                long total = counter.total.sum();
+                long blocked = counter.blocked.sum();
+                rollups.add(rollup(minute, RiskStatRollup.GRANULARITY_MINUTE, dimensionType, key, total, blocked));
+                hourRollups.merge(hour + ":" + dimensionType + ":" + key,
+                        rollup(hour, RiskStatRollup.GRANULARITY_HOUR, dimensionType, key, total, blocked),
+                        (a, b) -> a.setTotalCount(a.getTotalCount() + b.getTotalCount())
+                                .setBlockedCount(a.getBlockedCount() + b.getBlockedCount()));
+            });
+        }
+        if (slots.isEmpty()) {
+            return;
+        }
+        rollups.addAll(hourRollups.values());
+        try {
+            if (!rollups.isEmpty()) {
+                riskStatRollupRepository.batchUpsert(rollups);
+            }
+        } catch (Exception e) {
+            log.warn("风控统计汇总写入失败：{} 个分钟桶，{}", slots.size(), e.getMessage());
+            return;
+        }
+        for (int i = 0; i < slots.size(); i++) {
+            buckets.compareAndSet(slots.get(i), flushed.get(i), null);
+        }
+        flushedBuckets.add(slots.size());
+    }
+
+    /**
+     * 清理超过保留期的分钟汇总，更早的窗口按整点读取小时汇总
+     */
+    @Scheduled(fixedDelayString = "${autopay.risk.statistics.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        LocalDateTime before = LocalDateTime.now().minusDays(minuteRetentionDays).truncatedTo(ChronoUnit.HOURS);
+        try {
+            int deleted;
+            do {
+                deleted = riskStatRollupRepository.deleteMinuteRollupsBefore(before);
+            } while (deleted > 0);
+        } catch (Exception e) {
+            log.warn("风控统计分钟汇总清理失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取分钟桶，槽位被更早的分钟占用时替换
+     */
+    private StatBucket bucket(long minute) {
+        int slot = (int) Math.floorMod(minute, (long) buckets.length());
+        while (true) {
+            StatBucket current = buckets.get(slot);
+            if (current != null && current.minute >= minute) {
+                return current;
+            }
+            StatBucket created = new StatBucket(minute);
+            if (buckets.compareAndSet(slot, current, created)) {
+                if (current != null) {
+                    droppedBuckets.increment();
+                    log.warn("风控统计分钟桶未落库即被覆盖，分钟：{}", toLocalDateTime(current.minute));
+                }
+                return created;
+            }
+        }
+    }
+
+    private void mergeUnflushed(LocalDateTime start, LocalDateTime end,
+                                Map<Integer, Map<Long, long[]>> dimensions, Map<LocalDateTime, long[]> hours) {
+        for (int i = 0; i < buckets.length(); i++) {
+            StatBucket bucket = buckets.get(i);
+            if (bucket == null) {
+                continue;
+            }
+            LocalDateTime minute = toLocalDateTime(bucket.minute);
+            if (minute.isBefore(start) || !minute.isBefore(end)) {
+                continue;
+            }
+            LocalDateTime hour = minute.truncatedTo(ChronoUnit.HOURS);
+            bucket.forEach((dimensionType, key, counter) -> {
+                long total = counter.total.sum();
+                long blocked = counter.blocked.sum();
+                merge(dimensions, dimensionType, key, total, blocked);
+                if (dimensionType == RiskStatRollup.DIMENSION_OPERATION) {
+                    merge(hours, hour, total, blocked);
+                }
+            });
+        }
+    }
+
+    private RiskStatistics buildStatistics(Map<Integer, Map<Long, long[]>> dimensions,
+                                           Map<LocalDateTime, long[]> hours) {
+        RiskStatistics stats = new RiskStatistics();
+
+        long totalChecks = 0;
+        long blockedChecks = 0;
+        List<RiskStatistics.OperationTypeStats> operationStats = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : new TreeMap<>(
+                dimensions.getOrDefault(RiskStatRollup.DIMENSION_OPERATION, Map.of())).entrySet()) {
+            long[] counts = entry.getValue();
+            totalChecks += counts[0];
+            blockedChecks += counts[1];
+            RiskStatistics.OperationTypeStats operation = new RiskStatistics.OperationTypeStats();
+            operation.setOperationType(entry.getKey().intValue());
+            operation.setOperationName(operationName(entry.getKey().intValue()));
+            operation.setCount(counts[0]);
+            operation.setBlockedCount(counts[1]);
+            operation.setBlockRate(blockRate(counts));
+            operationStats.add(operation);
+        }
+        stats.setTotalChecks(totalChecks);
+        stats.setBlockedChecks(blockedChecks);
+        stats.setPassedChecks(totalChecks - blockedChecks);
+        stats.setOperationTypeStats(operationStats);
+
+        Map<Long, long[]> levels = dimensions.getOrDefault(RiskStatRollup.DIMENSION_RISK_LEVEL, Map.of());
+        RiskStatistics.RiskLevelDistribution distribution = new RiskStatistics.RiskLevelDistribution();
+        distribution.setNormal(levels.getOrDefault(0L, new long[2])[0]);
+        distribution.setLowRisk(levels.getOrDefault(1L, new long[2])[0]);
+        distribution.setMediumRisk(levels.getOrDefault(2L, new long[2])[0]);
+        distribution.setHighRisk(levels.getOrDefault(3L, new long[2])[0]);
+        stats.setRiskLevelDistribution(distribution);
+
+        List<RiskStatistics.TimeRangeStats> timeRangeStats = new ArrayList<>(hours.size());
+        for (Map.Entry<LocalDateTime, long[]> entry : hours.entrySet()) {
+            RiskStatistics.TimeRangeStats timeRange = new RiskStatistics.TimeRangeStats();
+            timeRange.setTimeRange(entry.getKey().format(HOUR_FORMATTER));
+            timeRange.setCount(entry.getValue()[0]);
+            timeRange.setBlockedCount(entry.getValue()[1]);
+            timeRange.setBlockRate(blockRate(entry.getValue()));
+            timeRangeStats.add(timeRange);
+        }
+        stats.setTimeRangeStats(timeRangeStats);
+
+        List<RiskStatistics.RuleTriggerStats> ruleStats = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : dimensions.getOrDefault(RiskStatRollup.DIMENSION_RULE, Map.of()).entrySet()) {
+            RiskStatistics.RuleTriggerStats rule = new RiskStatistics.RuleTriggerStats();
+            rule.setRuleId(entry.getKey());
+            rule.setRuleName(ruleNames.get(entry.getKey()));
+            rule.setTriggerCount(entry.getValue()[0]);
+            rule.setBlockedCount(entry.getValue()[1]);
+            ruleStats.add(rule);
+        }
+        ruleStats.sort((a, b) -> Long.compare(b.getTriggerCount(), a.getTriggerCount()));
+        stats.setRuleTriggerStats(ruleStats);
+        return stats;
+    }
+
+    private static void merge(Map<Integer, Map<Long, long[]>> dimensions, Integer dimensionType, Long key,
+                              Long total, Long blocked) {
+        long[] counts = dimensions.computeIfAbsent(dimensionType, t -> new HashMap<>())
+                .computeIfAbsent(key, k -> new long[2]);
+        counts[0] += total != null ? total : 0L;
+        counts[1] += blocked != null ? blocked : 0L;
+    }
+
+    private static void merge(Map<LocalDateTime, long[]> hours, LocalDateTime hour, Long total, Long blocked) {
+        long[] counts = hours.computeIfAbsent(hour, h -> new long[2]);
+        counts[0] += total != null ? total : 0L;
+        counts[1] += blocked != null ? blocked : 0L;
+    }
+
+    private static RiskStatRollup rollup(LocalDateTime statTime, int granularity, int dimensionType, long key,
+                                         long total, long blocked) {
+        return new RiskStatRollup()
+                .setId(IdWorker.getId())
+                .setStatTime(statTime)
+                .setGranularity(granularity)
+                .setDimensionType(dimensionType)
+                .setDimensionKey(key)
+                .setTotalCount(total)
+                .setBlockedCount(blocked);
+    }
+
+    private static double blockRate(long[] counts) {
+        return counts[0] > 0 ? (double) counts[1] / counts[0] : 0.0;
+    }
+
+    private static int operationSlot(Integer operationType) {
+        return operationType != null && operationType > 0 && operationType < OPERATION_SLOTS ? operationType : 0;
+    }
+
+    private static int levelSlot(Integer riskLevel) {
+        if (riskLevel == null || riskLevel < 0) {
+            return 0;
+        }
+        return Math.min(riskLevel, RISK_LEVELS - 1);
+    }
+
+    private static String operationName(int operationType) {
+        switch (operationType) {
+            case 1:
+                return "登录";
+            case 2:
+                return "支付";
+            case 3:
+                return "退款";
+            case 4:
+                return "提现";
+            case 5:
+                return "修改信息";
+            default:
+                return "其他";
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long minute) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(minute * MINUTE_MILLIS), ZoneId.systemDefault());
+    }
+
+    /**
+     * 检查次数及其中未通过的次数
+     */
+    private static final class StatCounter {
+
+        final LongAdder total = new LongAdder();
+        final LongAdder blocked = new LongAdder();
+
+        void add(boolean isBlocked) {
+            total.increment();
+            if (isBlocked) {
+                blocked.increment();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface CounterVisitor {
+
+        void visit(int dimensionType, long key, StatCounter counter);
+    }
+
+    /**
+     * 单个分钟的统计桶
+     */
+    private static final class StatBucket {
+
+        final long minute;
+        final StatCounter[] operations = new StatCounter[OPERATION_SLOTS];
+        final StatCounter[] levels = new StatCounter[RISK_LEVELS];
+        final Map<Long, StatCounter> rules = new ConcurrentHashMap<>();
+
+        StatBucket(long minute) {
+            this.minute = minute;
+            for (int i = 0; i < OPERATION_SLOTS; i++) {
+                operations[i] = new StatCounter();
+            }
+            for (int i = 0; i < RISK_LEVELS; i++) {
+                levels[i] = new StatCounter();
+            }
+        }
+
+        /**
+         * 遍历计数不为0的维度
+         */
+        void forEach(CounterVisitor visitor) {
+            for (int i = 0; i < OPERATION_SLOTS; i++) {
+                if (operations[i].total.sum() > 0) {
+                    visitor.visit(RiskStatRollup.DIMENSION_OPERATION, i, operations[i]);
+                }
+            }
+            for (int i = 0; i < RISK_LEVELS; i++) {
+                if (levels[i].total.sum() > 0) {
+                    visitor.visit(RiskStatRollup.DIMENSION_RISK_LEVEL, i, levels[i]);
+                }
+            }
+            rules.forEach((ruleId, counter) -> visitor.visit(RiskStatRollup.DIMENSION_RULE, ruleId, counter));
+        }
+    }
+}
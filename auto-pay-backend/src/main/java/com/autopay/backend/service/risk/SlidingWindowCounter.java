@@ -0,0 +1,52 @@
+package com.autopay.backend.service.risk;
+
+import java.util.Arrays;
+
+/**
+ * 分桶滑动窗口计数器
+ * 环形数组保存各分桶计数并维护窗口总数，时间推进时只清理过期分桶，递增和读取均摊O(1)
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+final class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final long[] counts;
+    private long total;
+    private long currentBucket = Long.MIN_VALUE;
+
+    SlidingWindowCounter(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        this.counts = new long[buckets];
+    }
+
+    synchronized void add(long nowMillis, long delta) {
+        advance(nowMillis);
+        counts[(int) (currentBucket % counts.length)] += delta;
+        total += delta;
+    }
+
+    synchronized long get(long nowMillis) {
+        advance(nowMillis);
+        return total;
+    }
+
+    private void advance(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        if (bucket <= currentBucket) {
+            return;
+        }
+        if (currentBucket == Long.MIN_VALUE || bucket - currentBucket >= counts.length) {
+            Arrays.fill(counts, 0L);
+            total = 0;
+        } else {
+            for (long b = currentBucket + 1; b <= bucket; b++) {
+                int index = (int) (b % counts.length);
+                total -= counts[index];
+                counts[index] = 0;
+            }
+        }
+        currentBucket = bucket;
+    }
+}
@@ -0,0 +1,258 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.service.RiskCheckRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 风控频率计数服务
+ * 按用户、IP、设备、商户维度及操作类型统计1分钟/1小时/24小时内的操作次数。
+ * 本地分桶环形计数器提供O(1)递增和读取；增量定期批量同步到Redis分桶哈希，同一次脚本调用返回集群范围的窗口计数，
+ * 读取时使用最近的集群计数加上本节点尚未同步的增量，集群计数过期（如Redis不可用）时退化为本节点计数。
+ * 计数键按哈希分到固定数量的槽位，键名带槽位哈希标签，每次脚本调用只处理同一槽位的键，兼容Redis Cluster
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class VelocityCounterService {
+
+    private static final String KEY_PREFIX = "autopay:risk:velocity:";
+
+    private static final VelocityWindow[] WINDOWS = VelocityWindow.values();
+
+    /**
+     * KEYS：每个计数键对应各窗口的分桶哈希
+     * ARGV：当前时间、窗口数、各窗口的分桶毫秒数和分桶数、各计数键的增量
+     * 返回各计数键各窗口的集群计数
+     */
+    private static final RedisScript<List> SYNC_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local windows = tonumber(ARGV[2])
+            local result = {}
+            for e = 0, #KEYS / windows - 1 do
+              local delta = tonumber(ARGV[3 + windows * 2 + e])
+              for w = 0, windows - 1 do
+                local key = KEYS[e * windows + w + 1]
+                local bucketMillis = tonumber(ARGV[3 + w * 2])
+                local buckets = tonumber(ARGV[4 + w * 2])
+                local current = math.floor(now / bucketMillis)
+                if delta > 0 then
+                  redis.call('HINCRBY', key, current, delta)
+                  redis.call('PEXPIRE', key, bucketMillis * (buckets + 1))
+                end
+                local sum = 0
+                local fields = redis.call('HGETALL', key)
+                for i = 1, #fields, 2 do
+                  if tonumber(fields[i]) > current - buckets then
+                    sum = sum + tonumber(fields[i + 1])
+                  else
+                    redis.call('HDEL', key, fields[i])
+                  end
+                end
+                table.insert(result, sum)
+              end
+            end
+            return result
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Cache<String, VelocityEntry> entries;
+    private final Set<String> dirtyKeys = ConcurrentHashMap.newKeySet();
+    private final long remoteTtlMillis;
+    private final int syncBatchSize;
+    private final int slots;
+
+    public VelocityCounterService(StringRedisTemplate redisTemplate,
+                                  @Value("${autopay.risk.velocity.max-keys:100000}") long maxKeys,
+                                  @Value("${autopay.risk.velocity.remote-ttl-ms:5000}") long remoteTtlMillis,
+                                  @Value("${autopay.risk.velocity.sync-batch-size:100}") int syncBatchSize,
+                                  @Value("${autopay.risk.velocity.slots:16}") int slots) {
+        this.redisTemplate = redisTemplate;
+        this.remoteTtlMillis = remoteTtlMillis;
+        this.syncBatchSize = syncBatchSize;
+        this.slots = Math.max(slots, 1);
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofDays(1))
+                .build();
+    }
+
+    /**
+     * 记录一次操作，各维度计数加一
+     */
+    public void record(RiskCheckRequest request) {
+        long now = System.currentTimeMillis();
+        for (VelocityDimension dimension : VelocityDimension.values()) {
+            String key = key(dimension, request);
+            if (key != null) {
+                entries.get(key, k -> new VelocityEntry()).increment(now);
+                dirtyKeys.add(key);
+            }
+        }
+    }
+
+    /**
+     * 查询维度在时间窗口内的操作次数
+     */
+    public long count(VelocityDimension dimension, VelocityWindow window, RiskCheckRequest request) {
+        String key = key(dimension, request);
+        if (key == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        VelocityEntry entry = entries.get(key, k -> new VelocityEntry());
+        RemoteSnapshot remote = entry.remote;
+        if (remote != null && now - remote.syncTime <= remoteTtlMillis) {
+            return remote.counts[window.ordinal()] + entry.pending.get();
+        }
+        // 集群计数缺失或过期，下次同步时刷新
+        dirtyKeys.add(key);
+        return entry.local[window.ordinal()].get(now);
+    }
+
+    /**
+     * 同步本地增量并刷新集群计数，按槽位分批
+     */
+    @SuppressWarnings("unchecked")
+    @Scheduled(fixedDelayString = "${autopay.risk.velocity.sync-interval-ms:500}")
+    public void sync() {
+        if (dirtyKeys.isEmpty()) {
+            return;
+        }
+        List<String>[] bySlot = new List[slots];
+        for (String key : dirtyKeys) {
+            dirtyKeys.remove(key);
+            int slot = slot(key);
+            if (bySlot[slot] == null) {
+                bySlot[slot] = new ArrayList<>();
+            }
+            bySlot[slot].add(key);
+        }
+        for (int slot = 0; slot < slots; slot++) {
+            List<String> keys = bySlot[slot];
+            if (keys == null) {
+                continue;
+            }
+            for (int from = 0; from < keys.size(); from += syncBatchSize) {
+                syncBatch(slot, keys.subList(from, Math.min(from + syncBatchSize, keys.size())));
+            }
+        }
+    }
+
+    /**
+     * 计数键所属槽位，同一槽位的Redis键带相同的哈希标签
+     */
+    private int slot(String key) {
+        return Math.floorMod(key.hashCode(), slots);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void syncBatch(int slot, List<String> keys) {
+        List<VelocityEntry> batch = new ArrayList<>(keys.size());
+        List<String> redisKeys = new ArrayList<>(keys.size() * WINDOWS.length);
+        String prefix = KEY_PREFIX + "{" + slot + "}:";
+        for (String key : keys) {
+            VelocityEntry entry = entries.getIfPresent(key);
+            if (entry == null) {
+                continue;
+            }
+            batch.add(entry);
+            for (VelocityWindow window : WINDOWS) {
+                redisKeys.add(prefix + key + ":" + window.name());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long[] deltas = new long[batch.size()];
+        Object[] args = new Object[2 + WINDOWS.length * 2 + batch.size()];
+        args[0] = String.valueOf(now);
+        args[1] = String.valueOf(WINDOWS.length);
+        for (int w = 0; w < WINDOWS.length; w++) {
+            args[2 + w * 2] = String.valueOf(WINDOWS[w].getBucketMillis());
+            args[3 + w * 2] = String.valueOf(WINDOWS[w].getBuckets());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            deltas[i] = batch.get(i).pending.getAndSet(0);
+            args[2 + WINDOWS.length * 2 + i] = String.valueOf(deltas[i]);
+        }
+
+        try {
+            List<Long> counts = redisTemplate.execute(SYNC_SCRIPT, redisKeys, args);
+            for (int i = 0; i < batch.size(); i++) {
+                long[] windowCounts = new long[WINDOWS.length];
+                for (int w = 0; w < WINDOWS.length; w++) {
+                    windowCounts[w] = counts.get(i * WINDOWS.length + w);
+                }
+                batch.get(i).remote = new RemoteSnapshot(windowCounts, now);
+            }
+        } catch (Exception e) {
+            // 增量退回本地，下次同步时重试
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).pending.addAndGet(deltas[i]);
+            }
+            dirtyKeys.addAll(keys);
+            log.warn("风控频率计数同步失败：{} 个计数键，{}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static String key(VelocityDimension dimension, RiskCheckRequest request) {
+        String value = dimension.extract(request);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return dimension.name() + ":" + request.getOperationType() + ":" + value;
+    }
+
+    /**
+     * 单个计数键的本地计数及集群计数快照
+     */
+    private static final class VelocityEntry {
+
+        final SlidingWindowCounter[] local = new SlidingWindowCounter[WINDOWS.length];
+        final AtomicLong pending = new AtomicLong();
+        volatile RemoteSnapshot remote;
+
+        VelocityEntry() {
+            for (int w = 0; w < WINDOWS.length; w++) {
+                local[w] = new SlidingWindowCounter(WINDOWS[w].getBucketMillis(), WINDOWS[w].getBuckets());
+            }
+        }
+
+        void increment(long now) {
+            for (SlidingWindowCounter counter : local) {
+                counter.add(now, 1);
+            }
+            pending.incrementAndGet();
+        }
+    }
+
+    private static final class RemoteSnapshot {
+
+        final long[] counts;
+        final long syncTime;
+
+        RemoteSnapshot(long[] counts, long syncTime) {
+            this.counts = counts;
+            this.syncTime = syncTime;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.autopay.backend.service.risk;
+
+import com.autopay.backend.service.RiskCheckRequest;
+
+/**
+ * 频率计数维度
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public enum VelocityDimension {
+
+    USER {
+        @Override
+        String extract(RiskCheckRequest request) {
+            return request.getUserId() != null ? request.getUserId().toString() : null;
+        }
+    },
+    IP {
+        @Override
+        String extract(RiskCheckRequest request) {
+            return request.getIpAddress();
+        }
+    },
+    DEVICE {
+        @Override
+        String extract(RiskCheckRequest request) {
+            return request.getDeviceInfo();
+        }
+    },
+    MERCHANT {
+        @Override
+        String extract(RiskCheckRequest request) {
+            return request.getMerchantNo();
+        }
+    };
+
+    /**
+     * 从请求中提取维度值，缺失时返回null
+     */
+    abstract String extract(RiskCheckRequest request);
+}
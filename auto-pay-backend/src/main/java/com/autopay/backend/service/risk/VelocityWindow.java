@@ -0,0 +1,54 @@
+package com.autopay.backend.service.risk;
+
+/**
+ * 频率计数时间窗口
+ *
+ * @author autoPay
+ * @since 2024-01-01
+ */
+public enum VelocityWindow {
+
+    /**
+     * 1分钟，6个10秒分桶
+     */
+    MINUTE(10_000L, 6),
+    /**
+     * 1小时，12个5分钟分桶
+     */
+    HOUR(300_000L, 12),
+    /**
+     * 24小时，24个1小时分桶
+     */
+    DAY(3_600_000L, 24);
+
+    private final long bucketMillis;
+    private final int buckets;
+
+    VelocityWindow(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * 按秒数选择窗口，只支持与窗口长度完全一致的秒数，不把不支持的窗口放大到更长的窗口
+     *
+     * @throws IllegalArgumentException 秒数不是支持的窗口长度
+     */
+    public static VelocityWindow fromSeconds(long seconds) {
+        long millis = seconds * 1000L;
+        for (VelocityWindow window : values()) {
+            if (millis == window.bucketMillis * window.buckets) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("不支持的频率统计窗口：" + seconds + "秒，仅支持60、3600、86400秒");
+    }
+}
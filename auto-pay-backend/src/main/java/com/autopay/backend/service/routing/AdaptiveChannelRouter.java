@@ -0,0 +1,183 @@
+package com.autopay.backend.service.routing;
+
+import com.autopay.backend.entity.PaymentChannel;
+import com.autopay.backend.util.MoneyUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 自适应渠道路由器
+ * 综合成功率、响应时间、尾部响应时间(P95)、手续费率和当前负载为候选渠道评分，并按配置的策略选择渠道；
+ * 窗口内样本不足时使用渠道表中回写的历史成功率和平均响应时间，P95以平均响应时间代替；熔断器打开的渠道不参与路由
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdaptiveChannelRouter {
+
+    private final ChannelRoutingTable channelRoutingTable;
+    private final ChannelMetricsRegistry channelMetricsRegistry;
+    private final ChannelResilienceRegistry channelResilienceRegistry;
+
+    @Value("${autopay.routing.strategy:POWER_OF_TWO}")
+    private RoutingStrategy strategy;
+
+    @Value("${autopay.routing.min-samples:20}")
+    private long minSamples;
+
+    @Value("${autopay.routing.weights.success-rate:0.5}")
+    private double successRateWeight;
+
+    @Value("${autopay.routing.weights.response-time:0.1}")
+    private double responseTimeWeight;
+
+    @Value("${autopay.routing.weights.tail-latency:0.1}")
+    private double tailLatencyWeight;
+
+    @Value("${autopay.routing.weights.fee-rate:0.15}")
+    private double feeRateWeight;
+
+    @Value("${autopay.routing.weights.load:0.15}")
+    private double loadWeight;
+
+    @Value("${autopay.routing.latency-ceiling-ms:3000}")
+    private double latencyCeiling;
+
+    @Value("${autopay.routing.fee-rate-ceiling:0.01}")
+    private double feeRateCeiling;
+
+    @Value("${autopay.routing.load-ceiling:200}")
+    private double loadCeiling;
+
+    /**
+     * 为指定场景和金额选择渠道
+     *
+     * @return 渠道，无可用渠道时返回null
+     */
+    public PaymentChannel select(String scene, BigDecimal amount) {
+        ChannelRoutingTable.SceneRoute route = channelRoutingTable.getSceneRoute(scene);
+        if (route == null || amount == null) {
+            return null;
+        }
+        long amountMinor = MoneyUtil.toMinorUnits(amount);
+        int[] candidates = new int[route.size()];
+        int count = 0;
+        for (int i = 0; i < route.size(); i++) {
+            if (route.accepts(i, amountMinor) && channelResilienceRegistry.isAvailable(route.channel(i))) {
+                candidates[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1 || strategy == RoutingStrategy.PRIORITY) {
+            return route.channel(candidates[0]);
+        }
+
+        return switch (strategy) {
+            case POWER_OF_TWO -> selectPowerOfTwo(route, candidates, count);
+            case WEIGHTED_RANDOM -> selectWeightedRandom(route, candidates, count);
+            default -> selectBestScore(route, candidates, count);
+        };
+    }
+
+    /**
+     * 计算渠道综合评分(0-1)
+     */
+    public double score(PaymentChannel channel) {
+        ChannelMetrics metrics = channelMetricsRegistry.findMetrics(channel.getChannelCode());
+        ChannelMetrics.Snapshot snapshot = metrics == null ? null : metrics.snapshot();
+        boolean enoughSamples = snapshot != null && snapshot.getTotal() >= minSamples;
+
+        double successRate;
+        if (enoughSamples) {
+            successRate = snapshot.getSuccessRate();
+        } else if (channel.getSuccessRate() != null) {
+            successRate = channel.getSuccessRate().doubleValue() / 100D;
+        } else {
+            successRate = 1D;
+        }
+
+        double latency;
+        if (snapshot != null && snapshot.getEwmaLatency() >= 0) {
+            latency = snapshot.getEwmaLatency();
+        } else if (channel.getAvgResponseTime() != null) {
+            latency = channel.getAvgResponseTime();
+        } else {
+            latency = latencyCeiling / 2;
+        }
+
+        // 偶发慢请求拉高P95但对EWMA影响小，单独计分
+        double tailLatency = enoughSamples ? snapshot.getP95Latency() : latency;
+
+        double feeRate = channel.getFeeRate() == null ? 0D : channel.getFeeRate().doubleValue();
+        long inFlight = metrics == null ? 0 : metrics.getInFlight();
+
+        double weighted = successRateWeight * clamp(successRate)
+                + responseTimeWeight * (1D - clamp(latency / latencyCeiling))
+                + tailLatencyWeight * (1D - clamp(tailLatency / latencyCeiling))
+                + feeRateWeight * (1D - clamp(feeRate / feeRateCeiling))
+                + loadWeight * (1D - clamp(inFlight / loadCeiling));
+        double totalWeight = successRateWeight + responseTimeWeight + tailLatencyWeight + feeRateWeight + loadWeight;
+        return totalWeight <= 0 ? 0D : weighted / totalWeight;
+    }
+
+    private PaymentChannel selectBestScore(ChannelRoutingTable.SceneRoute route, int[] candidates, int count) {
+        // 候选按优先级升序排列，评分相同时保留优先级高的渠道
+        PaymentChannel best = route.channel(candidates[0]);
+        double bestScore = score(best);
+        for (int i = 1; i < count; i++) {
+            PaymentChannel channel = route.channel(candidates[i]);
+            double channelScore = score(channel);
+            if (channelScore > bestScore) {
+                best = channel;
+                bestScore = channelScore;
+            }
+        }
+        return best;
+    }
+
+    private PaymentChannel selectPowerOfTwo(ChannelRoutingTable.SceneRoute route, int[] candidates, int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (second >= first) {
+            second++;
+        }
+        PaymentChannel a = route.channel(candidates[Math.min(first, second)]);
+        PaymentChannel b = route.channel(candidates[Math.max(first, second)]);
+        return score(b) > score(a) ? b : a;
+    }
+
+    private PaymentChannel selectWeightedRandom(ChannelRoutingTable.SceneRoute route, int[] candidates, int count) {
+        double[] scores = new double[count];
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            scores[i] = score(route.channel(candidates[i]));
+            total += scores[i];
+        }
+        if (total <= 0) {
+            return route.channel(candidates[0]);
+        }
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < count; i++) {
+            point -= scores[i];
+            if (point < 0) {
+                return route.channel(candidates[i]);
+            }
+        }
+        return route.channel(candidates[count - 1]);
+    }
+
+    private static double clamp(double value) {
+        return value < 0 ? 0D : Math.min(value, 1D);
+    }
+}
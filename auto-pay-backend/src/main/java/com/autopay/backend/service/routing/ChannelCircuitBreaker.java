@@ -0,0 +1,158 @@
+package com.autopay.backend.service.routing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 渠道熔断器
+ * 连续失败（含超时慢调用）达到阈值后打开，打开期间拒绝调用；
+ * 冷却时间结束后进入半开状态，放行有限数量的探测调用，探测成功则关闭，失败则重新打开
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class ChannelCircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String channelCode;
+    private final long openDurationMillis;
+    private final int halfOpenProbes;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private volatile long openedAt;
+
+    private volatile int failureThreshold;
+    private volatile long slowCallMillis;
+
+    public ChannelCircuitBreaker(String channelCode, int failureThreshold, long slowCallMillis,
+                                 long openDurationMillis, int halfOpenProbes) {
+        this.channelCode = channelCode;
+        this.failureThreshold = failureThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * 更新阈值（渠道配置变化时调用）
+     */
+    public void configure(int failureThreshold, long slowCallMillis) {
+        this.failureThreshold = failureThreshold;
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    /**
+     * 判断渠道当前是否可被路由选中，不消耗探测名额
+     */
+    public boolean isAvailable() {
+        return switch (state.get()) {
+            case CLOSED -> true;
+            case OPEN -> System.currentTimeMillis() - openedAt >= openDurationMillis;
+            case HALF_OPEN -> halfOpenPermits.get() > 0;
+        };
+    }
+
+    /**
+     * 申请调用许可，半开状态下消耗一个探测名额
+     */
+    public boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                halfOpenPermits.set(halfOpenProbes);
+            }
+        }
+        return state.get() != State.OPEN && tryTakeProbePermit();
+    }
+
+    /**
+     * 记录调用成功，响应时间超过渠道超时时间的按失败处理
+     */
+    public void onSuccess(long latencyMillis) {
+        if (latencyMillis > slowCallMillis) {
+            onFailure();
+            return;
+        }
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            halfOpenPermits.set(0);
+        }
+    }
+
+    /**
+     * 记录调用失败
+     */
+    public void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    /**
+     * 释放未使用的探测名额（调用被舱壁拒绝时）
+     */
+    public void releasePermission() {
+        if (state.get() == State.HALF_OPEN) {
+            halfOpenPermits.incrementAndGet();
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public String getChannelCode() {
+        return channelCode;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * 打开熔断器，状态转换很少发生，加锁保证打开时间与状态一致
+     */
+    private synchronized void open(State expected) {
+        if (state.get() != expected) {
+            return;
+        }
+        openedAt = System.currentTimeMillis();
+        halfOpenPermits.set(0);
+        state.set(State.OPEN);
+    }
+
+    private boolean tryTakeProbePermit() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        for (;;) {
+            int permits = halfOpenPermits.get();
+            if (permits <= 0) {
+                return false;
+            }
+            if (halfOpenPermits.compareAndSet(permits, permits - 1)) {
+                return true;
+            }
+        }
+    }
+}
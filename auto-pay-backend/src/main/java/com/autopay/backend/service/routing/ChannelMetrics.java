@@ -0,0 +1,263 @@
+package com.autopay.backend.service.routing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个渠道的实时调用指标
+ * 滑动时间窗口由环形桶组成，计数使用LongAdder分段累加，记录与读取均无锁；
+ * 另外维护一个响应时间的指数加权移动平均值(EWMA)
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class ChannelMetrics {
+
+    /**
+     * 响应时间直方图上界(毫秒)，用于估算P95
+     */
+    private static final long[] LATENCY_BOUNDS = {
+            5, 10, 20, 50, 100, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000, 10000, 30000, Long.MAX_VALUE
+    };
+
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final Long channelId;
+    private final String channelCode;
+    private final long bucketMillis;
+    private final Bucket[] buckets;
+    private final LongAdder inFlight = new LongAdder();
+    private final AtomicLong ewmaLatencyBits = new AtomicLong(Double.doubleToRawLongBits(-1D));
+
+    /**
+     * 上次回写数据库以来的累计值
+     */
+    private final LongAdder pendingSuccess = new LongAdder();
+    private final LongAdder pendingTotal = new LongAdder();
+    private final LongAdder pendingLatencySum = new LongAdder();
+
+    public ChannelMetrics(Long channelId, String channelCode, int bucketCount, long bucketMillis) {
+        this.channelId = channelId;
+        this.channelCode = channelCode;
+        this.bucketMillis = bucketMillis;
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 调用开始
+     */
+    public void onStart() {
+        inFlight.increment();
+    }
+
+    /**
+     * 调用结束
+     */
+    public void onComplete(boolean success, long latencyMillis) {
+        inFlight.decrement();
+        record(success, latencyMillis);
+    }
+
+    /**
+     * 记录一次调用结果
+     */
+    public void record(boolean success, long latencyMillis) {
+        long latency = Math.max(latencyMillis, 0);
+        Bucket bucket = currentBucket(System.currentTimeMillis());
+        if (success) {
+            bucket.success.increment();
+            pendingSuccess.increment();
+        } else {
+            bucket.failure.increment();
+        }
+        bucket.latencySum.add(latency);
+        bucket.histogram[latencyBucket(latency)].increment();
+        pendingTotal.increment();
+        pendingLatencySum.add(latency);
+        updateEwma(latency);
+    }
+
+    /**
+     * 获取当前窗口的指标快照
+     */
+    public Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        long windowStart = now - bucketMillis * buckets.length;
+        long success = 0;
+        long failure = 0;
+        long latencySum = 0;
+        long[] histogram = new long[LATENCY_BOUNDS.length];
+        for (Bucket bucket : buckets) {
+            if (bucket.windowStart.get() <= windowStart) {
+                continue;
+            }
+            success += bucket.success.sum();
+            failure += bucket.failure.sum();
+            latencySum += bucket.latencySum.sum();
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += bucket.histogram[i].sum();
+            }
+        }
+        long total = success + failure;
+        return new Snapshot(total, success,
+                total == 0 ? 0D : (double) latencySum / total,
+                percentile(histogram, total, 0.95),
+                getEwmaLatency(),
+                Math.max(inFlight.sum(), 0));
+    }
+
+    /**
+     * 取出上次回写以来的累计值并清零，返回[总数, 成功数, 响应时间总和]
+     */
+    long[] drainPending() {
+        return new long[]{pendingTotal.sumThenReset(), pendingSuccess.sumThenReset(), pendingLatencySum.sumThenReset()};
+    }
+
+    public Long getChannelId() {
+        return channelId;
+    }
+
+    public String getChannelCode() {
+        return channelCode;
+    }
+
+    public long getInFlight() {
+        return Math.max(inFlight.sum(), 0);
+    }
+
+    /**
+     * 响应时间EWMA，无样本时返回负数
+     */
+    public double getEwmaLatency() {
+        return Double.longBitsToDouble(ewmaLatencyBits.get());
+    }
+
+    private Bucket currentBucket(long now) {
+        long start = now - now % bucketMillis;
+        Bucket bucket = buckets[(int) ((now / bucketMillis) % buckets.length)];
+        long bucketStart = bucket.windowStart.get();
+        if (bucketStart < start && bucket.windowStart.compareAndSet(bucketStart, start)) {
+            // 桶轮转：赢得CAS的线程负责清零，并发写入的少量样本可能被清除，对统计精度影响可忽略
+            bucket.reset();
+        }
+        return bucket;
+    }
+
+    private void updateEwma(long latency) {
+        for (;;) {
+            long bits = ewmaLatencyBits.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = current < 0 ? latency : current + EWMA_ALPHA * (latency - current);
+            if (ewmaLatencyBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private static int latencyBucket(long latency) {
+        for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+            if (latency <= LATENCY_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BOUNDS.length - 1;
+    }
+
+    private static long percentile(long[] histogram, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * quantile);
+        long cumulative = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            cumulative += histogram[i];
+            if (cumulative >= threshold) {
+                return i == LATENCY_BOUNDS.length - 1 ? LATENCY_BOUNDS[i - 1] : LATENCY_BOUNDS[i];
+            }
+        }
+        return LATENCY_BOUNDS[LATENCY_BOUNDS.length - 2];
+    }
+
+    /**
+     * 时间桶
+     */
+    private static final class Bucket {
+
+        final AtomicLong windowStart = new AtomicLong(Long.MIN_VALUE);
+        final LongAdder success = new LongAdder();
+        final LongAdder failure = new LongAdder();
+        final LongAdder latencySum = new LongAdder();
+        final LongAdder[] histogram = new LongAdder[LATENCY_BOUNDS.length];
+
+        Bucket() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void reset() {
+            success.reset();
+            failure.reset();
+            latencySum.reset();
+            for (LongAdder adder : histogram) {
+                adder.reset();
+            }
+        }
+    }
+
+    /**
+     * 指标快照
+     */
+    public static final class Snapshot {
+
+        private final long total;
+        private final long success;
+        private final double avgLatency;
+        private final long p95Latency;
+        private final double ewmaLatency;
+        private final long inFlight;
+
+        Snapshot(long total, long success, double avgLatency, long p95Latency, double ewmaLatency, long inFlight) {
+            this.total = total;
+            this.success = success;
+            this.avgLatency = avgLatency;
+            this.p95Latency = p95Latency;
+            this.ewmaLatency = ewmaLatency;
+            this.inFlight = inFlight;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getSuccess() {
+            return success;
+        }
+
+        /**
+         * 成功率(0-1)，无样本时返回-1
+         */
+        public double getSuccessRate() {
+            return total == 0 ? -1D : (double) success / total;
+        }
+
+        public double getAvgLatency() {
+            return avgLatency;
+        }
+
+        public long getP95Latency() {
+            return p95Latency;
+        }
+
+        public double getEwmaLatency() {
+            return ewmaLatency;
+        }
+
+        public long getInFlight() {
+            return inFlight;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.autopay.backend.service.routing;
+
+import com.autopay.backend.entity.PaymentChannel;
+import com.autopay.backend.repository.PaymentChannelRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 渠道实时指标注册表
+ * 记录各渠道调用结果，并定时将聚合后的成功率、平均响应时间批量回写到渠道表
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChannelMetricsRegistry {
+
+    private final PaymentChannelRepository paymentChannelRepository;
+
+    private final Map<String, ChannelMetrics> metricsMap = new ConcurrentHashMap<>();
+
+    @Value("${autopay.routing.window-seconds:60}")
+    private int windowSeconds;
+
+    @Value("${autopay.routing.window-buckets:12}")
+    private int windowBuckets;
+
+    /**
+     * 获取渠道指标，不存在时创建
+     */
+    public ChannelMetrics getMetrics(PaymentChannel channel) {
+        ChannelMetrics metrics = metricsMap.get(channel.getChannelCode());
+        if (metrics != null) {
+            return metrics;
+        }
+        return metricsMap.computeIfAbsent(channel.getChannelCode(), code -> new ChannelMetrics(
+                channel.getId(), code, windowBuckets, windowSeconds * 1000L / windowBuckets));
+    }
+
+    /**
+     * 获取渠道指标，未记录过调用时返回null
+     */
+    public ChannelMetrics findMetrics(String channelCode) {
+        return metricsMap.get(channelCode);
+    }
+
+    /**
+     * 批量回写渠道成功率和平均响应时间
+     */
+    @Scheduled(fixedDelayString = "${autopay.routing.metrics-flush-interval-ms:60000}")
+    public void flushToDatabase() {
+        List<PaymentChannel> updates = new ArrayList<>();
+        for (ChannelMetrics metrics : metricsMap.values()) {
+            if (metrics.getChannelId() == null) {
+                continue;
+            }
+            long[] pending = metrics.drainPending();
+            long total = pending[0];
+            if (total == 0) {
+                continue;
+            }
+            PaymentChannel update = new PaymentChannel();
+            update.setId(metrics.getChannelId());
+            update.setSuccessRate(BigDecimal.valueOf(pending[1] * 100D / total).setScale(2, RoundingMode.HALF_UP));
+            update.setAvgResponseTime((int) (pending[2] / total));
+            updates.add(update);
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        try {
+            paymentChannelRepository.batchUpdateRuntimeMetrics(updates);
+            log.debug("渠道实时指标已回写，渠道数：{}", updates.size());
+        } catch (Exception e) {
+            log.error("渠道实时指标回写失败：{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.autopay.backend.service.routing;
+
+import com.autopay.backend.adapter.PaymentChannelAdapter.PaymentException;
+import com.autopay.backend.entity.PaymentChannel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 渠道熔断与舱壁隔离注册表
+ * 每个渠道持有独立的熔断器和信号量舱壁，限制单个渠道可占用的请求线程数，
+ * 避免慢渠道拖垮其他渠道。渠道调用在渠道网关线程池执行，超过渠道超时时间即取消并按超时失败；
+ * 只有网络异常和超时计入熔断失败，渠道返回的业务错误说明渠道可达，不计入
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChannelResilienceRegistry {
+
+    private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+    @Qualifier("channelGatewayExecutor")
+    private final Executor channelGatewayExecutor;
+
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    @Value("${autopay.monitoring.channel.failure-threshold:3}")
+    private int defaultFailureThreshold;
+
+    @Value("${autopay.circuit-breaker.open-duration-ms:10000}")
+    private long openDurationMillis;
+
+    @Value("${autopay.circuit-breaker.half-open-probes:3}")
+    private int halfOpenProbes;
+
+    @Value("${autopay.circuit-breaker.max-concurrent-calls:50}")
+    private int maxConcurrentCalls;
+
+    @Value("${autopay.circuit-breaker.bulkhead-wait-ms:50}")
+    private long bulkheadWaitMillis;
+
+    /**
+     * 渠道调用
+     */
+    @FunctionalInterface
+    public interface ChannelCall<T> {
+        T call() throws PaymentException;
+    }
+
+    /**
+     * 判断渠道当前是否可被路由选中
+     */
+    public boolean isAvailable(PaymentChannel channel) {
+        Guard guard = guards.get(channel.getChannelCode());
+        return guard == null || guard.breaker.isAvailable();
+    }
+
+    /**
+     * 在熔断器和舱壁保护下执行渠道调用，调用超过渠道超时时间时取消并抛出超时异常
+     */
+    public <T> T execute(PaymentChannel channel, ChannelCall<T> call) throws PaymentException {
+        Guard guard = getGuard(channel);
+        ChannelCircuitBreaker breaker = guard.breaker;
+        if (!breaker.tryAcquirePermission()) {
+            throw new PaymentException("CHANNEL_CIRCUIT_OPEN", "支付渠道 [" + channel.getChannelCode() + "] 已熔断");
+        }
+
+        if (!acquireBulkhead(guard.bulkhead)) {
+            breaker.releasePermission();
+            throw new PaymentException("CHANNEL_BULKHEAD_FULL", "支付渠道 [" + channel.getChannelCode() + "] 并发调用已满");
+        }
+
+        long timeoutMillis = resolveTimeoutMillis(channel);
+        long startTime = System.currentTimeMillis();
+        FutureTask<T> task = new FutureTask<>(call::call);
+        try {
+            channelGatewayExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            guard.bulkhead.release();
+            breaker.releasePermission();
+            throw new PaymentException("CHANNEL_BULKHEAD_FULL", "支付渠道 [" + channel.getChannelCode() + "] 并发调用已满", e);
+        }
+        try {
+            T result = task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            breaker.onSuccess(System.currentTimeMillis() - startTime);
+            return result;
+        } catch (TimeoutException e) {
+            // 取消并中断网关线程，不再等待渠道响应
+            task.cancel(true);
+            recordFailure(channel, breaker, "调用超时");
+            throw new PaymentException("CHANNEL_TIMEOUT",
+                    "支付渠道 [" + channel.getChannelCode() + "] 调用超时：" + timeoutMillis + "ms", e);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            breaker.releasePermission();
+            Thread.currentThread().interrupt();
+            throw new PaymentException("CHANNEL_CALL_INTERRUPTED", "支付渠道 [" + channel.getChannelCode() + "] 调用被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isTransportFailure(cause)) {
+                recordFailure(channel, breaker, cause.getMessage());
+            } else {
+                // 渠道返回了业务错误，渠道本身可达
+                breaker.onSuccess(System.currentTimeMillis() - startTime);
+            }
+            if (cause instanceof PaymentException paymentException) {
+                throw paymentException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new PaymentException("CHANNEL_CALL_FAILED", cause.getMessage(), cause);
+        } finally {
+            guard.bulkhead.release();
+        }
+    }
+
+    /**
+     * 判断是否为网络异常或超时，异常链中存在IO异常或超时异常时成立
+     */
+    static boolean isTransportFailure(Throwable e) {
+        for (Throwable current = e; current != null; current = current.getCause()) {
+            if (current instanceof IOException || current instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordFailure(PaymentChannel channel, ChannelCircuitBreaker breaker, String reason) {
+        breaker.onFailure();
+        if (breaker.getState() == ChannelCircuitBreaker.State.OPEN) {
+            log.warn("支付渠道熔断器打开：{}，原因：{}", channel.getChannelCode(), reason);
+        }
+    }
+
+    /**
+     * 获取渠道熔断器，渠道未调用过时返回null
+     */
+    public ChannelCircuitBreaker findBreaker(String channelCode) {
+        Guard guard = guards.get(channelCode);
+        return guard == null ? null : guard.breaker;
+    }
+
+    private Guard getGuard(PaymentChannel channel) {
+        int failureThreshold = resolveFailureThreshold(channel);
+        long slowCallMillis = resolveTimeoutMillis(channel);
+        Guard guard = guards.computeIfAbsent(channel.getChannelCode(), code -> new Guard(
+                new ChannelCircuitBreaker(code, failureThreshold, slowCallMillis, openDurationMillis, halfOpenProbes),
+                new Semaphore(maxConcurrentCalls)));
+        guard.breaker.configure(failureThreshold, slowCallMillis);
+        return guard;
+    }
+
+    private boolean acquireBulkhead(Semaphore bulkhead) {
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 失败阈值：单次请求耗尽全部重试次数即触发熔断，未配置重试次数时使用全局阈值
+     */
+    private int resolveFailureThreshold(PaymentChannel channel) {
+        Integer retryCount = channel.getRetryCount();
+        return retryCount != null && retryCount > 0 ? retryCount + 1 : defaultFailureThreshold;
+    }
+
+    private long resolveTimeoutMillis(PaymentChannel channel) {
+        Integer timeout = channel.getTimeout();
+        return TimeUnit.SECONDS.toMillis(timeout != null && timeout > 0 ? timeout : DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * 单个渠道的熔断器与舱壁
+     */
+    private static final class Guard {
+
+        final ChannelCircuitBreaker breaker;
+        final Semaphore bulkhead;
+
+        Guard(ChannelCircuitBreaker breaker, Semaphore bulkhead) {
+            this.breaker = breaker;
+            this.bulkhead = bulkhead;
+        }
+    }
+}
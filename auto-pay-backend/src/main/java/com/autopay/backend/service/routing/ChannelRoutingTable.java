@@ -0,0 +1,179 @@
+package com.autopay.backend.service.routing;
+
+import cn.hutool.core.util.StrUtil;
+import com.autopay.backend.entity.PaymentChannel;
+import com.autopay.backend.repository.PaymentChannelRepository;
+import com.autopay.backend.util.MoneyUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支付渠道内存路由表
+ * 由健康渠道构建按场景分组的不可变快照，金额区间预先换算为分存放在long数组中，
+ * 定时刷新时整体替换快照，渠道配置变更在下一次刷新后生效；路由时无需访问数据库
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChannelRoutingTable {
+
+    private final PaymentChannelRepository paymentChannelRepository;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 定时重建路由表
+     */
+    @Scheduled(fixedDelayString = "${autopay.routing.refresh-interval-ms:30000}",
+            initialDelayString = "${autopay.routing.refresh-interval-ms:30000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * 从数据库加载健康渠道并替换路由快照，加载失败时保留旧快照
+     */
+    public synchronized void refresh() {
+        try {
+            List<PaymentChannel> channels = paymentChannelRepository.findHealthyChannels();
+            snapshot = Snapshot.build(channels);
+            log.debug("路由表已刷新，渠道数：{}，场景数：{}", channels.size(), snapshot.routes.size());
+        } catch (Exception e) {
+            log.error("路由表刷新失败，继续使用旧快照：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 选择指定场景下支持该金额且优先级最高的渠道
+     *
+     * @return 渠道，无可用渠道时返回null
+     */
+    public PaymentChannel route(String scene, BigDecimal amount) {
+        SceneRoute route = getSceneRoute(scene);
+        if (route == null || amount == null) {
+            return null;
+        }
+        long amountMinor = MoneyUtil.toMinorUnits(amount);
+        for (int i = 0; i < route.size(); i++) {
+            if (route.accepts(i, amountMinor)) {
+                return route.channel(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取指定场景的路由条目，按优先级升序排列
+     */
+    public SceneRoute getSceneRoute(String scene) {
+        if (scene == null) {
+            return null;
+        }
+        return snapshot.routes.get(scene);
+    }
+
+    /**
+     * 当前快照中的所有渠道
+     */
+    public List<PaymentChannel> getChannels() {
+        return snapshot.channels;
+    }
+
+    /**
+     * 单个场景的路由条目
+     */
+    public static final class SceneRoute {
+
+        private final PaymentChannel[] channels;
+        private final long[] minAmounts;
+        private final long[] maxAmounts;
+
+        private SceneRoute(List<PaymentChannel> channels) {
+            int size = channels.size();
+            this.channels = channels.toArray(new PaymentChannel[0]);
+            this.minAmounts = new long[size];
+            this.maxAmounts = new long[size];
+            for (int i = 0; i < size; i++) {
+                PaymentChannel channel = channels.get(i);
+                // 区间边界向内取整，避免放宽渠道的金额限制
+                minAmounts[i] = channel.getMinAmount() == null ? 0L
+                        : MoneyUtil.toMinorUnits(channel.getMinAmount(), RoundingMode.CEILING);
+                maxAmounts[i] = channel.getMaxAmount() == null ? Long.MAX_VALUE
+                        : MoneyUtil.toMinorUnits(channel.getMaxAmount(), RoundingMode.FLOOR);
+            }
+        }
+
+        public int size() {
+            return channels.length;
+        }
+
+        public PaymentChannel channel(int index) {
+            return channels[index];
+        }
+
+        /**
+         * 判断渠道是否支持该金额（单位：分）
+         */
+        public boolean accepts(int index, long amountMinor) {
+            return amountMinor >= minAmounts[index] && amountMinor <= maxAmounts[index];
+        }
+    }
+
+    /**
+     * 路由表快照
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Map.of(), List.of());
+
+        final Map<String, SceneRoute> routes;
+        final List<PaymentChannel> channels;
+
+        Snapshot(Map<String, SceneRoute> routes, List<PaymentChannel> channels) {
+            this.routes = routes;
+            this.channels = channels;
+        }
+
+        static Snapshot build(List<PaymentChannel> channels) {
+            Map<String, List<PaymentChannel>> grouped = new HashMap<>();
+            for (PaymentChannel channel : channels) {
+                if (StrUtil.isEmpty(channel.getPaymentScene())) {
+                    continue;
+                }
+                // 场景字段形如 APP,H5,MP
+                for (String scene : channel.getPaymentScene().split("[,;|/\\s]+")) {
+                    if (!scene.isEmpty()) {
+                        grouped.computeIfAbsent(scene, key -> new ArrayList<>()).add(channel);
+                    }
+                }
+            }
+
+            Map<String, SceneRoute> routes = new HashMap<>(grouped.size() * 2);
+            grouped.forEach((scene, list) -> {
+                list.sort(Comparator.comparing(PaymentChannel::getPriority,
+                        Comparator.nullsLast(Comparator.naturalOrder())));
+                routes.put(scene, new SceneRoute(list));
+            });
+            return new Snapshot(Map.copyOf(routes), List.copyOf(channels));
+        }
+    }
+}
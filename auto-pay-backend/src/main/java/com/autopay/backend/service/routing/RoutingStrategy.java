@@ -0,0 +1,30 @@
+package com.autopay.backend.service.routing;
+
+/**
+ * 渠道路由策略
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public enum RoutingStrategy {
+
+    /**
+     * 按渠道优先级选择
+     */
+    PRIORITY,
+
+    /**
+     * 选择综合评分最高的渠道
+     */
+    BEST_SCORE,
+
+    /**
+     * 随机选取两个渠道，取评分较高者
+     */
+    POWER_OF_TWO,
+
+    /**
+     * 按评分加权随机选择
+     */
+    WEIGHTED_RANDOM
+}
@@ -0,0 +1,81 @@
+package com.autopay.backend.util;
+
+/**
+ * 分块布隆过滤器
+ * 每个元素的全部哈希位落在同一个512位(一条缓存行)的块内，一次查询只访问一次内存，
+ * 用于在精确集合之前快速排除不存在的元素。不支持删除，元素删除后需重建。
+ * 非线程安全，构建完成后发布给其他线程只读访问
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class BloomFilter {
+
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_LONGS = BLOCK_BITS / Long.SIZE;
+
+    private final long[] bits;
+    private final int blockMask;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计元素数
+     * @param falsePositiveRate  期望误判率
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("布隆过滤器误判率必须在0到1之间");
+        }
+        double bitsPerKey = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long blocks = Math.max(1L, (long) Math.ceil(Math.max(expectedInsertions, 1L) * bitsPerKey / BLOCK_BITS));
+        // 块数取2的幂，便于用掩码定位
+        int blockCount = blocks >= (1 << 26) ? 1 << 26 : Integer.highestOneBit((int) blocks * 2 - 1);
+        this.bits = new long[blockCount * BLOCK_LONGS];
+        this.blockMask = blockCount - 1;
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    public void add(long key) {
+        long h = mix(key);
+        int base = ((int) (h >>> 32) & blockMask) * BLOCK_LONGS;
+        int h1 = (int) h;
+        int h2 = (int) mix(h) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false表示元素一定不存在
+     */
+    public boolean mightContain(long key) {
+        long h = mix(key);
+        int base = ((int) (h >>> 32) & blockMask) * BLOCK_LONGS;
+        int h1 = (int) h;
+        int h2 = (int) mix(h) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 占用的字节数
+     */
+    public long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
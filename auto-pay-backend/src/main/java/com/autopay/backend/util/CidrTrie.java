@@ -0,0 +1,113 @@
+package com.autopay.backend.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * IP网段二叉前缀树
+ * IPv4和IPv6各有一个根节点，节点以数组下标表示，不创建节点对象；查询沿地址位向下遍历，经过任一网段终点即命中。
+ * 非线程安全，构建完成后发布给其他线程只读访问
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class CidrTrie {
+
+    private static final int IPV4_ROOT = 0;
+    private static final int IPV6_ROOT = 1;
+
+    /**
+     * 每个节点占两个元素，分别为0位和1位子节点下标，0表示无子节点
+     */
+    private int[] children = new int[64];
+    private final BitSet terminals = new BitSet();
+    private int nodeCount = 2;
+    private int size;
+
+    /**
+     * 添加网段，如 10.0.0.0/8、2001:db8::/32，不带前缀长度时表示单个地址
+     *
+     * @return 网段是否合法
+     */
+    public boolean add(String cidr) {
+        if (cidr == null) {
+            return false;
+        }
+        int slash = cidr.indexOf('/');
+        byte[] address = IpAddressUtil.parse(slash < 0 ? cidr : cidr.substring(0, slash));
+        if (address == null) {
+            return false;
+        }
+        // IPv4映射的IPv6网段按IPv6前缀长度书写
+        boolean mapped = address.length == 4 && cidr.indexOf(':') >= 0;
+        int maxLength = mapped ? 128 : address.length * 8;
+        int prefixLength;
+        try {
+            prefixLength = slash < 0 ? maxLength : Integer.parseInt(cidr.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (prefixLength < 0 || prefixLength > maxLength) {
+            return false;
+        }
+        if (mapped) {
+            prefixLength = Math.max(0, prefixLength - 96);
+        }
+        int node = address.length == 4 ? IPV4_ROOT : IPV6_ROOT;
+        for (int i = 0; i < prefixLength; i++) {
+            int slot = node * 2 + bit(address, i);
+            if (children[slot] == 0) {
+                // 扩容会替换children数组，需先分配节点再写入
+                int child = newNode();
+                children[slot] = child;
+            }
+            node = children[slot];
+        }
+        if (!terminals.get(node)) {
+            terminals.set(node);
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * 地址是否落在任一网段内
+     */
+    public boolean contains(byte[] address) {
+        if (address == null || (address.length != 4 && address.length != 16)) {
+            return false;
+        }
+        int node = address.length == 4 ? IPV4_ROOT : IPV6_ROOT;
+        int length = address.length * 8;
+        for (int i = 0; ; i++) {
+            if (terminals.get(node)) {
+                return true;
+            }
+            if (i == length) {
+                return false;
+            }
+            node = children[node * 2 + bit(address, i)];
+            if (node == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 网段数
+     */
+    public int size() {
+        return size;
+    }
+
+    private int newNode() {
+        if (nodeCount * 2 >= children.length) {
+            children = Arrays.copyOf(children, children.length * 2);
+        }
+        return nodeCount++;
+    }
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+}
@@ -0,0 +1,180 @@
+package com.autopay.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * IP地址工具类
+ * 只解析IP字面量，IPv4和IPv6均由本类逐字符解析，不经过InetAddress，不会触发DNS解析
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public final class IpAddressUtil {
+
+    private IpAddressUtil() {
+    }
+
+    /**
+     * 解析IP字面量
+     *
+     * @return IPv4返回4字节，IPv6返回16字节(IPv4映射地址返回4字节)，非法时返回null
+     */
+    public static byte[] parse(String ip) {
+        if (ip == null) {
+            return null;
+        }
+        String value = ip.trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+        if (value.indexOf(':') < 0) {
+            long ipv4 = parseIpv4(value);
+            return ipv4 < 0 ? null : new byte[]{(byte) (ipv4 >>> 24), (byte) (ipv4 >>> 16), (byte) (ipv4 >>> 8), (byte) ipv4};
+        }
+        if (value.startsWith("[") && value.endsWith("]")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        byte[] bytes = parseIpv6(value);
+        if (bytes != null && isIpv4Mapped(bytes)) {
+            return new byte[]{bytes[12], bytes[13], bytes[14], bytes[15]};
+        }
+        return bytes;
+    }
+
+    /**
+     * 解析IPv6字面量，支持"::"压缩和末尾内嵌IPv4，忽略"%"后的区域标识
+     *
+     * @return 16字节地址，非IPv6字面量时返回null
+     */
+    public static byte[] parseIpv6(String value) {
+        if (value == null) {
+            return null;
+        }
+        int zone = value.indexOf('%');
+        if (zone >= 0) {
+            value = value.substring(0, zone);
+        }
+        int length = value.length();
+        if (length < 2) {
+            return null;
+        }
+        byte[] bytes = new byte[16];
+        int groups = 0;
+        int compressAt = -1;
+        int i = 0;
+        if (value.startsWith("::")) {
+            compressAt = 0;
+            i = 2;
+        } else if (value.charAt(0) == ':') {
+            return null;
+        }
+        while (i < length) {
+            if (groups == 8) {
+                return null;
+            }
+            int start = i;
+            int group = 0;
+            while (i < length && i - start < 4 && Character.digit(value.charAt(i), 16) >= 0) {
+                group = (group << 4) | Character.digit(value.charAt(i), 16);
+                i++;
+            }
+            if (i < length && value.charAt(i) == '.') {
+                // 末尾内嵌IPv4，占两个分组
+                long ipv4 = groups <= 6 ? parseIpv4(value.substring(start)) : -1;
+                if (ipv4 < 0) {
+                    return null;
+                }
+                bytes[groups * 2] = (byte) (ipv4 >>> 24);
+                bytes[groups * 2 + 1] = (byte) (ipv4 >>> 16);
+                bytes[groups * 2 + 2] = (byte) (ipv4 >>> 8);
+                bytes[groups * 2 + 3] = (byte) ipv4;
+                groups += 2;
+                i = length;
+                break;
+            }
+            if (i == start) {
+                return null;
+            }
+            bytes[groups * 2] = (byte) (group >>> 8);
+            bytes[groups * 2 + 1] = (byte) group;
+            groups++;
+            if (i == length) {
+                break;
+            }
+            if (value.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i < length && value.charAt(i) == ':') {
+                if (compressAt >= 0) {
+                    return null;
+                }
+                compressAt = groups;
+                i++;
+            } else if (i == length) {
+                return null;
+            }
+        }
+        if (compressAt < 0) {
+            return groups == 8 ? bytes : null;
+        }
+        if (groups == 8) {
+            return null;
+        }
+        // 将"::"之后的分组移到末尾，中间补0
+        int tail = (groups - compressAt) * 2;
+        System.arraycopy(bytes, compressAt * 2, bytes, 16 - tail, tail);
+        Arrays.fill(bytes, compressAt * 2, 16 - tail, (byte) 0);
+        return bytes;
+    }
+
+    /**
+     * IPv4地址转换为32位无符号整数
+     */
+    public static long ipv4ToLong(byte[] address) {
+        return ((address[0] & 0xFFL) << 24) | ((address[1] & 0xFFL) << 16)
+                | ((address[2] & 0xFFL) << 8) | (address[3] & 0xFFL);
+    }
+
+    /**
+     * 解析IPv4字面量为32位无符号整数，不创建对象
+     *
+     * @return 非IPv4字面量时返回-1
+     */
+    public static long parseIpv4(String value) {
+        if (value == null) {
+            return -1;
+        }
+        long result = 0;
+        int parts = 0;
+        int octet = -1;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet < 0 ? c - '0' : octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && parts < 3) {
+                result = (result << 8) | octet;
+                parts++;
+                octet = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (parts != 3 || octet < 0) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+
+    private static boolean isIpv4Mapped(byte[] bytes) {
+        for (int i = 0; i < 10; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return bytes[10] == (byte) 0xFF && bytes[11] == (byte) 0xFF;
+    }
+}
@@ -0,0 +1,190 @@
+package com.autopay.backend.util;
+
+import java.util.function.LongConsumer;
+
+/**
+ * long型开放寻址哈希集合
+ * 元素直接存放在long数组中，不产生装箱对象，千万级元素也只占用少量大数组，避免大量小对象带来的GC压力；
+ * 线性探测，删除时回移后续元素以保持探测链连续。非线程安全，构建完成后发布给其他线程只读访问
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class LongHashSet {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /**
+     * 0作为空槽标记，元素0单独记录
+     */
+    private long[] keys;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private LongHashSet(LongHashSet source) {
+        this.keys = source.keys.clone();
+        this.mask = source.mask;
+        this.resizeThreshold = source.resizeThreshold;
+        this.size = source.size;
+        this.containsZero = source.containsZero;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        long[] table = keys;
+        int index = index(key, mask);
+        long current;
+        while ((current = table[index]) != 0) {
+            if (current == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return 元素是否为新加入
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int index = index(key, mask);
+        long current;
+        while ((current = keys[index]) != 0) {
+            if (current == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        if (++size > resizeThreshold) {
+            resize(keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * @return 元素是否存在并已删除
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int index = index(key, mask);
+        long current;
+        while ((current = keys[index]) != 0) {
+            if (current == key) {
+                shiftBack(index);
+                size--;
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(0L);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                consumer.accept(key);
+            }
+        }
+    }
+
+    public LongHashSet copy() {
+        return new LongHashSet(this);
+    }
+
+    /**
+     * 删除元素后，将探测链上后续元素回移到空出的槽位
+     */
+    private void shiftBack(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            long current = keys[index];
+            if (current == 0) {
+                break;
+            }
+            int home = index(current, mask);
+            // 元素的初始槽位不在(gap, index]区间内时才能回移到gap
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = current;
+                gap = index;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void resize(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("LongHashSet容量超过上限");
+        }
+        long[] old = keys;
+        allocate(capacity);
+        for (long key : old) {
+            if (key != 0) {
+                int index = index(key, mask);
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long required = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        if (required > MAX_CAPACITY) {
+            throw new IllegalArgumentException("LongHashSet容量超过上限：" + expectedSize);
+        }
+        return Math.max(16, Integer.highestOneBit((int) required - 1) << 1);
+    }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,124 @@
+package com.autopay.backend.util;
+
+/**
+ * long键int值开放寻址哈希表
+ * 键和值分别存放在long、int数组中，不产生装箱对象；线性探测，只支持新增和覆盖，
+ * 需要删除时整体重建。非线程安全，由单个线程写入
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class LongIntHashMap {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /**
+     * 0作为空槽标记，键0单独记录
+     */
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+    private boolean containsZero;
+    private int zeroValue;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return 键对应的值，不存在时返回missingValue
+     */
+    public int get(long key, int missingValue) {
+        if (key == 0) {
+            return containsZero ? zeroValue : missingValue;
+        }
+        int index = index(key, mask);
+        long current;
+        while ((current = keys[index]) != 0) {
+            if (current == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * 新增或覆盖键对应的值
+     */
+    public void put(long key, int value) {
+        if (key == 0) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int index = index(key, mask);
+        long current;
+        while ((current = keys[index]) != 0) {
+            if (current == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            resize(keys.length << 1);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("LongIntHashMap容量超过上限");
+        }
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int index = index(key, mask);
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long required = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        if (required > MAX_CAPACITY) {
+            throw new IllegalArgumentException("LongIntHashMap容量超过上限：" + expectedSize);
+        }
+        return Math.max(16, Integer.highestOneBit((int) required - 1) << 1);
+    }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
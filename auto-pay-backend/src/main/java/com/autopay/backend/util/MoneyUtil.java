@@ -0,0 +1,43 @@
+package com.autopay.backend.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 金额工具类
+ * 提供元与分（最小货币单位）之间的换算
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public final class MoneyUtil {
+
+    /**
+     * 金额小数位数
+     */
+    public static final int MINOR_UNIT_SCALE = 2;
+
+    private MoneyUtil() {
+    }
+
+    /**
+     * 元转换为分，按四舍五入处理多余小数位
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return toMinorUnits(amount, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 元转换为分，使用指定的舍入方式
+     */
+    public static long toMinorUnits(BigDecimal amount, RoundingMode roundingMode) {
+        return amount.setScale(MINOR_UNIT_SCALE, roundingMode).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 分转换为元
+     */
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, MINOR_UNIT_SCALE);
+    }
+}
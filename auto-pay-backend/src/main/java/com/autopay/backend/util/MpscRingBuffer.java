@@ -0,0 +1,85 @@
+package com.autopay.backend.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界多生产者单消费者环形队列
+ * 生产者通过CAS领取序号后写入对应槽位，队列满时立即返回false；单个消费者按序号顺序读取并清空槽位，
+ * 不使用锁，容量取2的幂
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("环形队列容量必须在1到2^30之间");
+        }
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 入队，可由任意线程调用
+     *
+     * @return 队列已满时返回false
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex.get() > mask) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        slots.lazySet((int) index & mask, element);
+        return true;
+    }
+
+    /**
+     * 批量出队，仅允许单个消费者线程调用；已领取序号但尚未写入的元素留待下次出队
+     *
+     * @return 出队元素数
+     */
+    public int drain(Consumer<E> consumer, int limit) {
+        long index = consumerIndex.get();
+        int count = 0;
+        while (count < limit) {
+            int slot = (int) index & mask;
+            E element = slots.get(slot);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(slot, null);
+            index++;
+            // 先清空槽位再推进消费序号，生产者看到新序号时槽位已可复用
+            consumerIndex.lazySet(index);
+            consumer.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 当前元素数(近似值)
+     */
+    public int size() {
+        return (int) Math.max(0, producerIndex.get() - consumerIndex.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,157 @@
+package com.autopay.backend.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ * 添加定时任务为O(1)的无锁入队，由单个推进线程调用{@link #advance}把任务放入对应层级的槽位；
+ * 上层槽位到期时将任务降级到下层，最底层槽位到期时触发任务
+ *
+ * @author AutoPay Team
+ * @since 1.0.0
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final Queue<Entry<T>> inbox = new ConcurrentLinkedQueue<>();
+    private final List<Level<T>> levels = new ArrayList<>();
+
+    /**
+     * 当前时间，按最底层刻度对齐，仅推进线程访问
+     */
+    private long currentTime;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("时间轮刻度必须大于0且槽位数必须大于1");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMillis - startMillis % tickMillis;
+        levels.add(new Level<>(tickMillis, wheelSize));
+    }
+
+    /**
+     * 添加定时任务，可由任意线程调用；到期时间向上对齐到刻度，任务不会提前触发
+     */
+    public void add(T item, long deadlineMillis) {
+        long remainder = Math.floorMod(deadlineMillis, tickMillis);
+        inbox.offer(new Entry<>(item, remainder == 0 ? deadlineMillis : deadlineMillis - remainder + tickMillis));
+    }
+
+    /**
+     * 推进时间轮到指定时间，仅允许单个线程调用
+     *
+     * @param onExpired 到期任务处理
+     */
+    public void advance(long nowMillis, Consumer<T> onExpired) {
+        drainInbox(onExpired);
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            // 先处理上层槽位，降级后的任务在本刻度内即可到期
+            for (int i = levels.size() - 1; i >= 0; i--) {
+                Level<T> level = levels.get(i);
+                if (currentTime % level.tickMillis == 0) {
+                    List<Entry<T>> bucket = level.take(currentTime);
+                    if (bucket != null) {
+                        for (Entry<T> entry : bucket) {
+                            insert(entry, onExpired);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取时间轮中的任务数
+     */
+    public int size() {
+        int size = inbox.size();
+        for (Level<T> level : levels) {
+            size += level.size;
+        }
+        return size;
+    }
+
+    private void drainInbox(Consumer<T> onExpired) {
+        Entry<T> entry;
+        while ((entry = inbox.poll()) != null) {
+            insert(entry, onExpired);
+        }
+    }
+
+    private void insert(Entry<T> entry, Consumer<T> onExpired) {
+        long delay = entry.deadline - currentTime;
+        if (delay < tickMillis) {
+            onExpired.accept(entry.item);
+            return;
+        }
+        int index = 0;
+        while (delay >= levels.get(index).intervalMillis) {
+            index++;
+            if (index == levels.size()) {
+                Level<T> upper = levels.get(index - 1);
+                levels.add(new Level<>(upper.intervalMillis, wheelSize));
+            }
+        }
+        levels.get(index).put(entry);
+    }
+
+    /**
+     * 单层时间轮
+     */
+    private static final class Level<T> {
+
+        final long tickMillis;
+        final long intervalMillis;
+        final List<Entry<T>>[] buckets;
+        int size;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMillis, int wheelSize) {
+            this.tickMillis = tickMillis;
+            this.intervalMillis = tickMillis * wheelSize;
+            this.buckets = new List[wheelSize];
+        }
+
+        void put(Entry<T> entry) {
+            int slot = slot(entry.deadline);
+            if (buckets[slot] == null) {
+                buckets[slot] = new ArrayList<>();
+            }
+            buckets[slot].add(entry);
+            size++;
+        }
+
+        List<Entry<T>> take(long time) {
+            int slot = slot(time);
+            List<Entry<T>> bucket = buckets[slot];
+            if (bucket != null) {
+                buckets[slot] = null;
+                size -= bucket.size();
+            }
+            return bucket;
+        }
+
+        private int slot(long time) {
+            return (int) ((time / tickMillis) % buckets.length);
+        }
+    }
+
+    private static final class Entry<T> {
+
+        final T item;
+        final long deadline;
+
+        Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+}